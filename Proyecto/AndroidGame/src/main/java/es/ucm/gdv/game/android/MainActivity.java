@@ -6,6 +6,7 @@ import android.os.Bundle;
 import android.view.SurfaceView;
 
 import es.ucm.gdv.engine.android.Game;
+import es.ucm.gdv.switchdash.Loading;
 import es.ucm.gdv.switchdash.Menu;
 
 /**
@@ -59,7 +60,9 @@ public class MainActivity extends AppCompatActivity {
         // Si algo falla, nos salimos
         if (!_game.init(_menu))
             return;
-        if (!_menu.init(_game))
+        // El menu se inicializa a traves del estado de carga para decodificar
+        // sus imagenes en paralelo
+        if (!Loading.start(_game, _menu))
             return;
 
         // Añadimos el contenido de la actividad
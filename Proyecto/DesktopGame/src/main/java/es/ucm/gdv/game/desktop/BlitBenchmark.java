@@ -0,0 +1,111 @@
+package es.ucm.gdv.game.desktop;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.io.File;
+
+import es.ucm.gdv.engine.desktop.Graphics;
+
+/**
+ * Mide el coste por pintado de los sprites tal y como los devuelve ImageIO frente
+ * a los convertidos a un formato compatible con la pantalla
+ *
+ * Pinta cada sprite repetidamente sobre un destino del tamaño del canvas lógico
+ * (1080x1920), escalado a la mitad como en la ventana por defecto, con alpha 1 y 0.5.
+ * Con pantalla el destino es una VolatileImage; sin ella (headless) una BufferedImage
+ *
+ * Uso: BlitBenchmark [directorio de sprites] [pintados por medida]
+ */
+public class BlitBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        File dir = new File(args.length > 0 ? args[0] : "Sprites");
+        int blits = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        File[] files = dir.listFiles();
+        if (files == null) {
+            System.err.println("No se encuentra el directorio " + dir);
+            return;
+        }
+        java.util.Arrays.sort(files);
+
+        GraphicsConfiguration gc = GraphicsEnvironment.isHeadless() ? null
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        java.awt.Image target = gc != null ? gc.createCompatibleVolatileImage(1080, 1920, Transparency.OPAQUE)
+                : new BufferedImage(1080, 1920, BufferedImage.TYPE_INT_RGB);
+        System.out.println("Destino: " + (gc != null ? "VolatileImage" : "BufferedImage (headless)"));
+        System.out.printf("%-22s %-10s %-10s %12s %12s %12s %12s%n", "sprite", "tipo", "compatible",
+                "antes a=1", "despues a=1", "antes a=.5", "despues a=.5");
+
+        double[] totals = new double[4];
+        for (File f : files) {
+            if (!f.getName().endsWith(".png"))
+                continue;
+            BufferedImage raw = javax.imageio.ImageIO.read(f);
+            BufferedImage compatible = Graphics.toCompatibleImage(raw, gc);
+
+            double[] ns = {
+                    measure(target, raw, 1.0f, blits),
+                    measure(target, compatible, 1.0f, blits),
+                    measure(target, raw, 0.5f, blits),
+                    measure(target, compatible, 0.5f, blits)
+            };
+            for (int i = 0; i < ns.length; i++)
+                totals[i] += ns[i];
+            System.out.printf("%-22s %-10s %-10s %10.0fns %10.0fns %10.0fns %10.0fns%n", f.getName(),
+                    typeName(raw.getType()), typeName(compatible.getType()), ns[0], ns[1], ns[2], ns[3]);
+        }
+        System.out.printf("%-44s %10.0fns %10.0fns %10.0fns %10.0fns%n", "total (un pintado de cada)",
+                totals[0], totals[1], totals[2], totals[3]);
+    }
+
+    /**
+     * Devuelve el tiempo medio en nanosegundos de pintar la imagen en el destino
+     */
+    private static double measure(java.awt.Image target, BufferedImage image, float alpha, int blits) {
+        Graphics2D g = target instanceof VolatileImage ? ((VolatileImage)target).createGraphics()
+                : ((BufferedImage)target).createGraphics();
+        try {
+            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+            int w = image.getWidth() / 2, h = image.getHeight() / 2;
+
+            // Calentamiento para que el JIT y la caché de Java2D no cuenten en la medida
+            for (int i = 0; i < blits / 4; i++)
+                g.drawImage(image, 0, 0, w, h, 0, 0, image.getWidth(), image.getHeight(), null);
+            java.awt.Toolkit.getDefaultToolkit().sync();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < blits; i++)
+                g.drawImage(image, i % 64, i % 32, i % 64 + w, i % 32 + h, 0, 0, image.getWidth(), image.getHeight(), null);
+            // Con destino en memoria de vídeo hay que esperar a que la tarjeta termine
+            java.awt.Toolkit.getDefaultToolkit().sync();
+            return (System.nanoTime() - start) / (double)blits;
+        }
+        finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Nombre legible del tipo de una BufferedImage
+     */
+    private static String typeName(int type) {
+        switch (type) {
+            case BufferedImage.TYPE_CUSTOM: return "CUSTOM";
+            case BufferedImage.TYPE_INT_RGB: return "INT_RGB";
+            case BufferedImage.TYPE_INT_ARGB: return "INT_ARGB";
+            case BufferedImage.TYPE_INT_ARGB_PRE: return "ARGB_PRE";
+            case BufferedImage.TYPE_3BYTE_BGR: return "3BYTE_BGR";
+            case BufferedImage.TYPE_4BYTE_ABGR: return "4BYTE_ABGR";
+            case BufferedImage.TYPE_BYTE_INDEXED: return "INDEXED";
+            case BufferedImage.TYPE_BYTE_GRAY: return "GRAY";
+            case BufferedImage.TYPE_BYTE_BINARY: return "BINARY";
+            default: return String.valueOf(type);
+        }
+    }
+}
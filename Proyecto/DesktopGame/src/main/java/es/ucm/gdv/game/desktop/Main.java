@@ -1,6 +1,9 @@
 package es.ucm.gdv.game.desktop;
 
+import es.ucm.gdv.engine.InputRecorder;
+import es.ucm.gdv.engine.Profiler;
 import es.ucm.gdv.engine.desktop.Game;
+import es.ucm.gdv.switchdash.Loading;
 import es.ucm.gdv.switchdash.Menu;
 
 /**
@@ -12,16 +15,78 @@ public class Main {
 
         // Creamos el juego y el estado inicial
         Game game = new Game(540, 960);
+        // Con --stats se muestra el informe de rendimiento por consola, con
+        // --fps N se cambia el límite de frames por segundo (0 para no limitar)
+        // con --threaded se pinta en una hebra separada de la lógica y con
+        // --metrics archivo se vuelcan las métricas de los frames al salir
+        // (en JSON si el archivo acaba en .json, si no en CSV). Con --profile se
+        // perfilan las fases del update y los pintados por objeto e imagen, y el
+        // informe se muestra al salir. Con --record archivo se graban la semilla y
+        // el input de la partida al salir, para repetirla con ReplayMain
+        String record = null;
+        boolean profile = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--stats"))
+                game.setStatsReport(true);
+            else if (args[i].equals("--threaded"))
+                game.setThreadedRendering(true);
+            else if (args[i].equals("--fps") && i + 1 < args.length)
+                game.setTargetFps(Integer.parseInt(args[++i]));
+            else if (args[i].equals("--metrics") && i + 1 < args.length)
+                game.setMetricsFile(args[++i]);
+            else if (args[i].equals("--profile"))
+                profile = true;
+            else if (args[i].equals("--record") && i + 1 < args.length)
+                record = args[++i];
+        }
         Menu menu = new Menu();
+        if (profile)
+            profile(menu);
 
         // Necesario iniciar el Game y la Lógica
         // Si algo falla, nos salimos
         if (!game.init(menu))
             return;
-        if (!menu.init(game))
+        // La grabacion empieza antes de iniciar el menu, que ya usa el generador
+        if (record != null && !record(game, menu, record))
+            return;
+        // El menu se inicializa a traves del estado de carga para decodificar
+        // sus imagenes en paralelo
+        if (!Loading.start(game, menu))
             return;
 
         // Lanzamos el bucle principal del juego
         game.run();
     }
+
+    /**
+     * Graba la partida y la guarda al salir, con la puntuacion como resultado
+     */
+    private static boolean record(Game game, final Menu menu, final String path) {
+        final InputRecorder recorder = new InputRecorder();
+        if (!recorder.start(game))
+            return false;
+        Runtime.getRuntime().addShutdownHook(new Thread("InputRecorder") {
+            @Override
+            public void run() {
+                recorder.setResult(menu.getSession().getScore());
+                recorder.save(path);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Activa el perfilado de los estados de la partida y muestra el informe al salir
+     */
+    private static void profile(Menu menu) {
+        final Profiler profiler = new Profiler();
+        menu.getSession().setProfiler(profiler);
+        Runtime.getRuntime().addShutdownHook(new Thread("Profiler") {
+            @Override
+            public void run() {
+                System.out.println(profiler.report());
+            }
+        });
+    }
 }
@@ -0,0 +1,148 @@
+package es.ucm.gdv.game.desktop;
+
+import java.util.Random;
+
+import es.ucm.gdv.engine.GameLoop;
+import es.ucm.gdv.engine.Input;
+import es.ucm.gdv.engine.InputRecorder;
+import es.ucm.gdv.engine.InputReplayer;
+import es.ucm.gdv.engine.headless.Game;
+import es.ucm.gdv.switchdash.Loading;
+import es.ucm.gdv.switchdash.Menu;
+
+/**
+ * Repite sin ventana partidas grabadas con Main --record y comprueba que la
+ * puntuacion final coincide con la grabada
+ *
+ * Cada grabacion se simula desde el menu con el paso fijo del bucle de PC, sin
+ * render y tan rapido como se pueda. Muestra por cada una si coincide y cuantas
+ * veces mas rapido que el tiempo real ha ido, y termina con codigo 1 si alguna
+ * no coincide. Uso: ReplayMain archivo...
+ *
+ * Con --check [frames] graba antes en memoria una partida de un bot que pasa por la
+ * pantalla de carga durante varios frames, como en PC al construir el atlas, y la
+ * repite de la misma forma. Los frames de carga no deben contar en la grabacion
+ */
+public class ReplayMain {
+
+    public static void main(String[] args) {
+        boolean ok = true;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--check")) {
+                int frames = 6000;
+                if (i + 1 < args.length && !args[i + 1].startsWith("--"))
+                    frames = Integer.parseInt(args[++i]);
+                ok &= check(frames);
+            }
+            else
+                ok &= replay(args[i], InputReplayer.load(args[i]), null);
+        }
+        if (!ok)
+            System.exit(1);
+    }
+
+    /**
+     * Graba sin ventana una partida de un bot que toca al azar, mostrando la pantalla
+     * de carga al menos un frame (tambien le llegan toques), y la repite
+     *
+     * @param frames Vueltas del bucle a grabar
+     *
+     * @return true si ha pasado por la carga y la repeticion coincide, en la puntuacion
+     * y en el estado del generador del juego
+     */
+    private static boolean check(int frames) {
+        Game game = new Game(1080, 1920);
+        game.setFixedTimestep(GameLoop.DEFAULT_STEP);
+        game.setRender(false);
+        game.setMaxFrames(1);
+        Menu menu = new Menu();
+        InputRecorder recorder = new InputRecorder();
+        if (!game.init(menu) || !recorder.start(game))
+            return false;
+
+        // Como Loading.start pero sin esperar a la carga, para que siempre se vea,
+        // contando los frames que se muestra
+        final int[] loadingFrames = new int[1];
+        Loading loading = new Loading(menu) {
+            @Override
+            public void update(double deltaTime) {
+                loadingFrames[0]++;
+                super.update(deltaTime);
+            }
+        };
+        if (!loading.init(game))
+            return false;
+        game.setLogic(loading);
+
+        // Los toques del bot no dependen del generador del juego
+        Random random = new Random(frames);
+        Input input = game.getInput();
+        for (int i = 0; i < frames; i++) {
+            if (random.nextInt(12) == 0)
+                input.setTouchEvent(new Input.TouchEvent(Input.TouchEventType.PRESSED,
+                        random.nextInt(1080), 600 + random.nextInt(1200), 0));
+            game.run();
+        }
+        // La repeticion para justo tras el ultimo frame grabado, la grabacion tambien
+        int frame = input.getFrame();
+        while (input.getFrame() == frame)
+            game.run();
+        recorder.setResult(menu.getSession().getScore());
+
+        System.out.println(String.format("check: %d vueltas, %d en la pantalla de carga",
+                frames, loadingFrames[0]));
+        if (loadingFrames[0] == 0) {
+            System.out.println("check: no se ha mostrado la pantalla de carga");
+            return false;
+        }
+        return replay("check", InputReplayer.fromBytes(recorder.toByteArray()),
+                game.getRandom().nextLong());
+    }
+
+    /**
+     * Repite una grabacion
+     *
+     * @param name Nombre con el que se muestra
+     * @param replayer Grabacion (null si no se ha podido cargar)
+     * @param nextRandom Siguiente numero del generador del juego al acabar la grabacion,
+     *                   para comparar tambien el estado de la partida (null si no se sabe)
+     *
+     * @return true si la puntuacion coincide con la grabada
+     */
+    private static boolean replay(String name, InputReplayer replayer, Long nextRandom) {
+        if (replayer == null)
+            return false;
+
+        final Game game = new Game(1080, 1920);
+        game.setFixedTimestep(GameLoop.DEFAULT_STEP);
+        game.setRender(false);
+        Menu menu = new Menu();
+        if (!game.init(menu) || !replayer.start(game))
+            return false;
+        replayer.setOnFinished(new Runnable() {
+            @Override
+            public void run() {
+                game.stop();
+            }
+        });
+
+        long start = System.nanoTime();
+        if (!Loading.start(game, menu))
+            return false;
+        // La partida termina al repetir el ultimo frame grabado
+        if (!replayer.isFinished())
+            game.run();
+        double seconds = (System.nanoTime() - start) / 1.0E9;
+
+        int score = menu.getSession().getScore();
+        boolean ok = score == replayer.getResult();
+        if (nextRandom != null && game.getRandom().nextLong() != nextRandom) {
+            System.out.println(name + ": el generador del juego ha acabado en otro estado");
+            ok = false;
+        }
+        System.out.println(String.format("%s: %d frames, %d eventos, puntos %d (grabados %d) %s, %.0fx tiempo real",
+                name, replayer.getFrames(), replayer.getEvents(), score, replayer.getResult(),
+                ok ? "OK" : "DISTINTO", game.getTime() / Math.max(seconds, 1.0E-9)));
+        return ok;
+    }
+}
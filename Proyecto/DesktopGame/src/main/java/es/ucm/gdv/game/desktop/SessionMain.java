@@ -0,0 +1,52 @@
+package es.ucm.gdv.game.desktop;
+
+import es.ucm.gdv.engine.Game;
+import es.ucm.gdv.switchdash.SessionRunner;
+
+/**
+ * Lanzador de partidas en paralelo en PC
+ *
+ * Juega muchas partidas de Demo independientes a la vez, sin ventana, cada una con
+ * su semilla y un bot, y muestra cuantas partidas y frames simulados por segundo
+ * salen. Opciones:
+ *
+ *   --sessions N     partidas (por defecto 1000)
+ *   --threads N      hebras (por defecto, una por nucleo)
+ *   --seed S         semilla de la primera partida (por defecto 0)
+ *   --max-frames N   frames maximos por partida (por defecto 18000)
+ *   --error-rate P   probabilidad de que el bot deje pasar una bola (por defecto 0.01)
+ */
+public class SessionMain {
+
+    public static void main(String[] args) {
+        int sessions = 1000;
+        SessionRunner runner = new SessionRunner(new SessionRunner.GameFactory() {
+            @Override
+            public Game newGame() {
+                return new es.ucm.gdv.engine.headless.Game(1080, 1920);
+            }
+        });
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            if (args[i].equals("--sessions"))
+                sessions = Integer.parseInt(value);
+            else if (args[i].equals("--threads"))
+                runner.setThreads(Integer.parseInt(value));
+            else if (args[i].equals("--seed"))
+                runner.setSeed(Long.parseLong(value));
+            else if (args[i].equals("--max-frames"))
+                runner.setMaxFrames(Integer.parseInt(value));
+            else if (args[i].equals("--error-rate"))
+                runner.setErrorRate(Double.parseDouble(value));
+            else {
+                System.err.println("Opcion desconocida: " + args[i]);
+                return;
+            }
+        }
+
+        if (!runner.run(sessions))
+            System.err.println("Alguna partida no se ha podido inicializar");
+        System.out.print(runner.report());
+    }
+}
@@ -0,0 +1,155 @@
+package es.ucm.gdv.game.desktop;
+
+import es.ucm.gdv.engine.Game;
+import es.ucm.gdv.switchdash.Loading;
+import es.ucm.gdv.switchdash.StressScenario;
+
+/**
+ * Lanzador de los escenarios de estres en PC
+ *
+ * Ejecuta un escenario durante un numero fijo de frames, con la ventana (--backend
+ * desktop, por defecto) o sin ella, con paso fijo y sin esperar a la pantalla
+ * (--backend headless sin pixeles, --backend software componiendo cada frame en
+ * memoria), muestra el informe y termina. Opciones:
+ *
+ *   --scale F        multiplica la carga del juego normal (por defecto 1)
+ *   --balls N        bolas que coexisten
+ *   --particles N    particulas por punto
+ *   --speed S        velocidad de las bolas
+ *   --rate R         puntos por segundo
+ *   --frames N       frames medidos (por defecto 1000)
+ *   --warmup N       frames sin medir al principio (por defecto 120)
+ *   --threads N      hebras del backend software (por defecto tantas como nucleos)
+ *   --out archivo    vuelca las metricas en JSON (.json) o CSV
+ */
+public class StressMain {
+
+    public static void main(String[] args) {
+        float scale = 1;
+        int balls = -1, particles = -1;
+        float speed = -1, rate = -1;
+        int frames = 1000, warmup = 120;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String backend = "desktop";
+        String out = null;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            if (args[i].equals("--scale"))
+                scale = Float.parseFloat(value);
+            else if (args[i].equals("--balls"))
+                balls = Integer.parseInt(value);
+            else if (args[i].equals("--particles"))
+                particles = Integer.parseInt(value);
+            else if (args[i].equals("--speed"))
+                speed = Float.parseFloat(value);
+            else if (args[i].equals("--rate"))
+                rate = Float.parseFloat(value);
+            else if (args[i].equals("--frames"))
+                frames = Integer.parseInt(value);
+            else if (args[i].equals("--warmup"))
+                warmup = Integer.parseInt(value);
+            else if (args[i].equals("--threads"))
+                threads = Integer.parseInt(value);
+            else if (args[i].equals("--backend"))
+                backend = value;
+            else if (args[i].equals("--out"))
+                out = value;
+            else {
+                System.err.println("Opcion desconocida: " + args[i]);
+                return;
+            }
+        }
+
+        // Lo que no se indica sale de la carga normal escalada
+        StressScenario scenario = new StressScenario(
+                balls > 0 ? balls : Math.max(1, Math.round(StressScenario.DEFAULT_BALLS * scale)),
+                particles >= 0 ? particles : Math.max(1, Math.round(StressScenario.DEFAULT_PARTICLES * scale)),
+                speed > 0 ? speed : StressScenario.DEFAULT_SPEED,
+                rate > 0 ? rate : StressScenario.DEFAULT_SCORE_RATE * scale,
+                frames);
+        scenario.setWarmupFrames(warmup);
+
+        if (backend.equals("headless"))
+            runHeadless(scenario, out);
+        else if (backend.equals("software"))
+            runSoftware(scenario, threads, out);
+        else if (backend.equals("desktop"))
+            runDesktop(scenario, out);
+        else
+            System.err.println("Backend desconocido: " + backend);
+    }
+
+    /**
+     * Ejecuta el escenario en una ventana, a la velocidad de la pantalla
+     */
+    private static void runDesktop(StressScenario scenario, final String out) {
+        es.ucm.gdv.engine.desktop.Game game = new es.ucm.gdv.engine.desktop.Game(540, 960);
+        // Sin limite de frames: queremos ver hasta donde llega
+        game.setTargetFps(0);
+        scenario.setListener(new StressScenario.Listener() {
+            @Override
+            public void onFinished(StressScenario s) {
+                finish(s, out);
+                // El bucle de la ventana no termina por si solo
+                System.exit(0);
+            }
+        });
+        if (!start(game, scenario))
+            return;
+        game.run();
+    }
+
+    /**
+     * Ejecuta el escenario sin ventana, con paso fijo y tan rapido como se pueda
+     */
+    private static void runHeadless(StressScenario scenario, String out) {
+        final es.ucm.gdv.engine.headless.Game game = new es.ucm.gdv.engine.headless.Game(1080, 1920);
+        game.setFixedTimestep(1.0 / 60.0);
+        scenario.setListener(new StressScenario.Listener() {
+            @Override
+            public void onFinished(StressScenario s) {
+                game.stop();
+            }
+        });
+        if (!start(game, scenario))
+            return;
+        game.run();
+        finish(scenario, out);
+    }
+
+    /**
+     * Ejecuta el escenario sin ventana con los graficos por software, con paso fijo
+     * y tan rapido como se pueda
+     */
+    private static void runSoftware(StressScenario scenario, int threads, String out) {
+        final es.ucm.gdv.engine.software.Game game = new es.ucm.gdv.engine.software.Game(1080, 1920, threads);
+        game.setFixedTimestep(1.0 / 60.0);
+        scenario.setListener(new StressScenario.Listener() {
+            @Override
+            public void onFinished(StressScenario s) {
+                game.stop();
+            }
+        });
+        if (!start(game, scenario))
+            return;
+        game.run();
+        finish(scenario, out);
+    }
+
+    /**
+     * Inicia el juego con el escenario, pasando por el estado de carga
+     */
+    private static boolean start(Game game, StressScenario scenario) {
+        return game.init(scenario) && Loading.start(game, scenario);
+    }
+
+    /**
+     * Muestra el informe y vuelca las metricas si se ha pedido
+     */
+    private static void finish(StressScenario scenario, String out) {
+        System.out.print(scenario.report());
+        if (out != null)
+            scenario.getMetrics().dump(out);
+    }
+}
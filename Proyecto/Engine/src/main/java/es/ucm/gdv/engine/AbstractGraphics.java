@@ -1,5 +1,8 @@
 package es.ucm.gdv.engine;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Clase que encapsula el reescalado lógico y físico pues
  * es común a todas las plataformas
@@ -15,21 +18,196 @@ public abstract class AbstractGraphics implements Graphics {
     private int logic_height = 1920;
 
     /**
-     * Tamaño real del canvas del juego
+     * Transformación actual entre el canvas lógico y la ventana
+     *
+     * Solo se recalcula cuando la plataforma avisa de un cambio de tamaño
+     * o cuando cambia el tamaño lógico. Al ser inmutable, se puede leer desde
+     * cualquier hebra sin sincronización
+     */
+    private volatile Viewport _viewport = null;
+
+    /**
+     * Caché de imágenes indexada por ruta, compartida por todas las lógicas
+     */
+    private ImageCache _imageCache = new ImageCache();
+
+    /**
+     * Cargador de recursos en segundo plano (se crea bajo demanda)
+     */
+    private AssetLoader _assetLoader = null;
+
+    /**
+     * Atlas de texturas con las imágenes empaquetadas (null si no se ha construido)
+     */
+    private volatile TextureAtlas _atlas = null;
+
+    /**
+     * Cola de pintado por lotes y si hay un lote abierto
+     */
+    private SpriteBatch _batch = new SpriteBatch();
+    private boolean _batching = false;
+
+    /**
+     * Pintados y cambios de estado del frame en curso y del último frame completo
+     */
+    private int _drawCalls = 0;
+    private int _stateChanges = 0;
+    private int _lastDrawCalls = 0;
+    private int _lastStateChanges = 0;
+
+    /**
+     * Pintados descartados por quedar fuera del canvas (o de la zona a repintar) y
+     * pintados y clears descartados por quedar tapados, del frame en curso y del último
+     */
+    private int _culledDraws = 0;
+    private int _occludedDraws = 0;
+    private int _lastCulledDraws = 0;
+    private int _lastOccludedDraws = 0;
+
+    /**
+     * Totales desde el inicio de lo que llega a la plataforma, para el perfilador:
+     * pintados y sus píxeles físicos, y píxeles rellenados y tiempo de los clear
      */
-    private int canvasW = 0;
-    private int canvasH = 0;
+    private long _platformDraws = 0;
+    private long _platformPixels = 0;
+    private long _clearPixels = 0;
+    private long _clearNanos = 0;
 
     /**
-     * Tamaño de la ventana de la aplicacion
+     * Métricas en las que se suman los pintados de cada frame (null si no se miden)
      */
-    private int winW = 0;
-    private int winH = 0;
+    private volatile FrameMetrics _metrics = null;
 
     /**
-     * Ratio logico de la pantalla
+     * Clear pendiente: se retrasa hasta el primer pintado por si este tapa el canvas
+     * entero, en cuyo caso solo hace falta rellenar las bandas laterales
      */
-    private  double _ratio = ((double)logic_width / (double)logic_height);
+    private boolean _pendingClear = false;
+    private int _clearColor = 0;
+
+    /**
+     * Modo de repintado parcial: solo se repinta la zona marcada como modificada
+     */
+    private volatile boolean _dirtyRendering = false;
+
+    /**
+     * Zona modificada en el frame en curso, en el anterior y unión de ambas
+     */
+    private DirtyRegion _dirty = new DirtyRegion();
+    private DirtyRegion _prevDirty = new DirtyRegion();
+    private DirtyRegion _repaint = new DirtyRegion();
+
+    /**
+     * Zona modificada que se está repintando en el frame en curso (normalmente _dirty,
+     * o la de la lista grabada que se está pintando)
+     */
+    private DirtyRegion _current = _dirty;
+
+    /**
+     * Lista en la que se graban los pintados en lugar de hacerse (null si no se graba)
+     */
+    private DrawList _recording = null;
+
+    /**
+     * Viewport con el que se pintó el último frame, si cambia se repinta todo
+     */
+    private Viewport _repaintViewport = null;
+
+    /**
+     * Zona a repintar en el frame en curso (coords físicas) y si los pintados
+     * se recortan a ella
+     */
+    private int _repaintX, _repaintY, _repaintW, _repaintH;
+    private boolean _repaintClipped = false;
+
+    /**
+     * Constructora de imagenes, crea imágenes cargándolas a partir
+     * de una ruta dada
+     *
+     * Antes de cargar la imagen se busca en la caché, de manera que cada
+     * ruta solo se lee y decodifica una vez mientras no sea expulsada
+     *
+     * @param filename ruta donde se encuentra la imagen y su nombre
+     */
+    @Override
+    public Image newImage(String filename) {
+        // Si la imagen está en el atlas devolvemos su región
+        TextureAtlas atlas = _atlas;
+        if (atlas != null) {
+            AtlasImage region = atlas.getRegion(filename);
+            if (region != null)
+                return region;
+        }
+
+        Image image = _imageCache.get(filename);
+        if (image == null) {
+            // Fallo en la caché, la cargamos con la implementación de la plataforma
+            image = loadImage(filename);
+            _imageCache.put(filename, image);
+        }
+        return image;
+    }
+
+    /**
+     * Devuelve el cargador de recursos en segundo plano, lo crea la primera vez
+     * que se pide para no lanzar hebras si nadie lo usa
+     *
+     * @return cargador de recursos
+     */
+    @Override
+    synchronized public AssetLoader getAssetLoader() {
+        if (_assetLoader == null)
+            _assetLoader = new AssetLoader(this);
+        return _assetLoader;
+    }
+
+    /**
+     * Construye el atlas de texturas con las imágenes del manifiesto
+     *
+     * A partir de ese momento newImage devuelve regiones del atlas para esas rutas.
+     * Las imágenes demasiado grandes para una página se guardan en la caché
+     *
+     * @param manifest manifiesto con las imágenes a empaquetar
+     */
+    @Override
+    public void buildAtlas(AssetManifest manifest) {
+        HashMap<String, Image> leftovers = new HashMap<String, Image>();
+        TextureAtlas atlas = TextureAtlas.build(this, manifest.getImages(),
+                TextureAtlas.DEFAULT_PAGE_SIZE, leftovers);
+
+        for (Map.Entry<String, Image> e : leftovers.entrySet())
+            _imageCache.put(e.getKey(), e.getValue());
+
+        _atlas = atlas;
+    }
+
+    /**
+     * Devuelve el atlas de texturas
+     *
+     * @return atlas o null si no se ha construido
+     */
+    @Override
+    public TextureAtlas getAtlas() {
+        return _atlas;
+    }
+
+    /**
+     * Devuelve la caché de imágenes (para consultar sus contadores)
+     *
+     * @return caché de imágenes
+     */
+    public ImageCache getImageCache() {
+        return _imageCache;
+    }
+
+    /**
+     * Establece el presupuesto en bytes de la caché de imágenes
+     *
+     * @param bytes presupuesto máximo
+     */
+    public void setImageCacheBudget(long bytes) {
+        _imageCache.setBudget(bytes);
+    }
 
     /**
      * Dibuja la imagen con el alpha dado
@@ -45,8 +223,8 @@ public abstract class AbstractGraphics implements Graphics {
      */
     @Override
     public void drawImage(Image image, float destX, float destY, Rect source, float alpha) {
-        Rect dest = new Rect(destX, destY, source._w, source._h);
-        drawImage(image, dest, source, alpha);
+        drawImage(image, source._x, source._y, source._w, source._h,
+                destX, destY, source._w, source._h, alpha);
     }
 
     /**
@@ -62,14 +240,580 @@ public abstract class AbstractGraphics implements Graphics {
      */
     @Override
     public void drawImage(Image image, Rect dest, Rect source, float alpha){
+        drawImage(image, source._x, source._y, source._w, source._h,
+                dest._x, dest._y, dest._w, dest._h, alpha);
+    }
+
+    /**
+     * Dibuja la imagen con el alpha dado, recibiendo los rects como valores sueltos
+     *
+     * Es el camino de pintado principal: no reserva memoria, la transformación de
+     * coordenadas lógicas a físicas se hace directamente sobre los floats
+     *
+     * @param image Imagen a dibujar
+     * @param sx Pos x de la porcion de imagen a dibujar
+     * @param sy Pos y de la porcion de imagen a dibujar
+     * @param sw Anchura de la porcion de imagen a dibujar
+     * @param sh Altura de la porcion de imagen a dibujar
+     * @param dx Pos x destino en coord logicas
+     * @param dy Pos y destino en coord logicas
+     * @param dw Anchura destino en coord logicas
+     * @param dh Altura destino en coord logicas
+     * @param alpha Transparencia de la imagen
+     */
+    @Override
+    public void drawImage(Image image, float sx, float sy, float sw, float sh,
+                          float dx, float dy, float dw, float dh, float alpha) {
+        if (_recording != null)
+            _recording.addDraw(image, sx, sy, sw, sh, dx, dy, dw, dh, alpha);
+        else
+            doDrawImage(image, sx, sy, sw, sh, dx, dy, dw, dh, alpha);
+    }
+
+    /**
+     * Hace un pintado sin grabarlo, con el rect fuente en píxeles de la imagen y
+     * el destino en coordenadas lógicas
+     */
+    void doDrawImage(Image image, float sx, float sy, float sw, float sh,
+                     float dx, float dy, float dw, float dh, float alpha) {
+
+        // La clasificación es la de la imagen original, no la de la página del atlas
+        Transparency transparency = image.getTransparency();
+
+        // Si es una región del atlas pintamos la página con el rect fuente desplazado
+        if (image instanceof AtlasImage) {
+            AtlasImage region = (AtlasImage)image;
+            Rect r = region.getRegion();
+            sx += r._x;
+            sy += r._y;
+            image = region.getPage();
+        }
+
+        // Descartamos lo que queda fuera del canvas lógico
+        if (dx >= logic_width || dy >= logic_height || dx + dw <= 0 || dy + dh <= 0 || dw <= 0 || dh <= 0) {
+            _culledDraws++;
+            return;
+        }
+
+        // Dentro de un lote el pintado se encola
+        if (_batching) {
+            // El lote se vacía si se llena
+            if (_batch.size() >= SpriteBatch.MAX_COMMANDS)
+                _batch.flush(this);
+            _batch.add(image, sx, sy, sw, sh, dx, dy, dw, dh, alpha, transparency);
+        }
+        else {
+            // Si tapa el canvas entero, del clear pendiente solo quedan las bandas
+            flushClear(coversCanvas(dx, dy, dw, dh, alpha, transparency));
+            submitDraw(image, sx, sy, sw, sh, dx, dy, dw, dh, alpha, transparency);
+        }
+    }
+
+    /**
+     * Abre un lote de pintado: hasta endBatch los pintados se encolan en lugar de
+     * hacerse inmediatamente (incluidos los de drawImage)
+     */
+    @Override
+    public void beginBatch() {
+        if (_recording != null)
+            _recording.addBeginBatch();
+        else
+            doBeginBatch();
+    }
+
+    /**
+     * Abre un lote sin grabarlo
+     */
+    void doBeginBatch() {
+        _batching = true;
+    }
+
+    /**
+     * Encola un pintado en el lote abierto, si no hay lote se pinta directamente
+     *
+     * @param image Imagen a dibujar
+     * @param dest Posicion en la que dibujar en coordenadas logicas
+     * @param source Porcion de imagen a dibujar
+     * @param alpha Transparencia de la imagen
+     */
+    @Override
+    public void draw(Image image, Rect dest, Rect source, float alpha) {
+        drawImage(image, source._x, source._y, source._w, source._h,
+                dest._x, dest._y, dest._w, dest._h, alpha);
+    }
+
+    /**
+     * Cierra el lote: agrupa los pintados por imagen y alpha donde el orden en z
+     * lo permite y los envía a la plataforma en una única pasada
+     */
+    @Override
+    public void endBatch() {
+        if (_recording != null)
+            _recording.addEndBatch();
+        else
+            doEndBatch();
+    }
+
+    /**
+     * Cierra el lote sin grabarlo
+     */
+    void doEndBatch() {
+        _batching = false;
+        _batch.flush(this);
+        flushClear(false);
+    }
+
+    /**
+     * Pinta la pantalla al completo con un color dado
+     *
+     * El relleno se retrasa hasta el primer pintado: si este es opaco y tapa el
+     * canvas entero, solo se rellenan las bandas laterales
+     *
+     * @param color Color del que se pintara la pantalla
+     */
+    @Override
+    public void clear(int color) {
+        if (_recording != null)
+            _recording.addClear(color);
+        else
+            doClear(color);
+    }
+
+    /**
+     * Hace el clear sin grabarlo
+     */
+    void doClear(int color) {
+        // Lo que hubiera en el lote queda tapado por el clear
+        _occludedDraws += _batch.size();
+        _batch.clear();
+        if (_pendingClear)
+            _occludedDraws++;
+        _pendingClear = true;
+        _clearColor = color;
+    }
+
+    /**
+     * Envía a la plataforma lo que quede pendiente (el lote abierto y el clear retrasado).
+     * La plataforma lo llama al terminar el render de cada frame. Mientras se graba no hace nada
+     */
+    public void flush() {
+        if (_recording == null)
+            doFlush();
+    }
+
+    /**
+     * Envía lo pendiente sin pasar por la grabación
+     */
+    void doFlush() {
+        if (_batching)
+            doEndBatch();
+        flushClear(false);
+        flushPrivate();
+    }
+
+    /**
+     * Se llama al terminar cada flush, después de enviar a la plataforma to-do lo pendiente.
+     * Las plataformas que acumulan los pintados pueden hacerlos aquí
+     */
+    protected void flushPrivate() {
+    }
+
+    /**
+     * Empieza a grabar en una lista los pintados pedidos a este controlador, en lugar
+     * de hacerlos. Se usa para pintar en otra hebra lo que la lógica pinta en la suya
+     *
+     * @param list lista en la que grabar (ya vacía)
+     */
+    public void startRecording(DrawList list) {
+        _recording = list;
+    }
+
+    /**
+     * Termina la grabación. La zona modificada desde la anterior pasa a la lista
+     * y deja de estar pendiente en este controlador
+     */
+    public void stopRecording() {
+        _recording.getDirtyRegion().add(_dirty);
+        _dirty.clear();
+        _recording = null;
+    }
+
+    /**
+     * Indica si un pintado es opaco y tapa el canvas lógico entero
+     *
+     * @param dx Pos x destino en coord logicas
+     * @param dy Pos y destino en coord logicas
+     * @param dw Anchura destino en coord logicas
+     * @param dh Altura destino en coord logicas
+     * @param alpha Transparencia del pintado
+     * @param transparency Clasificación de la imagen según su alpha
+     *
+     * @return true si no deja ver nada de lo pintado antes dentro del canvas
+     */
+    boolean coversCanvas(float dx, float dy, float dw, float dh, float alpha, Transparency transparency) {
+        return transparency == Transparency.OPAQUE && alphaLevel(alpha) == 255
+                && dx <= 0 && dy <= 0 && dx + dw >= logic_width && dy + dh >= logic_height;
+    }
+
+    /**
+     * Cuantiza un alpha a los 256 niveles con los que pintan las plataformas, redondeando
+     * al más cercano. Los pintados directos y los de un lote deben dar el mismo nivel
+     *
+     * @param alpha Transparencia del pintado (0-255)
+     *
+     * @return nivel entre 0 y 255
+     */
+    protected static int alphaLevel(float alpha) {
+        return alpha <= 0 ? 0 : (alpha >= 255 ? 255 : (int)(alpha + 0.5f));
+    }
+
+    /**
+     * Hace el clear pendiente
+     *
+     * @param covered true si el siguiente pintado tapa el canvas y basta con las bandas laterales
+     */
+    void flushClear(boolean covered) {
+        if (!_pendingClear)
+            return;
+        _pendingClear = false;
+        long start = System.nanoTime();
+        Viewport v = getViewport();
+        if (!covered) {
+            clearPrivate(_clearColor);
+            _clearPixels += (long)v.windowWidth * v.windowHeight;
+        }
+        else {
+            _occludedDraws++;
+            int left = (int)Math.ceil(v.offsetX);
+            int top = (int)Math.ceil(v.offsetY);
+            int right = (int)Math.floor(v.offsetX + v.canvasWidth);
+            int bottom = (int)Math.floor(v.offsetY + v.canvasHeight);
+            if (left > 0)
+                fillBand(0, 0, left, v.windowHeight);
+            if (right < v.windowWidth)
+                fillBand(right, 0, v.windowWidth - right, v.windowHeight);
+            if (top > 0)
+                fillBand(0, 0, v.windowWidth, top);
+            if (bottom < v.windowHeight)
+                fillBand(0, bottom, v.windowWidth, v.windowHeight - bottom);
+        }
+        _clearNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Rellena una banda lateral con el color del clear
+     */
+    private void fillBand(int x, int y, int w, int h) {
+        fillRectPrivate(_clearColor, x, y, w, h);
+        _clearPixels += (long)w * h;
+    }
+
+    /**
+     * Anota pintados descartados por quedar tapados por otro posterior
+     *
+     * @param n número de pintados descartados
+     */
+    void countOccluded(int n) {
+        _occludedDraws += n;
+    }
+
+    /**
+     * Transforma el rect destino a coordenadas físicas y pinta con la plataforma
+     *
+     * @param image Imagen a dibujar (ya resuelta a la página del atlas)
+     * @param sx Pos x de la porcion de imagen a dibujar
+     * @param sy Pos y de la porcion de imagen a dibujar
+     * @param sw Anchura de la porcion de imagen a dibujar
+     * @param sh Altura de la porcion de imagen a dibujar
+     * @param dx Pos x destino en coord logicas
+     * @param dy Pos y destino en coord logicas
+     * @param dw Anchura destino en coord logicas
+     * @param dh Altura destino en coord logicas
+     * @param alpha Transparencia de la imagen
+     * @param transparency Clasificación según el alpha de la imagen original
+     */
+    void submitDraw(Image image, float sx, float sy, float sw, float sh,
+                    float dx, float dy, float dw, float dh, float alpha, Transparency transparency) {
+
+        // Si queda un clear pendiente va por debajo de este pintado
+        flushClear(false);
 
         // Transformamos las coordenadas lógicas a físicas
-        Rect newDest = logicToPhysic(dest);
+        Viewport v = getViewport();
+        float px = dx * v.scaleX + v.offsetX;
+        float py = dy * v.scaleY + v.offsetY;
+        float pw = dw * v.scaleX;
+        float ph = dh * v.scaleY;
+
+        // En repintado parcial descartamos lo que queda fuera de la zona a repintar
+        if (_repaintClipped && (px >= _repaintX + _repaintW || px + pw <= _repaintX
+                || py >= _repaintY + _repaintH || py + ph <= _repaintY)) {
+            _culledDraws++;
+            return;
+        }
 
         // Por ultimo llamamos al exclusivo de la plataforma
-        drawImagePrivate(image, newDest, source, alpha);
+        _drawCalls++;
+        _platformDraws++;
+        _platformPixels += (long)Math.abs(pw * ph);
+        drawImagePrivate(image, sx, sy, sw, sh, px, py, pw, ph, alpha, transparency);
     }
 
+    /**
+     * Marca el comienzo de un frame: guarda los contadores del frame anterior y los reinicia
+     *
+     * La plataforma lo llama cuando recibe el contexto de pintado de un frame nuevo
+     */
+    protected void beginFrame() {
+        FrameMetrics metrics = _metrics;
+        if (metrics != null)
+            metrics.addDrawCalls(_drawCalls);
+        _lastDrawCalls = _drawCalls;
+        _lastStateChanges = _stateChanges;
+        _lastCulledDraws = _culledDraws;
+        _lastOccludedDraws = _occludedDraws;
+        _drawCalls = 0;
+        _stateChanges = 0;
+        _culledDraws = 0;
+        _occludedDraws = 0;
+    }
+
+    /**
+     * Asigna las métricas en las que se suman los pintados de cada frame
+     *
+     * @param metrics métricas, o null para no medir
+     */
+    public void setMetrics(FrameMetrics metrics) {
+        _metrics = metrics;
+    }
+
+    /**
+     * Devuelve el número de pintados descartados en el último frame completo por
+     * quedar fuera del canvas o de la zona a repintar
+     *
+     * @return pintados descartados
+     */
+    @Override
+    public int getCulledDraws() {
+        return _lastCulledDraws;
+    }
+
+    /**
+     * Devuelve el número de pintados y clears descartados en el último frame completo
+     * por quedar tapados por un pintado opaco posterior
+     *
+     * @return pintados tapados
+     */
+    @Override
+    public int getOccludedDraws() {
+        return _lastOccludedDraws;
+    }
+
+    /**
+     * Activa o desactiva el repintado parcial. Al cambiar de modo se repinta todo
+     *
+     * @param enabled true para repintar solo la zona modificada
+     */
+    @Override
+    public void setDirtyRendering(boolean enabled) {
+        _dirtyRendering = enabled;
+        _dirty.addAll();
+    }
+
+    /**
+     * Indica si está activo el repintado parcial
+     *
+     * @return true si solo se repinta la zona modificada
+     */
+    @Override
+    public boolean isDirtyRendering() {
+        return _dirtyRendering;
+    }
+
+    /**
+     * Devuelve la región donde se marca la zona modificada en el frame en curso
+     *
+     * @return región modificada
+     */
+    @Override
+    public DirtyRegion getDirtyRegion() {
+        return _dirty;
+    }
+
+    /**
+     * Calcula la zona de la ventana a repintar en este frame. La plataforma lo llama
+     * antes de pintar y, si devuelve false, puede saltarse el frame entero
+     *
+     * Sin repintado parcial la zona es siempre la ventana entera. Con él es la unión
+     * de lo modificado en este frame y en el anterior, pasada a coordenadas físicas
+     *
+     * @return false si no hay nada que repintar
+     */
+    public boolean beginRepaint() {
+        return beginRepaint(_dirty);
+    }
+
+    /**
+     * Calcula la zona a repintar en este frame a partir de una zona modificada dada,
+     * por ejemplo la de una lista grabada en otra hebra
+     *
+     * @param dirty zona modificada desde el frame anterior
+     *
+     * @return false si no hay nada que repintar
+     */
+    public boolean beginRepaint(DirtyRegion dirty) {
+        _current = dirty;
+        Viewport v = getViewport();
+        _repaintClipped = false;
+
+        // Sin repintado parcial se repinta todo
+        if (!_dirtyRendering) {
+            setRepaintArea(0, 0, v.windowWidth, v.windowHeight);
+            return true;
+        }
+        // Si ha cambiado el tamaño hay que repintar todo en los dos buffers
+        if (v != _repaintViewport) {
+            _repaintViewport = v;
+            repaintAll();
+            return true;
+        }
+
+        _repaint.set(dirty);
+        _repaint.add(_prevDirty);
+        if (_repaint.isEmpty())
+            return false;
+        if (_repaint.isFull()) {
+            setRepaintArea(0, 0, v.windowWidth, v.windowHeight);
+            return true;
+        }
+
+        // Pasamos la unión a coordenadas físicas, con un píxel de margen por el redondeo
+        int left = (int)Math.floor(_repaint.getX() * v.scaleX + v.offsetX) - 1;
+        int top = (int)Math.floor(_repaint.getY() * v.scaleY + v.offsetY) - 1;
+        int right = (int)Math.ceil((_repaint.getX() + _repaint.getW()) * v.scaleX + v.offsetX) + 1;
+        int bottom = (int)Math.ceil((_repaint.getY() + _repaint.getH()) * v.scaleY + v.offsetY) + 1;
+        setRepaintArea(left, top, right - left, bottom - top);
+        return _repaintW > 0 && _repaintH > 0;
+    }
+
+    /**
+     * Cambia la zona a repintar en el frame en curso, por ejemplo si la plataforma
+     * la amplía. Se recorta a la ventana
+     *
+     * @param x coordenada x física
+     * @param y coordenada y física
+     * @param w ancho físico
+     * @param h alto físico
+     */
+    public void setRepaintArea(int x, int y, int w, int h) {
+        Viewport v = getViewport();
+        int left = Math.max(0, x), top = Math.max(0, y);
+        int right = Math.min(v.windowWidth, x + w), bottom = Math.min(v.windowHeight, y + h);
+        _repaintX = left;
+        _repaintY = top;
+        _repaintW = Math.max(0, right - left);
+        _repaintH = Math.max(0, bottom - top);
+        _repaintClipped = _repaintX > 0 || _repaintY > 0
+                || _repaintW < v.windowWidth || _repaintH < v.windowHeight;
+    }
+
+    /**
+     * Hace que el frame en curso se repinte entero, por ejemplo si la plataforma
+     * ha perdido el contenido del buffer. También se repintará entero el siguiente
+     */
+    public void repaintAll() {
+        Viewport v = getViewport();
+        setRepaintArea(0, 0, v.windowWidth, v.windowHeight);
+        _current.addAll();
+    }
+
+    /**
+     * Termina el frame: lo modificado en él pasa a ser lo del frame anterior
+     */
+    public void endRepaint() {
+        _prevDirty.set(_current);
+        _current.clear();
+        _current = _dirty;
+        _repaintClipped = false;
+    }
+
+    /**
+     * Indica si los pintados del frame en curso se recortan a la zona a repintar
+     *
+     * @return true si solo se repinta parte de la ventana
+     */
+    public boolean isRepaintClipped() {
+        return _repaintClipped;
+    }
+
+    /**
+     * Devuelve la x de la zona a repintar (coords físicas)
+     * @return coordenada x
+     */
+    public int getRepaintX() { return _repaintX; }
+
+    /**
+     * Devuelve la y de la zona a repintar (coords físicas)
+     * @return coordenada y
+     */
+    public int getRepaintY() { return _repaintY; }
+
+    /**
+     * Devuelve el ancho de la zona a repintar (coords físicas)
+     * @return ancho
+     */
+    public int getRepaintW() { return _repaintW; }
+
+    /**
+     * Devuelve el alto de la zona a repintar (coords físicas)
+     * @return alto
+     */
+    public int getRepaintH() { return _repaintH; }
+
+    /**
+     * Anota un cambio de estado de pintado hecho por la plataforma
+     */
+    protected void countStateChange() {
+        _stateChanges++;
+    }
+
+    /**
+     * Indica si los pintados se están grabando en vez de enviarse a la plataforma
+     *
+     * @return true en el modo de dos hebras, mientras la lógica pinta
+     */
+    boolean isRecording() {
+        return _recording != null;
+    }
+
+    // Totales de lo que ha llegado a la plataforma desde el inicio, para el perfilador
+    long getPlatformDraws() { return _platformDraws; }
+
+    long getPlatformPixels() { return _platformPixels; }
+
+    long getClearPixels() { return _clearPixels; }
+
+    long getClearNanos() { return _clearNanos; }
+
+    /**
+     * Devuelve el número de pintados enviados a la plataforma en el último frame completo
+     *
+     * @return pintados del último frame
+     */
+    @Override
+    public int getDrawCalls() {
+        return _lastDrawCalls;
+    }
+
+    /**
+     * Devuelve el número de cambios de estado de pintado del último frame completo
+     *
+     * @return cambios de estado del último frame
+     */
+    @Override
+    public int getStateChanges() {
+        return _lastStateChanges;
+    }
 
     /**
      * Establece el tamáño lógico del canvas
@@ -81,6 +825,11 @@ public abstract class AbstractGraphics implements Graphics {
     public void setCanvasSize(int w, int h) {
         logic_width = w;
         logic_height = h;
+
+        // Cambia la transformación, la recalculamos con el tamaño de ventana actual
+        Viewport v = _viewport;
+        if (v != null)
+            updateViewport(v.windowWidth, v.windowHeight);
     }
 
     /**
@@ -113,43 +862,12 @@ public abstract class AbstractGraphics implements Graphics {
      */
     @Override
     public Rect logicToPhysic(Rect dest) {
+        Viewport v = getViewport();
 
-        // Calculamos el tamaño de la ventana
-        calcWindowSize();
-
-        // Calculamos el tamaño real de nuestro canvas de juego
-        calcRealCanvasSize();
-
-        // Anchura lógica
-        float imgWidth = dest._w;
-        float imgHeight = dest._h;
-
-        // Calculamos el tamaño que va a tener la imagen en la pantalla
-        // Multiplicamos el alto y el ancho por el aspect ratio
-        float newImgWidth, newImgHeight;
-        newImgWidth = (imgWidth * (canvasW / (float) logic_width));
-        newImgHeight = (imgHeight * (canvasH / (float)logic_height));
-
-        // Posición lógica
-        float posX = dest._x;
-        float posY = dest._y;
-
-        // El offset es necesario para pintar el canvas y el contenido centrado
-        float offsetX = ((winW - canvasW) / 2.0f);
-        float offsetY = ((winH - canvasH) / 2.0f);
-
-        // Calculamos la posicion de la img en pantalla
-        // Multiplicamos la x,y por el aspect ratio
-        float newPosX, newPosY;
-        newPosX = (posX * canvasW / (float) logic_width);
-        newPosX += offsetX;
-        newPosY = (posY * canvasH / (float) logic_height);
-        newPosY += offsetY;
-
-        // Calculamos el rect final, con la posición y dimensión fisicas
-        Rect newDest = new Rect(newPosX, newPosY, newImgWidth, newImgHeight);
-
-        return newDest;
+        // Multiplicamos la posición y las dimensiones por la escala
+        // y sumamos el offset para pintar el canvas centrado
+        return new Rect(dest._x * v.scaleX + v.offsetX, dest._y * v.scaleY + v.offsetY,
+                dest._w * v.scaleX, dest._h * v.scaleY);
     }
 
     /**
@@ -170,76 +888,113 @@ public abstract class AbstractGraphics implements Graphics {
      */
     @Override
     public Rect physicToLogic(Rect dest) {
+        Viewport v = getViewport();
 
-        // Calculamos el tamaño de la ventana
-        calcWindowSize();
-
-        // Calculamos el tamaño real de nuestro canvas de juego
-        calcRealCanvasSize();
-
-        // Para deshacer el reescalado de la img y calcular el logico
-        float imgWidth = dest._w;
-        float imgHeight = dest._h;
-
-        float oldImgWidth, oldImgHeight;
-        oldImgWidth = (imgWidth / (canvasW / (float) logic_width));
-        oldImgHeight = (imgHeight / (canvasH / (float)logic_height));
+        // Importante restar antes el Offset que deshacer la escala
+        return new Rect((dest._x - v.offsetX) / v.scaleX, (dest._y - v.offsetY) / v.scaleY,
+                dest._w / v.scaleX, dest._h / v.scaleY);
+    }
 
-        // Para deshacer el centrado en la pantalla y calcular la posicion logica
-        float posX = dest._x;
-        float posY = dest._y;
+    /**
+     * Devuelve la transformación actual entre canvas lógico y ventana
+     *
+     * Si la plataforma todavía no ha avisado de ningún tamaño (o la ventana aún
+     * no tenía tamaño), se calcula preguntando a la ventana
+     *
+     * @return viewport actual
+     */
+    public Viewport getViewport() {
+        Viewport v = _viewport;
+        if (v == null || v.windowWidth == 0)
+            v = updateViewport();
+        return v;
+    }
 
-        float offsetX = ((winW - canvasW) / 2.0f);
-        float offsetY = ((winH - canvasH) / 2.0f);
+    /**
+     * Recalcula la transformación preguntando a la plataforma el tamaño de la ventana
+     *
+     * @return viewport nuevo
+     */
+    public Viewport updateViewport() {
+        return updateViewport(getWindowWidth(), getWindowHeight());
+    }
 
-        // Importante restar antes el Offset que la transformación
-        float oldPosX, oldPosY;
-        posX -= offsetX;
-        oldPosX = (posX * (float) logic_width) / canvasW;
-        posY -= offsetY;
-        oldPosY = (posY * (float) logic_height / canvasH);
+    /**
+     * Recalcula la transformación con el tamaño de ventana dado. Las plataformas
+     * lo llaman desde sus callbacks de cambio de tamaño
+     *
+     * @param winW ancho de la ventana
+     * @param winH alto de la ventana
+     *
+     * @return viewport nuevo
+     */
+    public Viewport updateViewport(int winW, int winH) {
+        Viewport v = new Viewport(logic_width, logic_height, winW, winH);
+        _viewport = v;
+        return v;
+    }
 
-        // Calculamos el rect final, con la posición y dimensión fisicas
-        Rect oldDest = new Rect(oldPosX, oldPosY, oldImgWidth, oldImgHeight);
+    /**
+     * Implementacion que se encarga de la carga de imágenes exclusiva de cada plataforma
+     *
+     * Solo se llama cuando la imagen no está en la caché
+     *
+     * @param filename ruta donde se encuentra la imagen y su nombre
+     *
+     * @return imagen cargada o null si ha habido algún error
+     */
+    protected abstract Image loadImage(String filename);
 
-        return oldDest;
-    }
+    /**
+     * Implementacion que se encarga de componer una página del atlas en cada plataforma
+     *
+     * @param width ancho de la página
+     * @param height alto de la página
+     * @param images imágenes a copiar en la página (ya no se usan después)
+     * @param xs coordenada x de cada imagen en la página
+     * @param ys coordenada y de cada imagen en la página
+     *
+     * @return la página o null si no se ha podido crear
+     */
+    protected abstract Image createAtlasPage(int width, int height, Image[] images, int[] xs, int[] ys);
 
     /**
-     * Calcula el tamaño de la ventana
+     * Rellena la ventana entera con un color (implementación de la plataforma)
+     *
+     * @param color color de relleno (ARGB)
      */
-    public void calcWindowSize() {
-        winW = getWindowWidth();
-        winH = getWindowHeight();
-    }
+    protected abstract void clearPrivate(int color);
 
     /**
-     * Calcula el tamaño real del canvas del juego
+     * Rellena un rect de la ventana con un color, sin mezclar con lo que hubiera
+     *
+     * @param color color de relleno (ARGB)
+     * @param x coordenada x física
+     * @param y coordenada y física
+     * @param w ancho físico
+     * @param h alto físico
      */
-    public void calcRealCanvasSize() {
-        // Buscamos el maximo tamaño posible del canvas
-        // a lo ancho o a lo alto
-        if (winW / (double)winH >= _ratio) {
-            // nos quedamos con el alto maximo
-            // para aprovechar el espacio
-            canvasH = winH;
-            canvasW = (int)((double)winH * logic_width / logic_height);
-        }
-        else {
-            // nos quedamos con el ancho maximo
-            // para aprovechar el espacio
-            canvasW = winW;
-            canvasH = (int)((double)winW * logic_height / logic_width);
-        }
-    }
+    protected abstract void fillRectPrivate(int color, int x, int y, int w, int h);
 
     /**
      * Implementacion que se encarga del pintado exclusivo de cada plataforma
      *
+     * Recibe los rects como valores sueltos para no reservar memoria en cada pintado.
+     * Si la imagen es opaca y el alpha es 255 puede pintarse con una copia directa
+     *
      * @param image imagen a pintar
-     * @param dest rectangulo donde se pintara
-     * @param source rectangulo fuente
+     * @param sx x del rectangulo fuente
+     * @param sy y del rectangulo fuente
+     * @param sw anchura del rectangulo fuente
+     * @param sh altura del rectangulo fuente
+     * @param dx x del rectangulo donde se pintara (coords fisicas)
+     * @param dy y del rectangulo donde se pintara (coords fisicas)
+     * @param dw anchura del rectangulo donde se pintara (coords fisicas)
+     * @param dh altura del rectangulo donde se pintara (coords fisicas)
      * @param alpha transparencia de la imagen
+     * @param transparency clasificación según el alpha de la imagen (la original si es del atlas)
      */
-    protected abstract void drawImagePrivate(Image image, Rect dest, Rect source, float alpha);
+    protected abstract void drawImagePrivate(Image image, float sx, float sy, float sw, float sh,
+                                             float dx, float dy, float dw, float dh, float alpha,
+                                             Transparency transparency);
 }
@@ -16,6 +16,20 @@ public abstract class AbstractInput implements Input {
      */
     protected ArrayList<TouchEvent> _touchEvents;
 
+    /**
+     * Eventos repetidos del frame actual, aparte de los de la plataforma para
+     * que no se descarten durante las cargas
+     */
+    private ArrayList<TouchEvent> _replayEvents = new ArrayList<TouchEvent>();
+
+    /**
+     * Copia de los eventos que se ha entregado a la lógica en este frame, y cuántos
+     * eran repetidos y cuántos de la plataforma. Es lo que se graba y se quita al vaciar
+     */
+    private ArrayList<TouchEvent> _snapshot = new ArrayList<TouchEvent>();
+    private int _snapshotReplayed = 0;
+    private int _snapshotLive = 0;
+
     /**
      * Necesitamos tener acceso al Graphics debido a su funcionalidad
      * de transformar coordenadas físicas a lógicas
@@ -26,6 +40,18 @@ public abstract class AbstractInput implements Input {
      */
     protected  Graphics _graphics;
 
+    /**
+     * Grabación y repetición de la partida (null si no se usan)
+     */
+    protected InputRecorder _recorder = null;
+    protected InputReplayer _replayer = null;
+
+    /**
+     * Veces que la lógica ha vaciado la lista de eventos: es el frame con el
+     * que se graban y repiten los eventos
+     */
+    protected int _frame = 0;
+
     /**
      * Constructora
      *
@@ -37,14 +63,24 @@ public abstract class AbstractInput implements Input {
     }
 
     /**
-     * Devuelve la lista de eventos
-     *Necesario que sea synchronized para evitar problemas a la hora de acceder a la lista
+     * Devuelve una copia de los eventos recibidos hasta ahora, que es lo que ve la lógica
+     * en este frame. Los que lleguen después se quedan para el frame siguiente
+     * Necesario que sea synchronized para evitar problemas a la hora de acceder a la lista
+     *
+     * La copia se reutiliza: solo es válida hasta la siguiente llamada
      *
      * @return la lista de eventos
      */
     @Override
     synchronized public ArrayList<TouchEvent> getTouchEvents() {
-        return _touchEvents;
+        _snapshot.clear();
+        for (int i = 0; i < _replayEvents.size(); i++)
+            _snapshot.add(_replayEvents.get(i));
+        for (int i = 0; i < _touchEvents.size(); i++)
+            _snapshot.add(_touchEvents.get(i));
+        _snapshotReplayed = _replayEvents.size();
+        _snapshotLive = _touchEvents.size();
+        return _snapshot;
     }
 
     /**
@@ -59,11 +95,76 @@ public abstract class AbstractInput implements Input {
     }
 
     /**
-     * Limpia la lista de eventos
+     * Quita de la lista los eventos entregados a la lógica en este frame y pasa al siguiente
      * Necesario que sea synchronized para evitar problemas a la hora de acceder a la lista
+     *
+     * Si se está grabando, antes graba exactamente los eventos entregados, y si se
+     * está repitiendo, después prepara los eventos grabados del frame siguiente
      */
     @Override
     synchronized public void clearTouchEvents() {
+        if (_recorder != null)
+            _recorder.record(_frame, _snapshot);
+        _replayEvents.subList(0, _snapshotReplayed).clear();
+        _touchEvents.subList(0, _snapshotLive).clear();
+        _snapshot.clear();
+        _snapshotReplayed = _snapshotLive = 0;
+
+        _frame++;
+        if (_replayer != null)
+            _replayer.feed(_frame, _replayEvents);
+    }
+
+    /**
+     * Descarta los eventos de la plataforma sin que cuente como frame: no se graban ni
+     * se avanza el frame, y los eventos repetidos se guardan para la siguiente lógica.
+     * Para las pantallas que no son parte de la partida, como la de carga, cuyo número
+     * de frames depende de la máquina
+     */
+    @Override
+    synchronized public void discardTouchEvents() {
         _touchEvents.clear();
+        _snapshot.clear();
+        _snapshotReplayed = _snapshotLive = 0;
+    }
+
+    /**
+     * Empieza a grabar los eventos que recibe la lógica desde el frame 0
+     *
+     * @param recorder grabación (null para dejar de grabar)
+     */
+    @Override
+    synchronized public void setRecorder(InputRecorder recorder) {
+        _recorder = recorder;
+        _frame = 0;
+        _snapshot.clear();
+        _snapshotReplayed = _snapshotLive = 0;
+    }
+
+    /**
+     * Empieza a repetir eventos grabados desde el frame 0. Los eventos
+     * de la plataforma se siguen añadiendo
+     *
+     * @param replayer repetición (null para dejar de repetir)
+     */
+    @Override
+    synchronized public void setReplayer(InputReplayer replayer) {
+        _replayer = replayer;
+        _frame = 0;
+        _replayEvents.clear();
+        _snapshot.clear();
+        _snapshotReplayed = _snapshotLive = 0;
+        if (_replayer != null)
+            _replayer.feed(_frame, _replayEvents);
+    }
+
+    /**
+     * Devuelve las veces que la lógica ha vaciado la lista de eventos
+     *
+     * @return frame actual del input
+     */
+    @Override
+    synchronized public int getFrame() {
+        return _frame;
     }
 }
@@ -0,0 +1,251 @@
+package es.ucm.gdv.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cargador de recursos en segundo plano
+ *
+ * Decodifica en paralelo las imágenes de un AssetManifest sobre un pool de hebras
+ * acotado, de manera que el bucle principal no se congela durante los cambios de estado.
+ * Las imágenes pasan por Graphics.newImage, así que una vez cargadas quedan en la caché
+ * y la inicialización del estado las obtiene sin volver a leerlas de disco
+ */
+public class AssetLoader {
+
+    /**
+     * Número máximo de hebras de carga
+     */
+    private static final int MAX_THREADS = 4;
+
+    /**
+     * Controlador de gráficos con el que se cargan las imágenes
+     */
+    private Graphics _graphics;
+
+    /**
+     * Pool de hebras de carga
+     */
+    private ExecutorService _pool;
+
+    /**
+     * Carga en curso de un manifiesto
+     *
+     * Permite consultar el progreso, esperar a que termine y obtener las imágenes
+     */
+    public static class Handle {
+
+        /**
+         * Rutas de las imágenes que se están cargando
+         */
+        private List<String> _paths;
+
+        /**
+         * Resultado de la carga de cada imagen, en el mismo orden que las rutas
+         */
+        private List<Future<Image>> _futures;
+
+        /**
+         * Número de imágenes que ya se han terminado de cargar
+         */
+        private AtomicInteger _loaded = new AtomicInteger(0);
+
+        /**
+         * Constructora
+         *
+         * @param paths rutas de las imágenes
+         * @param tasks número de tareas de carga
+         */
+        Handle(List<String> paths, int tasks) {
+            _paths = paths;
+            _futures = new ArrayList<Future<Image>>(tasks);
+        }
+
+        /**
+         * Devuelve el progreso de la carga
+         *
+         * @return valor entre 0 y 1
+         */
+        public float getProgress() {
+            if (_futures.isEmpty())
+                return 1;
+            return _loaded.get() / (float)_futures.size();
+        }
+
+        /**
+         * Indica si la carga ha terminado
+         *
+         * @return true si se han cargado todas las imágenes
+         */
+        public boolean isDone() {
+            return _loaded.get() == _futures.size();
+        }
+
+        /**
+         * Bloquea hasta que termine la carga
+         */
+        public void await() {
+            for (Future<Image> f : _futures) {
+                try {
+                    f.get();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                catch (ExecutionException e) {
+                    // El error ya se ha avisado en la hebra de carga
+                }
+            }
+        }
+
+        /**
+         * Espera como mucho el tiempo dado a que termine la carga
+         *
+         * @param millis tiempo máximo de espera en milisegundos
+         *
+         * @return true si la carga ha terminado
+         */
+        public boolean await(long millis) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+            for (Future<Image> f : _futures) {
+                try {
+                    f.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                }
+                catch (TimeoutException e) {
+                    return false;
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                catch (ExecutionException e) {
+                    // El error ya se ha avisado en la hebra de carga
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Devuelve una imagen del manifiesto, esperando a que esté cargada si hace falta
+         *
+         * @param filename ruta de la imagen
+         *
+         * @return la imagen o null si no está en el manifiesto o falló la carga
+         */
+        public Image getImage(String filename) {
+            int i = _paths.indexOf(filename);
+            if (i < 0)
+                return null;
+            try {
+                return _futures.get(i).get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            catch (ExecutionException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Constructora, el tamaño del pool depende de los núcleos disponibles
+     *
+     * @param graphics controlador de gráficos con el que se cargan las imágenes
+     */
+    public AssetLoader(Graphics graphics) {
+        this(graphics, Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors() - 1)));
+    }
+
+    /**
+     * Constructora
+     *
+     * @param graphics controlador de gráficos con el que se cargan las imágenes
+     * @param threads número de hebras de carga
+     */
+    public AssetLoader(Graphics graphics, int threads) {
+        _graphics = graphics;
+        _pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private AtomicInteger _count = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                // Hebras daemon para no impedir que la aplicación termine
+                Thread t = new Thread(r, "AssetLoader-" + _count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Lanza la carga en segundo plano de todas las imágenes de un manifiesto
+     *
+     * @param manifest manifiesto con los recursos
+     *
+     * @return handle con el que seguir la carga
+     */
+    public Handle load(AssetManifest manifest) {
+        final Handle handle = new Handle(manifest.getImages(), manifest.getImages().size());
+        for (int i = 0; i < handle._paths.size(); i++) {
+            final String path = handle._paths.get(i);
+            handle._futures.add(_pool.submit(new Callable<Image>() {
+                @Override
+                public Image call() {
+                    try {
+                        return _graphics.newImage(path);
+                    }
+                    finally {
+                        handle._loaded.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        return handle;
+    }
+
+    /**
+     * Lanza en segundo plano la construcción del atlas de texturas con las imágenes del manifiesto
+     *
+     * El handle devuelto no contiene imágenes, una vez terminado se obtienen con newImage
+     *
+     * @param manifest manifiesto con las imágenes a empaquetar
+     *
+     * @return handle con el que seguir la construcción
+     */
+    public Handle buildAtlas(final AssetManifest manifest) {
+        final Handle handle = new Handle(Collections.<String>emptyList(), 1);
+        handle._futures.add(_pool.submit(new Callable<Image>() {
+            @Override
+            public Image call() {
+                try {
+                    _graphics.buildAtlas(manifest);
+                    return null;
+                }
+                finally {
+                    handle._loaded.incrementAndGet();
+                }
+            }
+        }));
+        return handle;
+    }
+
+    /**
+     * Detiene las hebras de carga
+     */
+    public void shutdown() {
+        _pool.shutdownNow();
+    }
+}
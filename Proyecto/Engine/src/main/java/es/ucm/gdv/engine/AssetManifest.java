@@ -0,0 +1,47 @@
+package es.ucm.gdv.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clase que contiene la lista de recursos que necesita un estado lógico
+ * antes de poder inicializarse
+ *
+ * Se la pasamos al AssetLoader para que los cargue en segundo plano
+ */
+public class AssetManifest {
+
+    /**
+     * Rutas de las imágenes del manifiesto (sin repetir)
+     */
+    private ArrayList<String> _images;
+
+    /**
+     * Constructora, el manifiesto empieza vacío
+     */
+    public AssetManifest() {
+        _images = new ArrayList<String>();
+    }
+
+    /**
+     * Añade una imagen al manifiesto, si ya estaba no se repite
+     *
+     * @param filename ruta de la imagen
+     *
+     * @return el propio manifiesto, para poder encadenar llamadas
+     */
+    public AssetManifest addImage(String filename) {
+        if (!_images.contains(filename))
+            _images.add(filename);
+        return this;
+    }
+
+    /**
+     * Devuelve las rutas de las imágenes del manifiesto
+     *
+     * @return lista de rutas
+     */
+    public List<String> getImages() {
+        return _images;
+    }
+}
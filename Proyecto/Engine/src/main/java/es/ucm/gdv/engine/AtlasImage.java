@@ -0,0 +1,99 @@
+package es.ucm.gdv.engine;
+
+/**
+ * Imagen que en realidad es una región de una página de un TextureAtlas
+ *
+ * Se comporta como la imagen original (mismas dimensiones) pero al pintarse
+ * se usa la página del atlas desplazando el rect fuente al origen de la región
+ *
+ * Las dimensiones son en píxeles
+ */
+public class AtlasImage implements Image {
+
+    /**
+     * Página del atlas que contiene la imagen
+     */
+    private Image _page;
+
+    /**
+     * Región de la página ocupada por la imagen
+     */
+    private Rect _region;
+
+    /**
+     * Clasificación según el alpha de la imagen original (la página mezcla varias)
+     */
+    private Transparency _transparency;
+
+    /**
+     * Constructora
+     *
+     * @param page página del atlas
+     * @param region región de la página ocupada por la imagen
+     * @param transparency clasificación según el alpha de la imagen original
+     */
+    public AtlasImage(Image page, Rect region, Transparency transparency) {
+        _page = page;
+        _region = region;
+        _transparency = transparency;
+    }
+
+    /**
+     *  Devuelve el ancho de la imagen original
+     *
+     * @return Ancho de la imagen
+     */
+    @Override
+    public int getWidth() {
+        return (int)_region._w;
+    }
+
+    /**
+     * Devuelve el alto de la imagen original
+     *
+     * @return Alto de la imagen
+     */
+    @Override
+    public int getHeight() {
+        return (int)_region._h;
+    }
+
+    /**
+     * Devuelve la clasificación según el alpha de la imagen original
+     *
+     * @return clasificación de la imagen
+     */
+    @Override
+    public Transparency getTransparency() {
+        return _transparency;
+    }
+
+    /**
+     * Devuelve la página del atlas
+     *
+     * @return página del atlas
+     */
+    public Image getPage() {
+        return _page;
+    }
+
+    /**
+     * Devuelve la región de la página ocupada por la imagen
+     *
+     * @return región en píxeles de la página
+     */
+    public Rect getRegion() {
+        return _region;
+    }
+
+    /**
+     * Traduce un rect fuente relativo a la imagen original a un rect de la página
+     *
+     * @param source rect fuente en la imagen original
+     *
+     * @return rect fuente en la página del atlas
+     */
+    public Rect toPageRect(Rect source) {
+        return new Rect(source._x + _region._x, source._y + _region._y, source._w, source._h);
+    }
+}
@@ -0,0 +1,166 @@
+package es.ucm.gdv.engine;
+
+/**
+ * Zona del canvas lógico que ha cambiado desde el último frame pintado
+ *
+ * Los objetos marcan los rects que ocupaban antes y después de cambiar, y la región
+ * los acumula en su unión (el menor rect que los contiene a todos). Con el modo de
+ * repintado parcial activado la plataforma solo repinta esa unión, juntándola con la
+ * del frame anterior porque con doble buffer el buffer trasero va un frame por detrás
+ *
+ * Todas las medidas van en coordenadas lógicas
+ */
+public class DirtyRegion {
+
+    /**
+     * Esquinas de la unión de los rects marcados en el frame en curso
+     */
+    private float _left, _top, _right, _bottom;
+
+    /**
+     * Indica si no se ha marcado nada en el frame en curso
+     */
+    private boolean _empty = true;
+
+    /**
+     * Indica si hay que repintar el canvas entero en el frame en curso
+     */
+    private boolean _full = false;
+
+    /**
+     * Constructora, la región empieza vacía
+     */
+    public DirtyRegion() {
+    }
+
+    /**
+     * Marca un rect como modificado
+     *
+     * @param x coordenada x
+     * @param y coordenada y
+     * @param w ancho
+     * @param h alto
+     */
+    public void add(float x, float y, float w, float h) {
+        if (_full || w <= 0 || h <= 0)
+            return;
+        if (_empty) {
+            _left = x;
+            _top = y;
+            _right = x + w;
+            _bottom = y + h;
+            _empty = false;
+        }
+        else {
+            _left = Math.min(_left, x);
+            _top = Math.min(_top, y);
+            _right = Math.max(_right, x + w);
+            _bottom = Math.max(_bottom, y + h);
+        }
+    }
+
+    /**
+     * Marca un rect como modificado
+     *
+     * @param rect rect modificado
+     */
+    public void add(Rect rect) {
+        add(rect._x, rect._y, rect._w, rect._h);
+    }
+
+    /**
+     * Marca el canvas entero (incluidas las bandas laterales) como modificado
+     */
+    public void addAll() {
+        _full = true;
+        _empty = false;
+    }
+
+    /**
+     * Indica si no se ha marcado nada
+     *
+     * @return true si la región está vacía
+     */
+    public boolean isEmpty() {
+        return _empty;
+    }
+
+    /**
+     * Indica si hay que repintar el canvas entero
+     *
+     * @return true si se ha marcado todo
+     */
+    public boolean isFull() {
+        return _full;
+    }
+
+    /**
+     * Devuelve la x de la unión de los rects marcados
+     *
+     * @return coordenada x
+     */
+    public float getX() {
+        return _left;
+    }
+
+    /**
+     * Devuelve la y de la unión de los rects marcados
+     *
+     * @return coordenada y
+     */
+    public float getY() {
+        return _top;
+    }
+
+    /**
+     * Devuelve el ancho de la unión de los rects marcados
+     *
+     * @return ancho
+     */
+    public float getW() {
+        return _right - _left;
+    }
+
+    /**
+     * Devuelve el alto de la unión de los rects marcados
+     *
+     * @return alto
+     */
+    public float getH() {
+        return _bottom - _top;
+    }
+
+    /**
+     * Añade a esta región la de otro frame
+     *
+     * @param other región a añadir
+     */
+    public void add(DirtyRegion other) {
+        if (other._full)
+            addAll();
+        else if (!other._empty)
+            add(other._left, other._top, other._right - other._left, other._bottom - other._top);
+    }
+
+    /**
+     * Copia en esta región el contenido de otra
+     *
+     * @param other región a copiar
+     */
+    public void set(DirtyRegion other) {
+        _left = other._left;
+        _top = other._top;
+        _right = other._right;
+        _bottom = other._bottom;
+        _empty = other._empty;
+        _full = other._full;
+    }
+
+    /**
+     * Vacía la región
+     */
+    public void clear() {
+        _empty = true;
+        _full = false;
+    }
+}
@@ -0,0 +1,161 @@
+package es.ucm.gdv.engine;
+
+import java.util.Arrays;
+
+/**
+ * Lista de pintados de un frame grabada para pintarse después, normalmente en otra hebra
+ *
+ * Guarda los clears, lotes y pintados tal y como los pide la lógica (imagen, rects en
+ * coordenadas lógicas y alpha), junto con la zona modificada desde el frame anterior.
+ * Una vez publicada no cambia hasta que vuelve a quien la graba, así que se puede
+ * leer desde otra hebra sin bloqueos
+ */
+public class DrawList {
+
+    /**
+     * Tipos de comando
+     */
+    private static final int CLEAR = 0;
+    private static final int BEGIN_BATCH = 1;
+    private static final int END_BATCH = 2;
+    private static final int DRAW = 3;
+
+    /**
+     * Floats guardados por pintado (fuente x, y, w, h, destino x, y, w, h y alpha)
+     */
+    private static final int STRIDE = 9;
+
+    /**
+     * Tipo de cada comando, imagen de cada pintado y color de cada clear
+     */
+    private int[] _types = new int[64];
+    private Image[] _images = new Image[64];
+    private int[] _colors = new int[64];
+
+    /**
+     * Rects y alpha de cada pintado, STRIDE floats por comando
+     */
+    private float[] _values = new float[64 * STRIDE];
+
+    /**
+     * Número de comandos grabados
+     */
+    private int _count = 0;
+
+    /**
+     * Zona modificada que hay que repintar al pintar esta lista
+     */
+    private DirtyRegion _dirty = new DirtyRegion();
+
+    /**
+     * Vacía la lista para grabar un frame nuevo
+     */
+    public void reset() {
+        Arrays.fill(_images, 0, _count, null);
+        _count = 0;
+        _dirty.clear();
+    }
+
+    /**
+     * Devuelve el número de comandos grabados
+     *
+     * @return comandos grabados
+     */
+    public int size() {
+        return _count;
+    }
+
+    /**
+     * Devuelve la zona modificada que hay que repintar al pintar esta lista
+     *
+     * @return región modificada
+     */
+    public DirtyRegion getDirtyRegion() {
+        return _dirty;
+    }
+
+    /**
+     * Pinta los comandos grabados y envía a la plataforma lo que quede pendiente
+     *
+     * @param g controlador de gráficos que hace el pintado
+     */
+    public void replay(AbstractGraphics g) {
+        for (int i = 0; i < _count; i++) {
+            switch (_types[i]) {
+                case CLEAR:
+                    g.doClear(_colors[i]);
+                    break;
+                case BEGIN_BATCH:
+                    g.doBeginBatch();
+                    break;
+                case END_BATCH:
+                    g.doEndBatch();
+                    break;
+                default: {
+                    int o = i * STRIDE;
+                    g.doDrawImage(_images[i], _values[o], _values[o + 1], _values[o + 2], _values[o + 3],
+                            _values[o + 4], _values[o + 5], _values[o + 6], _values[o + 7], _values[o + 8]);
+                    break;
+                }
+            }
+        }
+        g.doFlush();
+    }
+
+    /**
+     * Graba un clear
+     */
+    void addClear(int color) {
+        _colors[add(CLEAR)] = color;
+    }
+
+    /**
+     * Graba la apertura de un lote
+     */
+    void addBeginBatch() {
+        add(BEGIN_BATCH);
+    }
+
+    /**
+     * Graba el cierre de un lote
+     */
+    void addEndBatch() {
+        add(END_BATCH);
+    }
+
+    /**
+     * Graba un pintado (rect fuente en píxeles de la imagen y destino en coordenadas lógicas)
+     */
+    void addDraw(Image image, float sx, float sy, float sw, float sh,
+                 float dx, float dy, float dw, float dh, float alpha) {
+        int i = add(DRAW);
+        _images[i] = image;
+        int o = i * STRIDE;
+        _values[o] = sx;
+        _values[o + 1] = sy;
+        _values[o + 2] = sw;
+        _values[o + 3] = sh;
+        _values[o + 4] = dx;
+        _values[o + 5] = dy;
+        _values[o + 6] = dw;
+        _values[o + 7] = dh;
+        _values[o + 8] = alpha;
+    }
+
+    /**
+     * Añade un comando al final, ampliando la lista si hace falta
+     *
+     * @return índice del comando
+     */
+    private int add(int type) {
+        if (_count == _types.length) {
+            int n = _count * 2;
+            _types = Arrays.copyOf(_types, n);
+            _images = Arrays.copyOf(_images, n);
+            _colors = Arrays.copyOf(_colors, n);
+            _values = Arrays.copyOf(_values, n * STRIDE);
+        }
+        _types[_count] = type;
+        return _count++;
+    }
+}
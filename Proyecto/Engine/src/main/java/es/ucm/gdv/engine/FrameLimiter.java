@@ -0,0 +1,177 @@
+package es.ucm.gdv.engine;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Limitador de frames por segundo que no ocupa la CPU mientras espera
+ *
+ * Al final de cada frame espera hasta el instante en que debe empezar el siguiente.
+ * La mayor parte de la espera la hace dormida (parkNanos), y solo los últimos
+ * microsegundos, en los que dormir no es lo bastante preciso, los hace en espera
+ * activa. Los instantes objetivo se calculan sobre una rejilla fija, así que los
+ * errores de un frame no se acumulan a los siguientes
+ *
+ * Mide el jitter conseguido (lo que se desvía el despertar del instante objetivo)
+ * para mostrarlo en los informes de rendimiento. Los frames que llegan tarde, sin
+ * nada que esperar, cuentan con su retraso y además se cuentan aparte
+ */
+public class FrameLimiter {
+
+    /**
+     * Margen por defecto que se espera de forma activa (en nanosegundos)
+     */
+    public static final long DEFAULT_SPIN_NANOS = 500000;
+
+    /**
+     * Duración de un frame en nanosegundos (0 si no hay límite)
+     */
+    private long _periodNanos = 0;
+
+    /**
+     * Margen final de la espera que se hace de forma activa
+     */
+    private long _spinNanos = DEFAULT_SPIN_NANOS;
+
+    /**
+     * Instante en el que debe empezar el siguiente frame (negativo si no hay ninguno)
+     */
+    private long _next = -1;
+
+    /**
+     * Jitter acumulado desde el último reset: suma, máximo y número de esperas
+     */
+    private long _jitterSum = 0;
+    private long _jitterMax = 0;
+    private int _jitterCount = 0;
+
+    /**
+     * Frames que han terminado después del instante objetivo desde el último reset
+     */
+    private int _lateFrames = 0;
+
+    /**
+     * Constructora
+     *
+     * @param fps frames por segundo objetivo, 0 para no limitar
+     */
+    public FrameLimiter(int fps) {
+        setTargetFps(fps);
+    }
+
+    /**
+     * Cambia los frames por segundo objetivo
+     *
+     * @param fps frames por segundo, 0 para no limitar
+     */
+    public void setTargetFps(int fps) {
+        _periodNanos = fps > 0 ? 1000000000L / fps : 0;
+        _next = -1;
+    }
+
+    /**
+     * Devuelve los frames por segundo objetivo
+     *
+     * @return frames por segundo, 0 si no hay límite
+     */
+    public int getTargetFps() {
+        return _periodNanos > 0 ? (int)(1000000000L / _periodNanos) : 0;
+    }
+
+    /**
+     * Cambia el margen final de la espera que se hace de forma activa
+     *
+     * @param nanos margen en nanosegundos (0 para esperar solo dormido)
+     */
+    public void setSpinNanos(long nanos) {
+        _spinNanos = Math.max(0, nanos);
+    }
+
+    /**
+     * Olvida el instante objetivo. Hay que llamarlo al (re)anudar el bucle
+     */
+    public void reset() {
+        _next = -1;
+    }
+
+    /**
+     * Espera hasta el instante en que debe empezar el siguiente frame.
+     * Sin límite vuelve inmediatamente
+     */
+    public void sync() {
+        if (_periodNanos == 0)
+            return;
+
+        long now = System.nanoTime();
+        if (_next < 0)
+            _next = now;
+        _next += _periodNanos;
+
+        // Si el frame ha tardado más de lo previsto no hay nada que esperar, y si
+        // vamos más de un frame por detrás no intentamos recuperarlo
+        long remaining = _next - now;
+        if (remaining <= 0) {
+            _lateFrames++;
+            recordJitter(-remaining);
+            if (-remaining > _periodNanos)
+                _next = now;
+            return;
+        }
+
+        // Dormimos la mayor parte y esperamos activamente el final
+        while (remaining > _spinNanos) {
+            LockSupport.parkNanos(remaining - _spinNanos);
+            remaining = _next - System.nanoTime();
+        }
+        while (remaining > 0)
+            remaining = _next - System.nanoTime();
+
+        // Lo que nos hemos pasado del instante objetivo
+        recordJitter(-remaining);
+    }
+
+    /**
+     * Devuelve el jitter medio desde el último resetJitter
+     *
+     * @return jitter medio en microsegundos
+     */
+    public long getJitterAverage() {
+        return _jitterCount > 0 ? _jitterSum / _jitterCount / 1000 : 0;
+    }
+
+    /**
+     * Devuelve el jitter máximo desde el último resetJitter
+     *
+     * @return jitter máximo en microsegundos
+     */
+    public long getJitterMax() {
+        return _jitterMax / 1000;
+    }
+
+    /**
+     * Devuelve los frames que han llegado tarde desde el último resetJitter
+     *
+     * @return frames sin tiempo que esperar
+     */
+    public int getLateFrames() {
+        return _lateFrames;
+    }
+
+    /**
+     * Empieza una nueva medición del jitter
+     */
+    public void resetJitter() {
+        _jitterSum = 0;
+        _jitterMax = 0;
+        _jitterCount = 0;
+        _lateFrames = 0;
+    }
+
+    /**
+     * Acumula lo que se ha desviado un frame del instante objetivo
+     */
+    private void recordJitter(long jitter) {
+        _jitterSum += jitter;
+        _jitterMax = Math.max(_jitterMax, jitter);
+        _jitterCount++;
+    }
+}
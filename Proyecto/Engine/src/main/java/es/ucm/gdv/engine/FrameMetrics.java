@@ -0,0 +1,263 @@
+package es.ucm.gdv.engine;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Métricas de rendimiento por frame, para comparar dispositivos y versiones
+ *
+ * Guarda en histogramas de tamaño fijo la duración de cada frame y de sus fases:
+ * update (todos los pasos de simulación del frame), render (pintar el frame, sea
+ * llamando al render de la lógica o repitiendo lo grabado) y present (mostrarlo:
+ * show o unlockCanvasAndPost). Cuenta además los frames, los frames perdidos y los
+ * pintados enviados a la plataforma
+ *
+ * El bucle principal registra el frame y el update, la plataforma el render y el
+ * present, y el controlador de gráficos los pintados. Se puede consultar mientras
+ * el juego está en marcha y volcar a CSV o JSON al terminar
+ */
+public class FrameMetrics {
+
+    /**
+     * Percentiles que se vuelcan
+     */
+    private static final double[] PERCENTILES = { 50, 90, 99 };
+
+    /**
+     * Duración de los frames (tiempo entre el inicio de uno y el del siguiente) y de sus fases
+     */
+    private Histogram _frame = new Histogram();
+    private Histogram _update = new Histogram();
+    private Histogram _render = new Histogram();
+    private Histogram _present = new Histogram();
+
+    /**
+     * Totales: frames, frames perdidos y pintados
+     */
+    private long _frames = 0;
+    private long _droppedFrames = 0;
+    private long _drawCalls = 0;
+
+    /**
+     * Registra un frame del bucle
+     *
+     * @param frameNanos tiempo desde el inicio del frame anterior (negativo en el primero)
+     * @param updateNanos tiempo de los updates del frame
+     */
+    public synchronized void recordFrame(long frameNanos, long updateNanos) {
+        if (frameNanos >= 0)
+            _frame.recordNanos(frameNanos);
+        _update.recordNanos(updateNanos);
+        _frames++;
+    }
+
+    /**
+     * Registra lo que se ha tardado en pintar un frame
+     *
+     * @param nanos duración en nanosegundos
+     */
+    public void recordRender(long nanos) {
+        _render.recordNanos(nanos);
+    }
+
+    /**
+     * Registra lo que se ha tardado en mostrar un frame
+     *
+     * @param nanos duración en nanosegundos
+     */
+    public void recordPresent(long nanos) {
+        _present.recordNanos(nanos);
+    }
+
+    /**
+     * Suma frames perdidos, que no se han llegado a pintar por ir con retraso
+     *
+     * @param frames frames perdidos
+     */
+    public synchronized void addDroppedFrames(long frames) {
+        _droppedFrames += frames;
+    }
+
+    /**
+     * Suma los pintados enviados a la plataforma en un frame
+     *
+     * @param drawCalls pintados
+     */
+    public synchronized void addDrawCalls(long drawCalls) {
+        _drawCalls += drawCalls;
+    }
+
+    /**
+     * Devuelve el histograma de la duración de los frames
+     *
+     * @return histograma en microsegundos
+     */
+    public Histogram getFrameTimes() {
+        return _frame;
+    }
+
+    /**
+     * Devuelve el histograma de la duración de los updates de cada frame
+     *
+     * @return histograma en microsegundos
+     */
+    public Histogram getUpdateTimes() {
+        return _update;
+    }
+
+    /**
+     * Devuelve el histograma de lo que se tarda en pintar cada frame
+     *
+     * @return histograma en microsegundos
+     */
+    public Histogram getRenderTimes() {
+        return _render;
+    }
+
+    /**
+     * Devuelve el histograma de lo que se tarda en mostrar cada frame
+     *
+     * @return histograma en microsegundos
+     */
+    public Histogram getPresentTimes() {
+        return _present;
+    }
+
+    /**
+     * Devuelve el número de frames registrados
+     *
+     * @return frames
+     */
+    public synchronized long getFrames() {
+        return _frames;
+    }
+
+    /**
+     * Devuelve el número de frames perdidos
+     *
+     * @return frames perdidos
+     */
+    public synchronized long getDroppedFrames() {
+        return _droppedFrames;
+    }
+
+    /**
+     * Devuelve el número de pintados enviados a la plataforma
+     *
+     * @return pintados
+     */
+    public synchronized long getDrawCalls() {
+        return _drawCalls;
+    }
+
+    /**
+     * Vacía todas las métricas
+     */
+    public synchronized void reset() {
+        _frame.reset();
+        _update.reset();
+        _render.reset();
+        _present.reset();
+        _frames = 0;
+        _droppedFrames = 0;
+        _drawCalls = 0;
+    }
+
+    /**
+     * Escribe las métricas en CSV: una fila por histograma con el número de
+     * muestras, media, percentiles y máximo (en microsegundos), y una por contador
+     *
+     * @param out destino
+     *
+     * @throws IOException si falla la escritura
+     */
+    public void writeCsv(Writer out) throws IOException {
+        out.write("metric,count,mean_us");
+        for (double p : PERCENTILES)
+            out.write(",p" + (int)p + "_us");
+        out.write(",max_us\n");
+        writeCsvRow(out, "frame", _frame);
+        writeCsvRow(out, "update", _update);
+        writeCsvRow(out, "render", _render);
+        writeCsvRow(out, "present", _present);
+        out.write("frames," + getFrames() + "\n");
+        out.write("dropped_frames," + getDroppedFrames() + "\n");
+        out.write("draw_calls," + getDrawCalls() + "\n");
+        out.flush();
+    }
+
+    /**
+     * Escribe las métricas en JSON
+     *
+     * @param out destino
+     *
+     * @throws IOException si falla la escritura
+     */
+    public void writeJson(Writer out) throws IOException {
+        out.write("{\n");
+        out.write("  \"frames\": " + getFrames() + ",\n");
+        out.write("  \"droppedFrames\": " + getDroppedFrames() + ",\n");
+        out.write("  \"drawCalls\": " + getDrawCalls() + ",\n");
+        writeJsonEntry(out, "frame", _frame, true);
+        writeJsonEntry(out, "update", _update, true);
+        writeJsonEntry(out, "render", _render, true);
+        writeJsonEntry(out, "present", _present, false);
+        out.write("}\n");
+        out.flush();
+    }
+
+    /**
+     * Vuelca las métricas a un archivo, en JSON si acaba en ".json" y si no en CSV
+     *
+     * @param path ruta del archivo
+     *
+     * @return true si se ha escrito correctamente
+     */
+    public boolean dump(String path) {
+        Writer out = null;
+        try {
+            out = new FileWriter(path);
+            if (path.toLowerCase().endsWith(".json"))
+                writeJson(out);
+            else
+                writeCsv(out);
+            return true;
+        }
+        catch (IOException e) {
+            // En caso de error avisamos al usuario
+            System.err.println(e);
+            return false;
+        }
+        finally {
+            if (out != null) {
+                try {
+                    out.close();
+                }
+                catch (IOException e) {
+                    System.err.println(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Escribe la fila CSV de un histograma
+     */
+    private static void writeCsvRow(Writer out, String name, Histogram h) throws IOException {
+        out.write(name + "," + h.getCount() + "," + h.getMean());
+        for (double p : PERCENTILES)
+            out.write("," + h.getPercentile(p));
+        out.write("," + h.getMax() + "\n");
+    }
+
+    /**
+     * Escribe la entrada JSON de un histograma
+     */
+    private static void writeJsonEntry(Writer out, String name, Histogram h, boolean comma) throws IOException {
+        out.write("  \"" + name + "\": { \"count\": " + h.getCount() + ", \"mean\": " + h.getMean());
+        for (double p : PERCENTILES)
+            out.write(", \"p" + (int)p + "\": " + h.getPercentile(p));
+        out.write(", \"max\": " + h.getMax() + " }" + (comma ? ",\n" : "\n"));
+    }
+}
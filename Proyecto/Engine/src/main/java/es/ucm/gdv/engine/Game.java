@@ -27,6 +27,14 @@ public interface Game {
      */
     Input getInput();
 
+    /**
+     * Devuelve el generador de números aleatorios del juego, propio de cada
+     * instancia. Para repetir una partida basta con fijar su semilla
+     *
+     * @return generador
+     */
+    Rng getRandom();
+
     /**
      * Inicializa lo necesario para correr el juego
      *
@@ -0,0 +1,252 @@
+package es.ucm.gdv.engine;
+
+/**
+ * Bucle principal de paso fijo, común a todas las plataformas
+ *
+ * En cada frame se acumula el tiempo real transcurrido y se simula en pasos de
+ * duración fija mientras quede al menos un paso en el acumulador. Así la lógica
+ * siempre recibe el mismo deltatime y un parón (GC, cambio de app) no se convierte
+ * en un único paso enorme: se recupera en varios pasos normales, como mucho
+ * maxSteps por frame, y el retraso que quede por encima se descarta
+ *
+ * Cuando la simulación va por detrás se hacen varios pasos antes de pintar (se
+ * saltan frames de pintado). Lo que sobra en el acumulador, menos de un paso, se
+ * pasa al render como fracción (alpha) para poder interpolar entre el estado
+ * anterior y el actual
+ *
+ * El acumulador empieza con medio paso. Si los frames llegan con el mismo periodo
+ * que el paso (60 fps con pasos de 1/60 s) el acumulador se queda cerca de la mitad
+ * y el jitter del despertar no cambia cuántos pasos se hacen; empezando en 0 cada
+ * despertar un poco adelantado daría un frame sin pasos seguido de otro con dos.
+ * Un frame sin pasos y con la misma fracción que el anterior no se pinta
+ *
+ * La plataforma implementa el Listener con su update y su render y llama a frame
+ * en cada vuelta de su bucle
+ */
+public class GameLoop {
+
+    /**
+     * Receptor de los pasos de simulación y de los pintados del bucle
+     */
+    public interface Listener {
+
+        /**
+         * Avanza la simulación un paso
+         *
+         * @param deltaTime duración del paso en segundos (siempre la misma)
+         */
+        void update(double deltaTime);
+
+        /**
+         * Pinta el estado actual
+         *
+         * @param alpha fracción de paso (entre 0 y 1) que ha pasado desde el último update
+         */
+        void render(double alpha);
+    }
+
+    /**
+     * Paso por defecto (60 actualizaciones por segundo)
+     */
+    public static final double DEFAULT_STEP = 1.0 / 60.0;
+
+    /**
+     * Número máximo de pasos por defecto que se hacen en un frame para recuperar retraso
+     */
+    public static final int DEFAULT_MAX_STEPS = 5;
+
+    /**
+     * Receptor del bucle
+     */
+    private Listener _listener;
+
+    /**
+     * Duración del paso en nanosegundos y en segundos
+     */
+    private long _stepNanos;
+    private double _step;
+
+    /**
+     * Número máximo de pasos por frame
+     */
+    private int _maxSteps = DEFAULT_MAX_STEPS;
+
+    /**
+     * Tiempo acumulado sin simular, en nanosegundos
+     */
+    private long _accumulator = 0;
+
+    /**
+     * Instante del frame anterior (negativo si todavía no ha habido ninguno)
+     */
+    private long _lastTime = -1;
+
+    /**
+     * Fracción de paso que se pasó al último render (negativa si no se ha pintado)
+     */
+    private double _alpha = -1;
+
+    /**
+     * Totales desde el inicio: frames, pasos simulados y pasos descartados por ir con retraso
+     */
+    private long _frames = 0;
+    private long _updates = 0;
+    private long _droppedSteps = 0;
+
+    /**
+     * Métricas en las que se registran los frames (null si no se miden)
+     */
+    private FrameMetrics _metrics = null;
+
+    /**
+     * Constructora, con el paso y el máximo de pasos por defecto
+     *
+     * @param listener receptor de los updates y renders
+     */
+    public GameLoop(Listener listener) {
+        _listener = listener;
+        setStep(DEFAULT_STEP);
+    }
+
+    /**
+     * Cambia la duración del paso de simulación
+     *
+     * @param seconds duración del paso en segundos
+     */
+    public void setStep(double seconds) {
+        _stepNanos = Math.max(1, (long)(seconds * 1.0E9));
+        _step = _stepNanos / 1.0E9;
+    }
+
+    /**
+     * Devuelve la duración del paso de simulación
+     *
+     * @return duración del paso en segundos
+     */
+    public double getStep() {
+        return _step;
+    }
+
+    /**
+     * Cambia el número máximo de pasos que se simulan en un frame
+     *
+     * @param maxSteps máximo de pasos (como poco 1)
+     */
+    public void setMaxSteps(int maxSteps) {
+        _maxSteps = Math.max(1, maxSteps);
+    }
+
+    /**
+     * Asigna las métricas en las que se registran la duración de cada frame, la de
+     * sus updates y los frames perdidos
+     *
+     * @param metrics métricas, o null para no medir
+     */
+    public void setMetrics(FrameMetrics metrics) {
+        _metrics = metrics;
+    }
+
+    /**
+     * Olvida el tiempo acumulado. Hay que llamarlo al (re)anudar el bucle
+     * para que el tiempo en pausa no cuente como retraso
+     */
+    public void reset() {
+        _lastTime = -1;
+        _accumulator = 0;
+        _alpha = -1;
+    }
+
+    /**
+     * Hace un frame con el instante actual
+     */
+    public void frame() {
+        frame(System.nanoTime());
+    }
+
+    /**
+     * Hace un frame: simula los pasos pendientes hasta el instante dado y pinta
+     *
+     * @param now instante actual en nanosegundos (de System.nanoTime o un reloj virtual)
+     */
+    public void frame(long now) {
+        long frameNanos = _lastTime < 0 ? -1 : now - _lastTime;
+        if (_lastTime < 0) {
+            // Medio paso de margen frente al jitter de los frames
+            _lastTime = now;
+            _accumulator = _stepNanos / 2;
+        }
+        _accumulator += now - _lastTime;
+        _lastTime = now;
+
+        // Simulamos en pasos fijos, como mucho _maxSteps
+        long updateStart = _metrics != null ? System.nanoTime() : 0;
+        int steps = 0;
+        while (_accumulator >= _stepNanos && steps < _maxSteps) {
+            _listener.update(_step);
+            _accumulator -= _stepNanos;
+            steps++;
+        }
+        _updates += steps;
+        long updateNanos = _metrics != null ? System.nanoTime() - updateStart : 0;
+
+        // Si aún queda retraso lo descartamos para no entrar en una espiral
+        long dropped = 0;
+        if (_accumulator >= _stepNanos) {
+            dropped = _accumulator / _stepNanos;
+            _droppedSteps += dropped;
+            _accumulator -= dropped * _stepNanos;
+        }
+
+        // Cada paso de más en este frame, simulado o descartado, es un frame sin pintar
+        if (_metrics != null) {
+            _metrics.recordFrame(frameNanos, updateNanos);
+            if (steps + dropped > 1)
+                _metrics.addDroppedFrames(steps + dropped - 1);
+        }
+
+        // Si no ha cambiado nada desde el último pintado no se repite
+        double alpha = (double)_accumulator / _stepNanos;
+        if (steps > 0 || alpha != _alpha) {
+            _alpha = alpha;
+            _listener.render(_alpha);
+        }
+        _frames++;
+    }
+
+    /**
+     * Devuelve la fracción de paso que se pasó al último render
+     *
+     * @return alpha entre 0 y 1 (negativo si aún no se ha pintado)
+     */
+    public double getAlpha() {
+        return _alpha;
+    }
+
+    /**
+     * Devuelve el número de frames hechos desde el inicio
+     *
+     * @return frames
+     */
+    public long getFrames() {
+        return _frames;
+    }
+
+    /**
+     * Devuelve el número de pasos simulados desde el inicio
+     *
+     * @return pasos simulados
+     */
+    public long getUpdates() {
+        return _updates;
+    }
+
+    /**
+     * Devuelve el número de pasos descartados desde el inicio por superar
+     * el máximo de pasos por frame
+     *
+     * @return pasos descartados
+     */
+    public long getDroppedSteps() {
+        return _droppedSteps;
+    }
+}
@@ -24,6 +24,31 @@ public interface Graphics {
      */
     public Image newImage(String filename);
 
+    /**
+     * Devuelve el cargador de recursos en segundo plano asociado a este controlador
+     *
+     * Las imágenes que cargue quedan disponibles para newImage sin volver a leerlas
+     *
+     * @return cargador de recursos
+     */
+    public AssetLoader getAssetLoader();
+
+    /**
+     * Empaqueta las imágenes del manifiesto en un atlas de texturas
+     *
+     * A partir de ese momento newImage devuelve regiones del atlas para esas rutas
+     *
+     * @param manifest manifiesto con las imágenes a empaquetar
+     */
+    public void buildAtlas(AssetManifest manifest);
+
+    /**
+     * Devuelve el atlas de texturas
+     *
+     * @return atlas o null si no se ha construido
+     */
+    public TextureAtlas getAtlas();
+
     /**
      * Dibuja completamente la imagen image en la posicion (x,y)
      * de la pantalla
@@ -53,9 +78,56 @@ public interface Graphics {
      */
     public void drawImage(Image image, float destX, float destY, Rect source, float alpha);
 
+    /**
+     * Dibuja la porcion de imagen dada en el rect destino, recibiendo ambos rects
+     * como valores sueltos
+     *
+     * Es la variante que no reserva memoria, pensada para el pintado de cada frame
+     *
+     * @param image Imagen a dibujar
+     * @param sx Pos x de la porcion de imagen a dibujar
+     * @param sy Pos y de la porcion de imagen a dibujar
+     * @param sw Anchura de la porcion de imagen a dibujar
+     * @param sh Altura de la porcion de imagen a dibujar
+     * @param dx Pos x destino en coord logicas
+     * @param dy Pos y destino en coord logicas
+     * @param dw Anchura destino en coord logicas
+     * @param dh Altura destino en coord logicas
+     * @param alpha Transparencia de la imagen
+     */
+    public void drawImage(Image image, float sx, float sy, float sw, float sh,
+                          float dx, float dy, float dw, float dh, float alpha);
+
+    /**
+     * Abre un lote de pintado
+     *
+     * Hasta llamar a endBatch los pintados (draw y drawImage) se encolan, para después
+     * agruparlos por imagen y alpha donde el orden en z lo permita y enviarlos a la
+     * plataforma en una única pasada. El clear debe hacerse antes de abrir el lote
+     */
+    public void beginBatch();
+
+    /**
+     * Encola el pintado de una imagen en el lote abierto (si no hay lote, se pinta directamente)
+     *
+     * @param image Imagen a dibujar
+     * @param dest Posisicion destino en la que dibujar en coordenadas logicas y sus dimensiones
+     * @param source Porcion de imagen a dibujar
+     * @param alpha Transparencia de la imagen
+     */
+    public void draw(Image image, Rect dest, Rect source, float alpha);
+
+    /**
+     * Cierra el lote de pintado y envía todos los pintados encolados a la plataforma
+     */
+    public void endBatch();
+
     /**
      * Pinta la pantalla al completo con un color dado
      *
+     * Si el siguiente pintado es opaco y tapa el canvas entero, solo se rellenan
+     * las bandas laterales
+     *
      * @param color Color del que se pintara la pantalla
      */
     public void clear(int color);
@@ -74,6 +146,61 @@ public interface Graphics {
      */
     public int getWindowHeight();
 
+    /**
+     * Devuelve el número de pintados descartados en el último frame completo por
+     * quedar fuera del canvas (o de la zona a repintar)
+     *
+     * @return pintados descartados
+     */
+    public int getCulledDraws();
+
+    /**
+     * Devuelve el número de pintados y clears descartados en el último frame completo
+     * por quedar tapados por un pintado opaco que cubre el canvas entero
+     *
+     * @return pintados tapados
+     */
+    public int getOccludedDraws();
+
+    /**
+     * Activa o desactiva el repintado parcial: la plataforma solo repinta la zona
+     * marcada en getDirtyRegion (y se salta los frames en los que no hay nada marcado)
+     *
+     * Pensado para pantallas casi estáticas, la lógica tiene que marcar todo lo que cambie
+     *
+     * @param enabled true para repintar solo la zona modificada
+     */
+    public void setDirtyRendering(boolean enabled);
+
+    /**
+     * Indica si está activo el repintado parcial
+     *
+     * @return true si solo se repinta la zona modificada
+     */
+    public boolean isDirtyRendering();
+
+    /**
+     * Devuelve la región donde se marca lo que cambia en el frame en curso
+     *
+     * @return región modificada (coordenadas lógicas)
+     */
+    public DirtyRegion getDirtyRegion();
+
+    /**
+     * Devuelve el número de pintados enviados a la plataforma en el último frame completo
+     *
+     * @return pintados del último frame
+     */
+    public int getDrawCalls();
+
+    /**
+     * Devuelve el número de cambios de estado de pintado (composite, paint...) que hizo
+     * la plataforma en el último frame completo
+     *
+     * @return cambios de estado del último frame
+     */
+    public int getStateChanges();
+
     /**
      * Establece el tamáño lógico del canvas
      *
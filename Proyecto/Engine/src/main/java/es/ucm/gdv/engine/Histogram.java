@@ -0,0 +1,153 @@
+package es.ucm.gdv.engine;
+
+import java.util.Arrays;
+
+/**
+ * Histograma de tamaño fijo para medir duraciones con poco coste
+ *
+ * Los valores se reparten en cubetas log-lineales: cada potencia de dos se divide en
+ * 16 cubetas iguales, así el error relativo de los percentiles es como mucho del 6%
+ * con solo unos cientos de enteros, y registrar un valor no reserva memoria
+ *
+ * Los valores van en microsegundos. Es seguro usarlo desde varias hebras
+ */
+public class Histogram {
+
+    /**
+     * Bits de subdivisión de cada potencia de dos (16 cubetas)
+     */
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    /**
+     * Mayor exponente representable, los valores por encima van a la última cubeta
+     */
+    private static final int MAX_EXPONENT = 40;
+
+    /**
+     * Número de cubetas
+     */
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+
+    /**
+     * Número de valores de cada cubeta
+     */
+    private final int[] _counts = new int[BUCKETS];
+
+    /**
+     * Número de valores, suma y máximo
+     */
+    private long _count = 0;
+    private long _sum = 0;
+    private long _max = 0;
+
+    /**
+     * Registra un valor
+     *
+     * @param value valor en microsegundos (los negativos cuentan como 0)
+     */
+    public synchronized void record(long value) {
+        if (value < 0)
+            value = 0;
+        _counts[bucketOf(value)]++;
+        _count++;
+        _sum += value;
+        if (value > _max)
+            _max = value;
+    }
+
+    /**
+     * Registra una duración medida en nanosegundos
+     *
+     * @param nanos duración en nanosegundos
+     */
+    public void recordNanos(long nanos) {
+        record(nanos / 1000);
+    }
+
+    /**
+     * Devuelve el número de valores registrados
+     *
+     * @return número de valores
+     */
+    public synchronized long getCount() {
+        return _count;
+    }
+
+    /**
+     * Devuelve el mayor valor registrado (exacto)
+     *
+     * @return máximo en microsegundos
+     */
+    public synchronized long getMax() {
+        return _max;
+    }
+
+    /**
+     * Devuelve la media de los valores registrados (exacta)
+     *
+     * @return media en microsegundos
+     */
+    public synchronized long getMean() {
+        return _count > 0 ? _sum / _count : 0;
+    }
+
+    /**
+     * Devuelve un percentil aproximado (el punto medio de la cubeta en que cae)
+     *
+     * @param percentile percentil entre 0 y 100
+     *
+     * @return valor en microsegundos
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (_count == 0)
+            return 0;
+        long rank = (long)Math.ceil(percentile / 100.0 * _count);
+        rank = Math.max(1, Math.min(_count, rank));
+
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += _counts[b];
+            if (seen >= rank) {
+                long low = lowerBound(b);
+                long high = b + 1 < BUCKETS ? lowerBound(b + 1) - 1 : _max;
+                return Math.min(_max, (low + high) / 2);
+            }
+        }
+        return _max;
+    }
+
+    /**
+     * Vacía el histograma
+     */
+    public synchronized void reset() {
+        Arrays.fill(_counts, 0);
+        _count = 0;
+        _sum = 0;
+        _max = 0;
+    }
+
+    /**
+     * Cubeta en la que cae un valor
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_COUNT)
+            return (int)value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT)
+            return BUCKETS - 1;
+        int sub = (int)(value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * Menor valor que cae en una cubeta
+     */
+    private static long lowerBound(int bucket) {
+        if (bucket < SUB_COUNT)
+            return bucket;
+        int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+        int sub = bucket % SUB_COUNT;
+        return (long)(SUB_COUNT + sub) << (exponent - SUB_BITS);
+    }
+}
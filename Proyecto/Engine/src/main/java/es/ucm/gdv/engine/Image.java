@@ -20,4 +20,11 @@ public interface Image {
      */
     public int getHeight();
 
+    /**
+     * Devuelve la clasificación de la imagen según su canal alpha (calculada al cargarla)
+     *
+     * @return si la imagen es opaca, de máscara (alpha 0 o 255) o semitransparente
+     */
+    public Transparency getTransparency();
+
 }
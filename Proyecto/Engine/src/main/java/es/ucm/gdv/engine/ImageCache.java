@@ -0,0 +1,183 @@
+package es.ucm.gdv.engine;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché de imágenes común a todas las plataformas, indexada por la ruta
+ * desde la que se cargó cada imagen
+ *
+ * Tiene un presupuesto máximo en bytes (estimado como ancho * alto * 4, ARGB)
+ * y, cuando se supera, expulsa las imágenes usadas hace más tiempo (LRU)
+ *
+ * Es segura entre hebras, ya que las imágenes pueden pedirse tanto desde la
+ * hebra del bucle principal como desde la hebra de UI
+ */
+public class ImageCache {
+
+    /**
+     * Presupuesto por defecto de la caché (en bytes)
+     */
+    public static final long DEFAULT_BUDGET = 64L * 1024L * 1024L;
+
+    /**
+     * Imágenes cargadas, en orden de acceso (la primera es la menos usada recientemente)
+     */
+    private LinkedHashMap<String, Image> _images;
+
+    /**
+     * Presupuesto máximo en bytes
+     */
+    private long _budget;
+
+    /**
+     * Bytes ocupados actualmente por las imágenes de la caché
+     */
+    private long _usedBytes = 0;
+
+    /**
+     * Contadores de aciertos, fallos y expulsiones
+     */
+    private long _hits = 0;
+    private long _misses = 0;
+    private long _evictions = 0;
+
+    /**
+     * Constructora con el presupuesto por defecto
+     */
+    public ImageCache() {
+        this(DEFAULT_BUDGET);
+    }
+
+    /**
+     * Constructora
+     *
+     * @param budget presupuesto máximo en bytes
+     */
+    public ImageCache(long budget) {
+        _budget = budget;
+        // accessOrder = true para que el orden de iteración sea el LRU
+        _images = new LinkedHashMap<String, Image>(16, 0.75f, true);
+    }
+
+    /**
+     * Busca una imagen en la caché
+     *
+     * @param filename ruta de la imagen
+     *
+     * @return la imagen o null si no está en la caché
+     */
+    synchronized public Image get(String filename) {
+        Image image = _images.get(filename);
+        if (image != null)
+            _hits++;
+        else
+            _misses++;
+        return image;
+    }
+
+    /**
+     * Añade una imagen a la caché y expulsa las menos usadas si se supera el presupuesto
+     *
+     * @param filename ruta de la imagen
+     * @param image imagen cargada
+     */
+    synchronized public void put(String filename, Image image) {
+        if (image == null)
+            return;
+
+        Image old = _images.put(filename, image);
+        if (old != null)
+            _usedBytes -= sizeOf(old);
+        _usedBytes += sizeOf(image);
+
+        trim();
+    }
+
+    /**
+     * Vacía la caché por completo
+     */
+    synchronized public void clear() {
+        _images.clear();
+        _usedBytes = 0;
+    }
+
+    /**
+     * Cambia el presupuesto de la caché, expulsando imágenes si es necesario
+     *
+     * @param budget presupuesto máximo en bytes
+     */
+    synchronized public void setBudget(long budget) {
+        _budget = budget;
+        trim();
+    }
+
+    /**
+     * Devuelve el presupuesto de la caché
+     *
+     * @return presupuesto en bytes
+     */
+    synchronized public long getBudget() { return _budget; }
+
+    /**
+     * Devuelve los bytes ocupados por la caché
+     *
+     * @return bytes ocupados
+     */
+    synchronized public long getUsedBytes() { return _usedBytes; }
+
+    /**
+     * Devuelve el número de imágenes en la caché
+     *
+     * @return número de imágenes
+     */
+    synchronized public int size() { return _images.size(); }
+
+    /**
+     * Devuelve el número de aciertos
+     *
+     * @return aciertos
+     */
+    synchronized public long getHits() { return _hits; }
+
+    /**
+     * Devuelve el número de fallos
+     *
+     * @return fallos
+     */
+    synchronized public long getMisses() { return _misses; }
+
+    /**
+     * Devuelve el número de expulsiones
+     *
+     * @return expulsiones
+     */
+    synchronized public long getEvictions() { return _evictions; }
+
+    /**
+     * Estimación de los bytes que ocupa una imagen (ARGB de 32 bits)
+     *
+     * @param image imagen
+     *
+     * @return bytes estimados
+     */
+    public static long sizeOf(Image image) {
+        return (long)image.getWidth() * (long)image.getHeight() * 4L;
+    }
+
+    /**
+     * Expulsa las imágenes menos usadas hasta estar dentro del presupuesto
+     *
+     * Siempre se conserva al menos la última imagen, aunque ella sola supere el presupuesto
+     */
+    private void trim() {
+        Iterator<Map.Entry<String, Image>> it = _images.entrySet().iterator();
+        while (_usedBytes > _budget && _images.size() > 1 && it.hasNext()) {
+            Map.Entry<String, Image> eldest = it.next();
+            _usedBytes -= sizeOf(eldest.getValue());
+            it.remove();
+            _evictions++;
+        }
+    }
+}
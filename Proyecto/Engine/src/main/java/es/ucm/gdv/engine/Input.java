@@ -85,6 +85,19 @@ public interface Input {
             _type = t; _x = (int)nRect._x; _y = (int)nRect._y; _id = id; _message = message;
         };
 
+        /**
+         * Constructora con la posición ya en coordenadas lógicas, para los eventos que
+         * no vienen de la plataforma (repeticiones, bots)
+         *
+         * @param t tipo del evento
+         * @param x posición X en coords lógicas
+         * @param y posición Y en coords lógicas
+         * @param id identificador de la fuente
+         */
+        public TouchEvent(TouchEventType t, int x, int y, int id){
+            _type = t; _x = x; _y = y; _id = id; _message = "";
+        };
+
         /**
          * Devuelve el tipo del evento
          *
@@ -122,7 +135,7 @@ public interface Input {
     }
 
     /**
-     * Devuelve la lista de eventos
+     * Devuelve la lista de eventos que ve la lógica en este frame
      *
      * @return la lista de eventos
      */
@@ -136,7 +149,34 @@ public interface Input {
     public void setTouchEvent(TouchEvent e);
 
     /**
-     * Limpia la lista de eventos
+     * Limpia los eventos devueltos por getTouchEvents, al terminar el frame
      */
     public void clearTouchEvents();
+
+    /**
+     * Descarta los eventos sin que cuente como frame, en las pantallas que no son
+     * parte de la partida (como la de carga)
+     */
+    public void discardTouchEvents();
+
+    /**
+     * Empieza a grabar los eventos que recibe la lógica desde el frame 0
+     *
+     * @param recorder grabación (null para dejar de grabar)
+     */
+    public void setRecorder(InputRecorder recorder);
+
+    /**
+     * Empieza a repetir eventos grabados desde el frame 0
+     *
+     * @param replayer repetición (null para dejar de repetir)
+     */
+    public void setReplayer(InputReplayer replayer);
+
+    /**
+     * Devuelve las veces que la lógica ha vaciado la lista de eventos
+     *
+     * @return frame actual del input
+     */
+    public int getFrame();
 }
@@ -0,0 +1,218 @@
+package es.ucm.gdv.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Graba una partida para repetirla después con InputReplayer: la semilla del
+ * generador del juego y cada evento de input con el frame en que lo recibe la lógica
+ *
+ * El frame de un evento es el número de veces que la lógica ha vaciado la lista de
+ * eventos antes de verlo, no el número de vueltas del bucle. Así la grabación no
+ * depende de lo que tarden las cargas ni de la velocidad de la máquina
+ *
+ * Los eventos se codifican al grabarlos en un formato binario compacto: diferencias
+ * de frame y de coordenadas (lógicas) con el evento anterior en enteros de longitud
+ * variable (varint), normalmente uno o dos bytes por campo. El mensaje de los eventos
+ * no se graba
+ *
+ * Formato: MAGIC (int), semilla (long), resultado (long), frames (varint),
+ * eventos (varint) y por evento: frame, tipo, x, y, id
+ */
+public class InputRecorder {
+
+    /**
+     * Marca de los ficheros de grabación ("SDI1")
+     */
+    static final int MAGIC = 0x53444931;
+
+    /**
+     * Semilla del generador y resultado de la partida (lo decide el juego)
+     */
+    private long _seed = 0;
+    private long _result = 0;
+
+    /**
+     * Eventos codificados
+     */
+    private byte[] _data = new byte[256];
+    private int _size = 0;
+
+    /**
+     * Número de eventos y de frames grabados
+     */
+    private int _events = 0;
+    private int _frames = 0;
+
+    /**
+     * Frame y coordenadas del último evento, para codificar las diferencias
+     */
+    private int _lastFrame = 0;
+    private int _lastX = 0;
+    private int _lastY = 0;
+
+    /**
+     * Empieza a grabar un juego: reinicia su generador con su semilla, para que la
+     * secuencia grabada empiece en ella, y se engancha a su input. Hay que llamarlo
+     * después de inicializar el Game y antes de inicializar la lógica
+     *
+     * @param game juego a grabar
+     *
+     * @return false si el juego no tiene input (no se ha inicializado)
+     */
+    public boolean start(Game game) {
+        if (game.getInput() == null) {
+            System.err.println("No se puede grabar el input de un juego sin inicializar");
+            return false;
+        }
+        synchronized (this) {
+            _seed = game.getRandom().getSeed();
+            _size = _events = _frames = 0;
+            _lastFrame = _lastX = _lastY = 0;
+        }
+        game.getRandom().setSeed(_seed);
+        game.getInput().setRecorder(this);
+        return true;
+    }
+
+    /**
+     * Graba los eventos que ha recibido la lógica en un frame
+     *
+     * @param frame frame en que se han recibido
+     * @param events eventos
+     */
+    synchronized void record(int frame, List<Input.TouchEvent> events) {
+        _frames = frame + 1;
+        for (int i = 0; i < events.size(); i++) {
+            Input.TouchEvent e = events.get(i);
+            writeVarint(frame - _lastFrame);
+            writeVarint(e._type.ordinal());
+            writeVarint(zigzag(e._x - _lastX));
+            writeVarint(zigzag(e._y - _lastY));
+            writeVarint(zigzag(e._id));
+            _lastFrame = frame;
+            _lastX = e._x;
+            _lastY = e._y;
+            _events++;
+        }
+    }
+
+    /**
+     * Guarda el resultado de la partida (por ejemplo la puntuación), para
+     * comprobarlo al repetirla
+     *
+     * @param result resultado
+     */
+    public synchronized void setResult(long result) { _result = result; }
+
+    /**
+     * Devuelve la semilla grabada
+     *
+     * @return semilla
+     */
+    public synchronized long getSeed() { return _seed; }
+
+    /**
+     * Devuelve el número de frames grabados
+     *
+     * @return frames
+     */
+    public synchronized int getFrames() { return _frames; }
+
+    /**
+     * Devuelve el número de eventos grabados
+     *
+     * @return eventos
+     */
+    public synchronized int getEvents() { return _events; }
+
+    /**
+     * Devuelve la grabación en el formato binario
+     *
+     * @return bytes de la grabación
+     */
+    public synchronized byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(_size + 32);
+        try {
+            write(bytes);
+        }
+        catch (IOException e) {
+            // No ocurre escribiendo en memoria
+            System.err.println(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Guarda la grabación en un fichero
+     *
+     * @param path ruta del fichero
+     *
+     * @return booleano de control si ha habido algún error
+     */
+    public synchronized boolean save(String path) {
+        try (OutputStream out = new FileOutputStream(path)) {
+            write(out);
+            return true;
+        }
+        catch (IOException e) {
+            // En caso de error avisamos al usuario
+            System.err.println(e);
+            return false;
+        }
+    }
+
+    /**
+     * Escribe la cabecera y los eventos
+     */
+    private void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeLong(_seed);
+        data.writeLong(_result);
+        byte[] header = new byte[10];
+        data.write(header, 0, putVarint(header, 0, _frames));
+        data.write(header, 0, putVarint(header, 0, _events));
+        data.write(_data, 0, _size);
+        data.flush();
+    }
+
+    /**
+     * Añade un entero sin signo en varint (7 bits por byte, el bit alto indica
+     * que sigue otro byte)
+     */
+    private void writeVarint(int value) {
+        if (_size + 5 > _data.length) {
+            byte[] data = new byte[_data.length * 2];
+            System.arraycopy(_data, 0, data, 0, _size);
+            _data = data;
+        }
+        _size = putVarint(_data, _size, value);
+    }
+
+    /**
+     * Escribe un varint en un array
+     *
+     * @return posición siguiente al último byte escrito
+     */
+    private static int putVarint(byte[] dst, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            dst[pos++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dst[pos++] = (byte)value;
+        return pos;
+    }
+
+    /**
+     * Codifica un entero con signo para que los valores pequeños, positivos o
+     * negativos, ocupen poco en varint
+     */
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+}
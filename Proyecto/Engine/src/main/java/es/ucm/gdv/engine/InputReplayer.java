@@ -0,0 +1,223 @@
+package es.ucm.gdv.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Repite una partida grabada con InputRecorder: siembra el generador del juego con la
+ * semilla grabada y mete cada evento en el input justo antes del frame en que lo
+ * recibió la lógica, como si viniera de la plataforma
+ *
+ * Los eventos se decodifican a medida que se necesitan. Con un paso fijo igual al de
+ * la grabación la lógica hace exactamente lo mismo, y sin ventana ni esperas puede
+ * hacerlo mucho más rápido que en tiempo real. Al pasar el último frame grabado se
+ * avisa al Runnable de fin, que normalmente para el juego
+ */
+public class InputReplayer {
+
+    /**
+     * Semilla, resultado grabado, frames y eventos
+     */
+    private long _seed;
+    private long _result;
+    private int _frames;
+    private int _events;
+
+    /**
+     * Eventos codificados, posición del primero y posición actual
+     */
+    private byte[] _data;
+    private int _start;
+    private int _pos;
+
+    /**
+     * Eventos decodificados y frame del siguiente (-1 si no quedan)
+     */
+    private int _read = 0;
+    private int _nextFrame = -1;
+
+    /**
+     * Frame y coordenadas del último evento decodificado
+     */
+    private int _lastFrame = 0;
+    private int _lastX = 0;
+    private int _lastY = 0;
+
+    /**
+     * Se llama al terminar la repetición (puede ser null)
+     */
+    private Runnable _onFinished = null;
+    private boolean _finished = false;
+
+    private InputReplayer() {
+    }
+
+    /**
+     * Carga una grabación de un fichero
+     *
+     * @param path ruta del fichero
+     *
+     * @return la grabación, o null si ha habido algún error
+     */
+    public static InputReplayer load(String path) {
+        try (InputStream in = new FileInputStream(path)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0)
+                bytes.write(buffer, 0, n);
+            return fromBytes(bytes.toByteArray());
+        }
+        catch (IOException e) {
+            // En caso de error avisamos al usuario
+            System.err.println(e);
+            return null;
+        }
+    }
+
+    /**
+     * Lee una grabación en memoria
+     *
+     * @param data bytes de la grabación (no se copian)
+     *
+     * @return la grabación, o null si no tiene el formato correcto
+     */
+    public static InputReplayer fromBytes(byte[] data) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            if (in.readInt() != InputRecorder.MAGIC)
+                throw new IOException("No es una grabación de input");
+
+            InputReplayer r = new InputReplayer();
+            r._seed = in.readLong();
+            r._result = in.readLong();
+            r._data = data;
+            r._pos = 20;
+            r._frames = r.readVarint();
+            r._events = r.readVarint();
+            r._start = r._pos;
+            r.rewind();
+            return r;
+        }
+        catch (Exception e) {
+            // En caso de error avisamos al usuario
+            System.err.println(e);
+            return null;
+        }
+    }
+
+    /**
+     * Empieza a repetir en un juego: siembra su generador y se engancha a su input.
+     * Hay que llamarlo después de inicializar el Game y antes de inicializar la lógica
+     *
+     * @param game juego en el que repetir
+     *
+     * @return false si el juego no tiene input (no se ha inicializado)
+     */
+    public boolean start(Game game) {
+        if (game.getInput() == null) {
+            System.err.println("No se puede repetir el input en un juego sin inicializar");
+            return false;
+        }
+        rewind();
+        game.getRandom().setSeed(_seed);
+        game.getInput().setReplayer(this);
+        return true;
+    }
+
+    /**
+     * Asigna lo que se hace al terminar la repetición
+     *
+     * @param onFinished se llama una vez, desde la hebra de la lógica (null para nada)
+     */
+    public void setOnFinished(Runnable onFinished) { _onFinished = onFinished; }
+
+    /**
+     * Indica si ya se han repetido todos los frames grabados
+     *
+     * @return true si ha terminado
+     */
+    public boolean isFinished() { return _finished; }
+
+    // Datos de la grabación
+    public long getSeed() { return _seed; }
+
+    public long getResult() { return _result; }
+
+    public int getFrames() { return _frames; }
+
+    public int getEvents() { return _events; }
+
+    /**
+     * Mete en la lista los eventos grabados de un frame
+     *
+     * @param frame frame que va a empezar
+     * @param events lista de eventos del input
+     */
+    void feed(int frame, List<Input.TouchEvent> events) {
+        while (_nextFrame == frame) {
+            Input.TouchEventType type = Input.TouchEventType.values()[readVarint()];
+            _lastX += unzigzag(readVarint());
+            _lastY += unzigzag(readVarint());
+            int id = unzigzag(readVarint());
+            events.add(new Input.TouchEvent(type, _lastX, _lastY, id));
+            _read++;
+            readNextFrame();
+        }
+
+        if (frame >= _frames && !_finished) {
+            _finished = true;
+            if (_onFinished != null)
+                _onFinished.run();
+        }
+    }
+
+    /**
+     * Vuelve al principio de la grabación
+     */
+    private void rewind() {
+        _pos = _start;
+        _read = 0;
+        _lastFrame = _lastX = _lastY = 0;
+        _finished = false;
+        readNextFrame();
+    }
+
+    /**
+     * Decodifica el frame del siguiente evento
+     */
+    private void readNextFrame() {
+        if (_read < _events) {
+            _lastFrame += readVarint();
+            _nextFrame = _lastFrame;
+        }
+        else
+            _nextFrame = -1;
+    }
+
+    /**
+     * Lee un entero en varint
+     */
+    private int readVarint() {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = _data[_pos++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new IllegalStateException("Varint mal formado en la grabación");
+    }
+
+    /**
+     * Deshace la codificación zigzag de los enteros con signo
+     */
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -18,13 +18,18 @@ public interface Logic {
     /**
      * Actualiza to-do lo que pueda ser relativo a la lógica
      *
-     * @param deltaTime tiempo en segundos desde el frame anterior
+     * @param deltaTime duración del paso en segundos (fija, la marca el GameLoop)
      */
     public void update(double deltaTime);
 
     /**
      * Encargado del renderizado
+     *
+     * La lógica se actualiza en pasos fijos; alpha indica cuánto del siguiente paso
+     * ha transcurrido ya, para poder interpolar entre el estado anterior y el actual
+     *
+     * @param alpha fracción de paso (entre 0 y 1) desde el último update
      */
-    public void render();
+    public void render(double alpha);
 
 }
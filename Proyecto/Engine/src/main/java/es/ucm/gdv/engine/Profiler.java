@@ -0,0 +1,337 @@
+package es.ucm.gdv.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Perfilador ligero para usar dentro del propio juego, sin un perfilador externo
+ *
+ * Mide secciones con nombre abiertas con begin y cerradas con end (se pueden anidar,
+ * el tiempo de cada sección incluye el de las que contiene). Junto con ProfilingGraphics
+ * reparte además los pintados, píxeles rellenados y tiempo de pintado entre la sección
+ * abierta en ese momento (quién pinta) y la imagen pintada (qué se pinta)
+ *
+ * Las secciones se crean la primera vez que se abren, después medir no reserva memoria.
+ * Se mide desde una sola hebra, la de la lógica, pero los métodos están sincronizados
+ * para poder pedir el informe desde otra (por ejemplo al cerrar el programa)
+ */
+public class Profiler {
+
+    /**
+     * Estadísticas acumuladas de una sección o de una imagen
+     */
+    public static class Section implements AutoCloseable {
+
+        /**
+         * Perfilador al que pertenece y nombre
+         */
+        private final Profiler _profiler;
+        private final String _name;
+
+        /**
+         * Veces que se ha abierto, tiempo total y máximo en nanosegundos
+         */
+        private long _calls = 0;
+        private long _nanos = 0;
+        private long _maxNanos = 0;
+
+        /**
+         * Pintados, píxeles físicos rellenados y tiempo de pintado en nanosegundos
+         */
+        private long _draws = 0;
+        private long _pixels = 0;
+        private long _drawNanos = 0;
+
+        private Section(Profiler profiler, String name) {
+            _profiler = profiler;
+            _name = name;
+        }
+
+        // Consultas de lo acumulado (tiempos en nanosegundos)
+        public String getName() { return _name; }
+
+        public long getCalls() { return _calls; }
+
+        public long getNanos() { return _nanos; }
+
+        public long getMaxNanos() { return _maxNanos; }
+
+        public long getDraws() { return _draws; }
+
+        public long getPixels() { return _pixels; }
+
+        public long getDrawNanos() { return _drawNanos; }
+
+        /**
+         * Cierra la sección, para usarla en un try-with-resources
+         */
+        @Override
+        public void close() {
+            _profiler.end();
+        }
+
+        private void reset() {
+            _calls = _nanos = _maxNanos = 0;
+            _draws = _pixels = _drawNanos = 0;
+        }
+    }
+
+    /**
+     * Profundidad máxima de anidamiento de secciones
+     */
+    private static final int MAX_DEPTH = 32;
+
+    /**
+     * Secciones por nombre, por tipo de objeto y estadísticas por imagen
+     */
+    private HashMap<String, Section> _sections = new HashMap<String, Section>();
+    private IdentityHashMap<Class<?>, Section> _typeSections = new IdentityHashMap<Class<?>, Section>();
+    private IdentityHashMap<Image, Section> _images = new IdentityHashMap<Image, Section>();
+
+    /**
+     * Nombre (ruta) de las imágenes creadas a través de ProfilingGraphics
+     */
+    private IdentityHashMap<Image, String> _imageNames = new IdentityHashMap<Image, String>();
+
+    /**
+     * Pila de secciones abiertas y del instante en que se abrieron
+     */
+    private Section[] _stack = new Section[MAX_DEPTH];
+    private long[] _starts = new long[MAX_DEPTH];
+    private int _depth = 0;
+
+    /**
+     * Sección a la que van los pintados hechos sin ninguna sección abierta
+     */
+    private Section _root = section("(sin sección)");
+
+    /**
+     * Sección a la que van los rellenos de los clear, que la plataforma hace al
+     * primer pintado y no cuando se piden
+     */
+    private Section _clear = section("(clear)");
+
+    /**
+     * Frames medidos
+     */
+    private long _frames = 0;
+
+    /**
+     * Abre una sección
+     *
+     * @param name nombre de la sección
+     *
+     * @return la sección, que se cierra con close o con end
+     */
+    public synchronized Section begin(String name) {
+        return push(section(name));
+    }
+
+    /**
+     * Abre la sección de un tipo de objeto (por ejemplo la clase de quien pinta).
+     * No reserva memoria después de la primera vez
+     *
+     * @param type tipo, la sección se llama como la clase
+     *
+     * @return la sección, que se cierra con close o con end
+     */
+    public synchronized Section begin(Class<?> type) {
+        Section s = _typeSections.get(type);
+        if (s == null) {
+            s = section(type.getSimpleName());
+            _typeSections.put(type, s);
+        }
+        return push(s);
+    }
+
+    /**
+     * Cierra la última sección abierta
+     */
+    public synchronized void end() {
+        if (_depth == 0)
+            return;
+        _depth--;
+        Section s = _stack[_depth];
+        long nanos = System.nanoTime() - _starts[_depth];
+        _stack[_depth] = null;
+        s._calls++;
+        s._nanos += nanos;
+        if (nanos > s._maxNanos)
+            s._maxNanos = nanos;
+    }
+
+    /**
+     * Marca el comienzo de un frame, para dar los valores por frame
+     */
+    public synchronized void nextFrame() {
+        _frames++;
+    }
+
+    /**
+     * Apunta un pintado a la sección abierta y a la imagen pintada
+     *
+     * @param image imagen pintada (null para un clear)
+     * @param pixels píxeles físicos rellenados
+     * @param nanos tiempo de pintado en nanosegundos
+     */
+    public synchronized void countDraw(Image image, long pixels, long nanos) {
+        Section s = _depth > 0 ? _stack[_depth - 1] : _root;
+        s._draws++;
+        s._pixels += pixels;
+        s._drawNanos += nanos;
+
+        if (image == null)
+            return;
+        Section i = _images.get(image);
+        if (i == null) {
+            String name = _imageNames.get(image);
+            if (name == null)
+                name = "imagen " + image.getWidth() + "x" + image.getHeight();
+            i = new Section(this, name);
+            _images.put(image, i);
+        }
+        i._draws++;
+        i._pixels += pixels;
+        i._drawNanos += nanos;
+    }
+
+    /**
+     * Apunta tiempo a la sección abierta sin contar un pintado, para los que se
+     * descartan antes de llegar a la plataforma (fuera de pantalla o tapados)
+     *
+     * @param nanos tiempo en nanosegundos
+     */
+    public synchronized void countDrawTime(long nanos) {
+        Section s = _depth > 0 ? _stack[_depth - 1] : _root;
+        s._drawNanos += nanos;
+    }
+
+    /**
+     * Apunta el relleno de un clear a su propia sección
+     *
+     * @param pixels píxeles físicos rellenados (la ventana o solo las bandas laterales)
+     * @param nanos tiempo de relleno en nanosegundos
+     */
+    public synchronized void countClear(long pixels, long nanos) {
+        _clear._draws++;
+        _clear._pixels += pixels;
+        _clear._drawNanos += nanos;
+    }
+
+    /**
+     * Asocia un nombre a una imagen para el informe
+     *
+     * @param image imagen
+     * @param name nombre (normalmente su ruta)
+     */
+    public synchronized void setImageName(Image image, String name) {
+        if (image != null)
+            _imageNames.put(image, name);
+    }
+
+    /**
+     * Devuelve una sección por su nombre
+     *
+     * @param name nombre de la sección
+     *
+     * @return la sección, o null si nunca se ha abierto
+     */
+    public synchronized Section getSection(String name) {
+        return _sections.get(name);
+    }
+
+    /**
+     * Devuelve el número de frames medidos
+     *
+     * @return frames
+     */
+    public synchronized long getFrames() {
+        return _frames;
+    }
+
+    /**
+     * Vacía las estadísticas (no se puede llamar con secciones abiertas)
+     */
+    public synchronized void reset() {
+        for (Section s : _sections.values())
+            s.reset();
+        _images.clear();
+        _frames = 0;
+    }
+
+    /**
+     * Genera un informe de texto con las secciones ordenadas por tiempo y las
+     * imágenes ordenadas por píxeles rellenados. Tiempos en microsegundos por frame
+     *
+     * @return informe
+     */
+    public synchronized String report() {
+        long frames = Math.max(1, _frames);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Perfil de ").append(_frames).append(" frames (valores por frame)\n");
+        sb.append("Pintados medidos de uno en uno, sin lotes: el tiempo es el de cada pintado\n");
+        sb.append("Solo cuentan pixeles los que llegan a la plataforma; los clear van en (clear)\n");
+
+        sb.append(String.format("%-24s %10s %10s %10s %8s %12s %10s%n",
+                "seccion", "llamadas", "us", "max us", "pintados", "pixeles", "us pintado"));
+        for (Section s : sorted(_sections.values(), false)) {
+            if (s._calls == 0 && s._draws == 0)
+                continue;
+            sb.append(String.format("%-24s %10.1f %10.1f %10.1f %8.1f %12d %10.1f%n", s._name,
+                    s._calls / (double)frames, s._nanos / 1000.0 / frames, s._maxNanos / 1000.0,
+                    s._draws / (double)frames, s._pixels / frames, s._drawNanos / 1000.0 / frames));
+        }
+
+        sb.append(String.format("%-32s %8s %12s %10s%n", "imagen", "pintados", "pixeles", "us pintado"));
+        for (Section s : sorted(_images.values(), true)) {
+            sb.append(String.format("%-32s %8.1f %12d %10.1f%n", s._name,
+                    s._draws / (double)frames, s._pixels / frames, s._drawNanos / 1000.0 / frames));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Busca o crea una sección por nombre
+     */
+    private Section section(String name) {
+        Section s = _sections.get(name);
+        if (s == null) {
+            s = new Section(this, name);
+            _sections.put(name, s);
+        }
+        return s;
+    }
+
+    /**
+     * Apila una sección abierta
+     */
+    private Section push(Section s) {
+        if (_depth == MAX_DEPTH)
+            throw new IllegalStateException("Demasiadas secciones anidadas en el perfilador");
+        _stack[_depth] = s;
+        _starts[_depth] = System.nanoTime();
+        _depth++;
+        return s;
+    }
+
+    /**
+     * Copia y ordena de mayor a menor por tiempo o por píxeles
+     */
+    private static ArrayList<Section> sorted(Iterable<Section> sections, final boolean byPixels) {
+        ArrayList<Section> list = new ArrayList<Section>();
+        for (Section s : sections)
+            list.add(s);
+        Collections.sort(list, new Comparator<Section>() {
+            @Override
+            public int compare(Section a, Section b) {
+                long va = byPixels ? a._pixels : a._nanos + a._drawNanos;
+                long vb = byPixels ? b._pixels : b._nanos + b._drawNanos;
+                return va < vb ? 1 : (va > vb ? -1 : 0);
+            }
+        });
+        return list;
+    }
+}
@@ -0,0 +1,293 @@
+package es.ucm.gdv.engine;
+
+/**
+ * Decorador de cualquier Graphics que mide lo que se pinta para el perfilador
+ *
+ * Delega todo en el controlador envuelto y, por cada pintado, apunta en el Profiler
+ * el pintado, los píxeles físicos que rellena y el tiempo que tarda, a cuenta de la
+ * sección abierta y de la imagen. Las imágenes creadas con newImage se nombran por
+ * su ruta en el informe
+ *
+ * Con un AbstractGraphics se apunta lo que llega de verdad a la plataforma: los pintados
+ * descartados (fuera de pantalla o de la zona a repintar) solo cuentan su tiempo, y el
+ * clear, que se rellena al primer pintado y a veces solo en las bandas laterales, va a
+ * su propia sección con lo que ha rellenado, descontado del pintado que lo ha hecho
+ *
+ * Mientras se perfila no se abren lotes: dentro de uno los pintados solo se encolan y
+ * todo su coste caería en endBatch, a cuenta de quien lo cierra. Así cada pintado se
+ * envía a la plataforma en el momento y su tiempo real va al objeto que lo hace, a
+ * cambio de perder la agrupación por imagen. En el modo de dos hebras la lógica solo
+ * graba los pintados, y eso es lo que se mide
+ */
+public class ProfilingGraphics implements Graphics {
+
+    /**
+     * Controlador envuelto
+     */
+    private Graphics _graphics;
+
+    /**
+     * Perfilador en el que se apuntan los pintados
+     */
+    private Profiler _profiler;
+
+    /**
+     * Controlador envuelto si es un AbstractGraphics (null si no), y sus totales de
+     * pintados y clears enviados a la plataforma antes de la llamada en curso
+     */
+    private AbstractGraphics _platform;
+    private long _lastDraws = 0;
+    private long _lastPixels = 0;
+    private long _lastClearPixels = 0;
+    private long _lastClearNanos = 0;
+
+    /**
+     * Constructora
+     *
+     * @param graphics controlador a envolver
+     * @param profiler perfilador en el que apuntar los pintados
+     */
+    public ProfilingGraphics(Graphics graphics, Profiler profiler) {
+        _graphics = graphics;
+        _profiler = profiler;
+        _platform = graphics instanceof AbstractGraphics ? (AbstractGraphics)graphics : null;
+        if (_platform != null) {
+            _lastClearPixels = _platform.getClearPixels();
+            _lastClearNanos = _platform.getClearNanos();
+        }
+    }
+
+    /**
+     * Devuelve el controlador envuelto
+     *
+     * @return controlador de gráficos real
+     */
+    public Graphics getWrapped() {
+        return _graphics;
+    }
+
+    /**
+     * Devuelve el perfilador
+     *
+     * @return perfilador
+     */
+    public Profiler getProfiler() {
+        return _profiler;
+    }
+
+    @Override
+    public boolean init() {
+        return _graphics.init();
+    }
+
+    @Override
+    public Image newImage(String filename) {
+        Image image = _graphics.newImage(filename);
+        _profiler.setImageName(image, filename);
+        return image;
+    }
+
+    @Override
+    public AssetLoader getAssetLoader() {
+        return _graphics.getAssetLoader();
+    }
+
+    @Override
+    public void buildAtlas(AssetManifest manifest) {
+        _graphics.buildAtlas(manifest);
+    }
+
+    @Override
+    public TextureAtlas getAtlas() {
+        return _graphics.getAtlas();
+    }
+
+    @Override
+    public void drawImage(Image image, Rect dest, Rect source, float alpha) {
+        beginDraw();
+        long start = System.nanoTime();
+        _graphics.drawImage(image, dest, source, alpha);
+        endDraw(image, dest._w, dest._h, System.nanoTime() - start);
+    }
+
+    @Override
+    public void drawImage(Image image, float destX, float destY, Rect source, float alpha) {
+        beginDraw();
+        long start = System.nanoTime();
+        _graphics.drawImage(image, destX, destY, source, alpha);
+        endDraw(image, source._w, source._h, System.nanoTime() - start);
+    }
+
+    @Override
+    public void drawImage(Image image, float sx, float sy, float sw, float sh,
+                          float dx, float dy, float dw, float dh, float alpha) {
+        beginDraw();
+        long start = System.nanoTime();
+        _graphics.drawImage(image, sx, sy, sw, sh, dx, dy, dw, dh, alpha);
+        endDraw(image, dw, dh, System.nanoTime() - start);
+    }
+
+    @Override
+    public void beginBatch() {
+        // Sin lote, para medir cada pintado en quien lo hace
+    }
+
+    @Override
+    public void draw(Image image, Rect dest, Rect source, float alpha) {
+        beginDraw();
+        long start = System.nanoTime();
+        _graphics.draw(image, dest, source, alpha);
+        endDraw(image, dest._w, dest._h, System.nanoTime() - start);
+    }
+
+    @Override
+    public void endBatch() {
+        // No se ha abierto lote
+    }
+
+    @Override
+    public void clear(int color) {
+        // Con un AbstractGraphics el relleno se apunta cuando se hace de verdad
+        if (measuresPlatform()) {
+            countClears();
+            _graphics.clear(color);
+            return;
+        }
+        long start = System.nanoTime();
+        _graphics.clear(color);
+        _profiler.countDraw(null, (long)_graphics.getWindowWidth() * _graphics.getWindowHeight(),
+                System.nanoTime() - start);
+    }
+
+    @Override
+    public int getWindowWidth() {
+        return _graphics.getWindowWidth();
+    }
+
+    @Override
+    public int getWindowHeight() {
+        return _graphics.getWindowHeight();
+    }
+
+    @Override
+    public int getCulledDraws() {
+        return _graphics.getCulledDraws();
+    }
+
+    @Override
+    public int getOccludedDraws() {
+        return _graphics.getOccludedDraws();
+    }
+
+    @Override
+    public void setDirtyRendering(boolean enabled) {
+        _graphics.setDirtyRendering(enabled);
+    }
+
+    @Override
+    public boolean isDirtyRendering() {
+        return _graphics.isDirtyRendering();
+    }
+
+    @Override
+    public DirtyRegion getDirtyRegion() {
+        return _graphics.getDirtyRegion();
+    }
+
+    @Override
+    public int getDrawCalls() {
+        return _graphics.getDrawCalls();
+    }
+
+    @Override
+    public int getStateChanges() {
+        return _graphics.getStateChanges();
+    }
+
+    @Override
+    public void setCanvasSize(int w, int h) {
+        _graphics.setCanvasSize(w, h);
+    }
+
+    @Override
+    public int getCanvasWidth() {
+        return _graphics.getCanvasWidth();
+    }
+
+    @Override
+    public int getCanvasHeight() {
+        return _graphics.getCanvasHeight();
+    }
+
+    @Override
+    public Rect logicToPhysic(Rect dest) {
+        return _graphics.logicToPhysic(dest);
+    }
+
+    @Override
+    public Rect physicToLogic(Rect dest) {
+        return _graphics.physicToLogic(dest);
+    }
+
+    /**
+     * Indica si se puede medir lo que llega a la plataforma. En el modo de dos hebras
+     * la lógica solo graba los pintados y se estima por su tamaño
+     */
+    private boolean measuresPlatform() {
+        return _platform != null && !_platform.isRecording();
+    }
+
+    /**
+     * Apunta los clears rellenados desde la última llamada (por ejemplo en el flush del
+     * final del frame anterior) y guarda los totales de pintados antes de uno nuevo
+     */
+    private void beginDraw() {
+        if (!measuresPlatform())
+            return;
+        countClears();
+        _lastDraws = _platform.getPlatformDraws();
+        _lastPixels = _platform.getPlatformPixels();
+    }
+
+    /**
+     * Apunta un pintado: solo con píxeles si ha llegado a la plataforma, y sin el
+     * tiempo del clear pendiente que haya rellenado antes
+     */
+    private void endDraw(Image image, float w, float h, long nanos) {
+        if (!measuresPlatform()) {
+            _profiler.countDraw(image, pixels(w, h), nanos);
+            return;
+        }
+        nanos -= countClears();
+        if (_platform.getPlatformDraws() != _lastDraws)
+            _profiler.countDraw(image, _platform.getPlatformPixels() - _lastPixels, nanos);
+        else
+            _profiler.countDrawTime(nanos);
+    }
+
+    /**
+     * Apunta en el perfilador los clears rellenados desde la última vez
+     *
+     * @return tiempo de relleno apuntado en nanosegundos
+     */
+    private long countClears() {
+        long pixels = _platform.getClearPixels() - _lastClearPixels;
+        long nanos = _platform.getClearNanos() - _lastClearNanos;
+        if (nanos == 0 && pixels == 0)
+            return 0;
+        _lastClearPixels += pixels;
+        _lastClearNanos += nanos;
+        _profiler.countClear(pixels, nanos);
+        return nanos;
+    }
+
+    /**
+     * Píxeles físicos que ocupa un rect en coordenadas lógicas (el canvas
+     * se escala igual en los dos ejes)
+     */
+    private long pixels(float w, float h) {
+        float scale = Math.min((float)_graphics.getWindowWidth() / _graphics.getCanvasWidth(),
+                (float)_graphics.getWindowHeight() / _graphics.getCanvasHeight());
+        return (long)(Math.abs(w * h) * scale * scale);
+    }
+}
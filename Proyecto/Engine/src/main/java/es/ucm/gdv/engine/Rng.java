@@ -0,0 +1,168 @@
+package es.ucm.gdv.engine;
+
+/**
+ * Generador de números aleatorios del juego (SplitMix64)
+ *
+ * Cada Game tiene el suyo, así que no se comparte un generador global entre hebras
+ * como con Math.random. No está sincronizado: se usa desde la hebra de la lógica.
+ * Con la misma semilla da siempre la misma secuencia, en cualquier plataforma,
+ * lo que permite repetir partidas exactamente
+ *
+ * Para ráfagas (por ejemplo las partículas de un punto) fill rellena un array de
+ * golpe, sin una llamada por valor
+ */
+public class Rng {
+
+    /**
+     * Incremento de la secuencia de Weyl (parte fraccionaria de la razón áurea)
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Escalas para pasar los bits altos a [0, 1)
+     */
+    private static final float FLOAT_UNIT = 1.0f / (1 << 24);
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+    /**
+     * Estado y semilla con la que se inicializó
+     */
+    private long _state;
+    private long _seed;
+
+    /**
+     * Constructora con una semilla distinta en cada ejecución
+     */
+    public Rng() {
+        this(System.nanoTime());
+    }
+
+    /**
+     * Constructora con una semilla dada
+     *
+     * @param seed semilla
+     */
+    public Rng(long seed) {
+        setSeed(seed);
+    }
+
+    /**
+     * Reinicia la secuencia con una semilla
+     *
+     * @param seed semilla
+     */
+    public void setSeed(long seed) {
+        _seed = seed;
+        _state = seed;
+    }
+
+    /**
+     * Devuelve la semilla con la que se inició la secuencia actual
+     *
+     * @return semilla
+     */
+    public long getSeed() {
+        return _seed;
+    }
+
+    /**
+     * Devuelve 64 bits aleatorios
+     *
+     * @return número aleatorio
+     */
+    public long nextLong() {
+        long z = (_state += GOLDEN_GAMMA);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Devuelve un entero entre 0 (incluido) y bound (excluido)
+     *
+     * @param bound límite superior, mayor que 0
+     *
+     * @return número aleatorio
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0)
+            throw new IllegalArgumentException("El límite debe ser positivo: " + bound);
+        // Multiplicación en vez de módulo: sin divisiones y sin sesgo apreciable
+        return (int)(((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * Devuelve true o false con la misma probabilidad
+     *
+     * @return booleano aleatorio
+     */
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    /**
+     * Devuelve un float entre 0 (incluido) y 1 (excluido)
+     *
+     * @return número aleatorio
+     */
+    public float nextFloat() {
+        return (nextLong() >>> 40) * FLOAT_UNIT;
+    }
+
+    /**
+     * Devuelve un float entre min (incluido) y max (excluido)
+     *
+     * @param min límite inferior
+     * @param max límite superior
+     *
+     * @return número aleatorio
+     */
+    public float nextFloat(float min, float max) {
+        return min + nextFloat() * (max - min);
+    }
+
+    /**
+     * Devuelve un double entre 0 (incluido) y 1 (excluido)
+     *
+     * @return número aleatorio
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Rellena parte de un array con floats entre 0 (incluido) y 1 (excluido).
+     * Con cada número de 64 bits se sacan dos floats
+     *
+     * @param dst array destino
+     * @param offset primera posición a rellenar
+     * @param length número de valores
+     */
+    public void fill(float[] dst, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        for (; i + 1 < end; i += 2) {
+            long bits = nextLong();
+            dst[i] = (bits >>> 40) * FLOAT_UNIT;
+            dst[i + 1] = ((bits >>> 8) & 0xFFFFFF) * FLOAT_UNIT;
+        }
+        if (i < end)
+            dst[i] = nextFloat();
+    }
+
+    /**
+     * Rellena parte de un array con floats entre min (incluido) y max (excluido)
+     *
+     * @param dst array destino
+     * @param offset primera posición a rellenar
+     * @param length número de valores
+     * @param min límite inferior
+     * @param max límite superior
+     */
+    public void fill(float[] dst, int offset, int length, float min, float max) {
+        fill(dst, offset, length);
+        float range = max - min;
+        for (int i = offset; i < offset + length; i++)
+            dst[i] = min + dst[i] * range;
+    }
+}
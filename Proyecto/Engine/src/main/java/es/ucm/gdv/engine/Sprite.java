@@ -26,7 +26,7 @@ public class Sprite {
      */
     public Sprite(Image image, Rect rect){
         _img = image;
-        _rect = rect;
+        setRect(rect);
     }
 
     /**
@@ -37,8 +37,7 @@ public class Sprite {
      * @param image imagen del sprite
      */
     public Sprite(Image image){
-        _img = image;
-        _rect = new Rect(0,0, image.getWidth(), image.getHeight());
+        this(image, new Rect(0,0, image.getWidth(), image.getHeight()));
     }
 
     /**
@@ -49,7 +48,9 @@ public class Sprite {
      * @param alpha transparencia de la imagen del sprite
      */
     public void draw(Graphics g, Rect dest, float alpha){
-        g.drawImage(_img, dest, _rect, alpha);
+        // Si la imagen es una región del atlas, Graphics la resuelve a la página sin reservar memoria
+        g.drawImage(_img, _rect._x, _rect._y, _rect._w, _rect._h,
+                dest._x, dest._y, dest._w, dest._h, alpha);
     }
 
     /**
@@ -0,0 +1,230 @@
+package es.ucm.gdv.engine;
+
+import java.util.Arrays;
+
+/**
+ * Cola de pintado por lotes
+ *
+ * Guarda los pintados entre beginBatch y endBatch y, al cerrar el lote, los reordena
+ * agrupándolos por imagen y alpha siempre que el orden en z lo permita: un pintado solo
+ * puede adelantarse a otro anterior si sus rects destino no se solapan. Después los
+ * envía a la plataforma en una única pasada, saltándose los que quedan tapados por
+ * un pintado opaco posterior que cubre el canvas entero
+ *
+ * Los rects destino van en coordenadas lógicas y los fuente en píxeles de la imagen
+ */
+class SpriteBatch {
+
+    /**
+     * Número de pintados anteriores con los que se comprueba el solapamiento. Los que
+     * quedan más atrás se tratan como si se solaparan (nunca se adelanta a ellos)
+     */
+    private static final int OVERLAP_WINDOW = 256;
+
+    /**
+     * Número máximo de pintados por lote (limitado por los bits de la clave de ordenación),
+     * al alcanzarlo el lote se vacía automáticamente
+     */
+    static final int MAX_COMMANDS = 1 << 16;
+
+    /**
+     * Número de floats guardados por pintado (destino x, y, w, h y fuente x, y, w, h)
+     */
+    private static final int STRIDE = 8;
+
+    /**
+     * Imagen de cada pintado
+     */
+    private Image[] _images = new Image[64];
+
+    /**
+     * Rects destino y fuente de cada pintado, STRIDE floats por pintado
+     */
+    private float[] _rects = new float[64 * STRIDE];
+
+    /**
+     * Alpha de cada pintado (0-255)
+     */
+    private int[] _alphas = new int[64];
+
+    /**
+     * Clasificación según el alpha de la imagen original de cada pintado
+     */
+    private Transparency[] _transparencies = new Transparency[64];
+
+    /**
+     * Nivel de cada pintado: los de un mismo nivel pueden reordenarse entre sí
+     */
+    private int[] _levels = new int[64];
+
+    /**
+     * Grupo (imagen distinta) de cada pintado
+     */
+    private int[] _groups = new int[64];
+
+    /**
+     * Claves de ordenación (nivel, grupo, alpha, índice original)
+     */
+    private long[] _keys = new long[64];
+
+    /**
+     * Imágenes distintas del lote, su posición es el identificador de grupo
+     */
+    private Image[] _distinct = new Image[16];
+    private int _nDistinct = 0;
+
+    /**
+     * Número de pintados en la cola
+     */
+    private int _count = 0;
+
+    /**
+     * Añade un pintado a la cola
+     *
+     * @param image imagen a pintar (ya resuelta a la página del atlas si procede)
+     * @param sx x del rect fuente
+     * @param sy y del rect fuente
+     * @param sw ancho del rect fuente
+     * @param sh alto del rect fuente
+     * @param dx x del rect destino en coordenadas lógicas
+     * @param dy y del rect destino en coordenadas lógicas
+     * @param dw ancho del rect destino en coordenadas lógicas
+     * @param dh alto del rect destino en coordenadas lógicas
+     * @param alpha transparencia (0-255)
+     * @param transparency clasificación según el alpha de la imagen original
+     */
+    void add(Image image, float sx, float sy, float sw, float sh,
+             float dx, float dy, float dw, float dh, float alpha, Transparency transparency) {
+        if (_count == _images.length)
+            grow();
+
+        int i = _count++;
+        _images[i] = image;
+        int o = i * STRIDE;
+        _rects[o] = dx;
+        _rects[o + 1] = dy;
+        _rects[o + 2] = dw;
+        _rects[o + 3] = dh;
+        _rects[o + 4] = sx;
+        _rects[o + 5] = sy;
+        _rects[o + 6] = sw;
+        _rects[o + 7] = sh;
+        _alphas[i] = AbstractGraphics.alphaLevel(alpha);
+        _transparencies[i] = transparency;
+        _groups[i] = groupOf(image);
+    }
+
+    /**
+     * Reordena los pintados de la cola y los envía a la plataforma, dejando la cola vacía
+     *
+     * @param g controlador de gráficos que hace el pintado
+     */
+    void flush(AbstractGraphics g) {
+        if (_count == 0)
+            return;
+
+        // Calculamos el nivel de cada pintado: tiene que ir después de todos los
+        // anteriores con los que se solapa y que no comparten imagen y alpha
+        int barrier = 0;
+        for (int i = 0; i < _count; i++) {
+            int level = 0;
+            int first = i - OVERLAP_WINDOW;
+            if (first > 0) {
+                // Lo que queda fuera de la ventana actúa como barrera
+                barrier = Math.max(barrier, _levels[first - 1] + 1);
+                level = barrier;
+            }
+            for (int j = Math.max(0, first); j < i; j++) {
+                if (overlaps(i, j)) {
+                    boolean sameKey = _groups[i] == _groups[j] && _alphas[i] == _alphas[j];
+                    level = Math.max(level, _levels[j] + (sameKey ? 0 : 1));
+                }
+            }
+            _levels[i] = level;
+            _keys[i] = ((long)level << 44) | ((long)_groups[i] << 28) | ((long)_alphas[i] << 20) | i;
+        }
+
+        // Buscamos el último pintado opaco que tapa el canvas entero: lo anterior no se ve
+        int cover = -1;
+        for (int i = _count - 1; i >= 0 && cover < 0; i--) {
+            int o = i * STRIDE;
+            if (g.coversCanvas(_rects[o], _rects[o + 1], _rects[o + 2], _rects[o + 3], _alphas[i], _transparencies[i]))
+                cover = i;
+        }
+        if (cover >= 0) {
+            g.countOccluded(cover);
+            g.flushClear(true);
+        }
+
+        // Ordenamos por nivel, imagen, alpha y orden original (el índice hace la ordenación estable)
+        Arrays.sort(_keys, 0, _count);
+
+        for (int k = 0; k < _count; k++) {
+            int i = (int)(_keys[k] & 0xFFFFF);
+            if (i < cover)
+                continue;
+            int o = i * STRIDE;
+            g.submitDraw(_images[i], _rects[o + 4], _rects[o + 5], _rects[o + 6], _rects[o + 7],
+                    _rects[o], _rects[o + 1], _rects[o + 2], _rects[o + 3], _alphas[i], _transparencies[i]);
+        }
+
+        clear();
+    }
+
+    /**
+     * Vacía la cola sin pintar
+     */
+    void clear() {
+        Arrays.fill(_images, 0, _count, null);
+        Arrays.fill(_transparencies, 0, _count, null);
+        Arrays.fill(_distinct, 0, _nDistinct, null);
+        _count = 0;
+        _nDistinct = 0;
+    }
+
+    /**
+     * Devuelve el número de pintados en la cola
+     *
+     * @return número de pintados
+     */
+    int size() {
+        return _count;
+    }
+
+    /**
+     * Comprueba si los rects destino de dos pintados se solapan
+     */
+    private boolean overlaps(int i, int j) {
+        int a = i * STRIDE, b = j * STRIDE;
+        return _rects[a] < _rects[b] + _rects[b + 2] && _rects[b] < _rects[a] + _rects[a + 2]
+                && _rects[a + 1] < _rects[b + 1] + _rects[b + 3] && _rects[b + 1] < _rects[a + 1] + _rects[a + 3];
+    }
+
+    /**
+     * Devuelve el identificador de grupo de una imagen, dándolo de alta si es nueva
+     */
+    private int groupOf(Image image) {
+        for (int k = 0; k < _nDistinct; k++) {
+            if (_distinct[k] == image)
+                return k;
+        }
+        if (_nDistinct == _distinct.length)
+            _distinct = Arrays.copyOf(_distinct, _distinct.length * 2);
+        _distinct[_nDistinct] = image;
+        return _nDistinct++;
+    }
+
+    /**
+     * Duplica la capacidad de la cola
+     */
+    private void grow() {
+        int n = _images.length * 2;
+        _images = Arrays.copyOf(_images, n);
+        _rects = Arrays.copyOf(_rects, n * STRIDE);
+        _alphas = Arrays.copyOf(_alphas, n);
+        _transparencies = Arrays.copyOf(_transparencies, n);
+        _levels = Arrays.copyOf(_levels, n);
+        _groups = Arrays.copyOf(_groups, n);
+        _keys = Arrays.copyOf(_keys, n);
+    }
+}
@@ -0,0 +1,190 @@
+package es.ucm.gdv.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Atlas de texturas: agrupa varias imágenes en una o pocas páginas grandes
+ * y guarda la tabla de regiones (ruta -> página y rect)
+ *
+ * El empaquetado se hace por estanterías: las imágenes se ordenan de mayor a menor
+ * altura y se colocan de izquierda a derecha en filas, abriendo una fila nueva
+ * (o una página nueva) cuando no caben. Las imágenes que no caben en una página
+ * vacía se quedan fuera del atlas
+ *
+ * Todas las medidas van en píxeles
+ */
+public class TextureAtlas {
+
+    /**
+     * Tamaño máximo por defecto de cada página
+     */
+    public static final int DEFAULT_PAGE_SIZE = 2048;
+
+    /**
+     * Separación entre regiones, evita que al escalar se mezclen píxeles vecinos
+     */
+    private static final int PADDING = 2;
+
+    /**
+     * Páginas del atlas
+     */
+    private ArrayList<Image> _pages;
+
+    /**
+     * Tabla de regiones, indexada por la ruta de la imagen original
+     */
+    private HashMap<String, AtlasImage> _regions;
+
+    /**
+     * Constructora privada, los atlas se crean con build
+     */
+    private TextureAtlas() {
+        _pages = new ArrayList<Image>();
+        _regions = new HashMap<String, AtlasImage>();
+    }
+
+    /**
+     * Construye un atlas con las imágenes dadas
+     *
+     * Cada imagen se decodifica una única vez. Las que no caben en una página se devuelven
+     * en leftovers (ya cargadas) para que el llamante decida qué hacer con ellas
+     *
+     * @param g controlador de gráficos que carga las imágenes y compone las páginas
+     * @param filenames rutas de las imágenes
+     * @param pageSize tamaño máximo (ancho y alto) de cada página
+     * @param leftovers mapa donde se dejan las imágenes que no entran en el atlas
+     *
+     * @return el atlas construido
+     */
+    static TextureAtlas build(AbstractGraphics g, List<String> filenames, int pageSize,
+                              HashMap<String, Image> leftovers) {
+        TextureAtlas atlas = new TextureAtlas();
+
+        // Cargamos todas las imágenes
+        final HashMap<String, Image> images = new HashMap<String, Image>();
+        ArrayList<String> packable = new ArrayList<String>();
+        for (String filename : filenames) {
+            Image image = g.loadImage(filename);
+            if (image == null)
+                continue;
+            if (image.getWidth() + PADDING > pageSize || image.getHeight() + PADDING > pageSize)
+                leftovers.put(filename, image);
+            else {
+                images.put(filename, image);
+                packable.add(filename);
+            }
+        }
+
+        // Ordenamos de mayor a menor altura para que las estanterías se aprovechen mejor
+        Collections.sort(packable, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return images.get(b).getHeight() - images.get(a).getHeight();
+            }
+        });
+
+        // Colocamos las imágenes página a página
+        int i = 0;
+        while (i < packable.size()) {
+            ArrayList<String> pageFiles = new ArrayList<String>();
+            ArrayList<Rect> pageRects = new ArrayList<Rect>();
+            int shelfX = 0, shelfY = 0, shelfH = 0;
+            int usedW = 0, usedH = 0;
+
+            while (i < packable.size()) {
+                Image image = images.get(packable.get(i));
+                int w = image.getWidth() + PADDING;
+                int h = image.getHeight() + PADDING;
+
+                // Si no cabe en la fila actual abrimos una nueva
+                if (shelfX + w > pageSize) {
+                    shelfY += shelfH;
+                    shelfX = 0;
+                    shelfH = 0;
+                }
+                // Si tampoco cabe en altura, la página está llena
+                if (shelfY + h > pageSize)
+                    break;
+
+                pageFiles.add(packable.get(i));
+                pageRects.add(new Rect(shelfX, shelfY, image.getWidth(), image.getHeight()));
+
+                shelfX += w;
+                shelfH = Math.max(shelfH, h);
+                usedW = Math.max(usedW, shelfX);
+                usedH = Math.max(usedH, shelfY + shelfH);
+                i++;
+            }
+
+            // Componemos la página con el tamaño justo que ocupa, guardando antes la
+            // clasificación de cada imagen (la plataforma puede liberar las originales)
+            Image[] pageImages = new Image[pageFiles.size()];
+            Transparency[] transparencies = new Transparency[pageFiles.size()];
+            int[] xs = new int[pageFiles.size()];
+            int[] ys = new int[pageFiles.size()];
+            for (int j = 0; j < pageFiles.size(); j++) {
+                pageImages[j] = images.get(pageFiles.get(j));
+                transparencies[j] = pageImages[j].getTransparency();
+                xs[j] = (int)pageRects.get(j)._x;
+                ys[j] = (int)pageRects.get(j)._y;
+            }
+            Image page = g.createAtlasPage(usedW, usedH, pageImages, xs, ys);
+            if (page == null) {
+                // Si la plataforma no puede crear la página, dejamos las imágenes sueltas
+                for (String filename : pageFiles)
+                    leftovers.put(filename, images.get(filename));
+                continue;
+            }
+
+            atlas._pages.add(page);
+            for (int j = 0; j < pageFiles.size(); j++)
+                atlas._regions.put(pageFiles.get(j), new AtlasImage(page, pageRects.get(j), transparencies[j]));
+        }
+
+        return atlas;
+    }
+
+    /**
+     * Devuelve la región de una imagen del atlas
+     *
+     * @param filename ruta de la imagen original
+     *
+     * @return la región o null si la imagen no está en el atlas
+     */
+    public AtlasImage getRegion(String filename) {
+        return _regions.get(filename);
+    }
+
+    /**
+     * Devuelve el número de páginas del atlas
+     *
+     * @return número de páginas
+     */
+    public int getPageCount() {
+        return _pages.size();
+    }
+
+    /**
+     * Devuelve una página del atlas
+     *
+     * @param i índice de la página
+     *
+     * @return página
+     */
+    public Image getPage(int i) {
+        return _pages.get(i);
+    }
+
+    /**
+     * Devuelve el número de imágenes empaquetadas
+     *
+     * @return número de regiones
+     */
+    public int getRegionCount() {
+        return _regions.size();
+    }
+}
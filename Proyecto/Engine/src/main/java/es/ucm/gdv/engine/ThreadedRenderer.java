@@ -0,0 +1,167 @@
+package es.ucm.gdv.engine;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pintado en una hebra propia, separada de la que actualiza la lógica
+ *
+ * La hebra de la lógica graba cada frame en una DrawList y la publica en un
+ * TripleBuffer; la hebra de pintado se queda siempre con la última y la pinta
+ * en la plataforma. Ninguna espera a la otra: si presentar el frame se atasca
+ * (BufferStrategy.show, unlockCanvasAndPost) la simulación y el input siguen
+ * a su ritmo, y los frames que no llegan a pintarse se descartan
+ *
+ * Las zonas modificadas de los frames descartados se acumulan en el siguiente,
+ * así el repintado parcial sigue siendo correcto
+ */
+public class ThreadedRenderer implements Runnable {
+
+    /**
+     * Presenta en la plataforma una lista grabada (en la hebra de pintado)
+     */
+    public interface Presenter {
+
+        /**
+         * Pinta la lista y la muestra en pantalla
+         *
+         * @param list lista de pintados del frame
+         */
+        void present(DrawList list);
+    }
+
+    /**
+     * Tiempo máximo que duerme la hebra de pintado esperando un frame nuevo
+     */
+    private static final long WAIT_NANOS = 1000000;
+
+    /**
+     * Controlador de gráficos en el que se graba
+     */
+    private AbstractGraphics _graphics;
+
+    /**
+     * Presentador de la plataforma
+     */
+    private Presenter _presenter;
+
+    /**
+     * Listas de pintado intercambiadas entre las dos hebras
+     */
+    private TripleBuffer<DrawList> _buffer =
+            new TripleBuffer<DrawList>(new DrawList(), new DrawList(), new DrawList());
+
+    /**
+     * Zona modificada en el último frame grabado y la de los frames publicados
+     * que aún pueden no haberse pintado (solo las usa la hebra de la lógica)
+     */
+    private DirtyRegion _own = new DirtyRegion();
+    private DirtyRegion _pending = new DirtyRegion();
+
+    /**
+     * Hebra de pintado y si está en marcha
+     */
+    private Thread _thread = null;
+    private volatile boolean _running = false;
+
+    /**
+     * Frames pintados desde el inicio
+     */
+    private volatile long _presented = 0;
+
+    /**
+     * Constructora
+     *
+     * @param graphics controlador de gráficos en el que se graba
+     * @param presenter presentador de la plataforma
+     */
+    public ThreadedRenderer(AbstractGraphics graphics, Presenter presenter) {
+        _graphics = graphics;
+        _presenter = presenter;
+    }
+
+    /**
+     * Lanza la hebra de pintado
+     */
+    public void start() {
+        if (_running)
+            return;
+        _running = true;
+        _thread = new Thread(this, "Render");
+        _thread.start();
+    }
+
+    /**
+     * Para la hebra de pintado y espera a que termine el frame en curso
+     */
+    public void stop() {
+        if (!_running)
+            return;
+        _running = false;
+        LockSupport.unpark(_thread);
+        while (true) {
+            try {
+                _thread.join();
+                _thread = null;
+                break;
+            }
+            catch (InterruptedException ie) {
+                // Esto no debería ocurrir nunca
+            }
+        }
+    }
+
+    /**
+     * Graba el render de la lógica y lo publica para la hebra de pintado.
+     * Se llama desde la hebra de la lógica
+     *
+     * @param logic lógica a pintar
+     * @param alpha fracción de paso desde el último update
+     */
+    public void record(Logic logic, double alpha) {
+        DrawList list = _buffer.getWriteBuffer();
+        list.reset();
+        _graphics.startRecording(list);
+        try {
+            logic.render(alpha);
+        }
+        finally {
+            _graphics.stopRecording();
+        }
+
+        // La lista lleva también lo modificado en los frames que quizá no se han pintado
+        DirtyRegion dirty = list.getDirtyRegion();
+        _own.set(dirty);
+        dirty.add(_pending);
+        _pending.set(dirty);
+        // Si el anterior sí se ha pintado, solo queda pendiente lo de este
+        if (!_buffer.publish())
+            _pending.set(_own);
+
+        LockSupport.unpark(_thread);
+    }
+
+    /**
+     * Devuelve el número de frames pintados desde el inicio
+     *
+     * @return frames pintados
+     */
+    public long getPresented() {
+        return _presented;
+    }
+
+    /**
+     * Bucle de la hebra de pintado. Aunque sea público, NO debe ser llamado desde el exterior
+     */
+    @Override
+    public void run() {
+        while (_running) {
+            if (_buffer.acquire()) {
+                _presenter.present(_buffer.getReadBuffer());
+                _presented++;
+            }
+            else {
+                LockSupport.parkNanos(this, WAIT_NANOS);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package es.ucm.gdv.engine;
+
+/**
+ * Clasificación de una imagen según su canal alpha
+ *
+ * Se calcula al cargar la imagen recorriendo sus píxeles, y permite a la plataforma
+ * pintar las imágenes opacas con una copia directa en lugar de mezclarlas con el fondo
+ */
+public enum Transparency {
+
+    /**
+     * Todos los píxeles son opacos (alpha 255)
+     */
+    OPAQUE,
+
+    /**
+     * Los píxeles son opacos o totalmente transparentes (alpha 255 o 0)
+     */
+    BITMASK,
+
+    /**
+     * Hay píxeles semitransparentes
+     */
+    TRANSLUCENT;
+
+    /**
+     * Combina dos clasificaciones quedándose con la más restrictiva
+     *
+     * @param other otra clasificación
+     *
+     * @return la que admite más transparencia de las dos
+     */
+    public Transparency combine(Transparency other) {
+        return other.ordinal() > ordinal() ? other : this;
+    }
+
+    /**
+     * Clasifica un bloque de píxeles ARGB
+     *
+     * Se puede llamar fila a fila pasando el resultado anterior en current
+     *
+     * @param argb píxeles en formato ARGB
+     * @param offset primer píxel a recorrer
+     * @param length número de píxeles a recorrer
+     * @param current clasificación de los píxeles ya recorridos
+     *
+     * @return clasificación de los píxeles recorridos hasta ahora
+     */
+    public static Transparency scan(int[] argb, int offset, int length, Transparency current) {
+        if (current == TRANSLUCENT)
+            return current;
+        for (int i = offset; i < offset + length; i++) {
+            int a = argb[i] >>> 24;
+            if (a != 255) {
+                // Con un solo píxel semitransparente ya no hace falta seguir
+                if (a != 0)
+                    return TRANSLUCENT;
+                current = BITMASK;
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,105 @@
+package es.ucm.gdv.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Intercambio sin bloqueos entre una hebra que escribe y otra que lee, con tres buffers
+ *
+ * La hebra que escribe rellena su buffer y lo publica; la que lee se queda siempre
+ * con el último publicado. Cada hebra tiene el suyo en exclusiva y el tercero queda
+ * en medio, así que ninguna espera a la otra: si la que lee va lenta, los buffers
+ * publicados que no llega a coger se descartan
+ *
+ * @param <T> tipo de los buffers
+ */
+public class TripleBuffer<T> {
+
+    /**
+     * Marca del buffer de en medio: publicado y todavía sin leer
+     */
+    private static final int FRESH = 4;
+
+    /**
+     * Los tres buffers
+     */
+    private final Object[] _buffers;
+
+    /**
+     * Índice del buffer de en medio, con la marca FRESH si no se ha leído
+     */
+    private final AtomicInteger _middle = new AtomicInteger(1);
+
+    /**
+     * Índice del buffer de la hebra que escribe (solo lo toca ella)
+     */
+    private int _back = 0;
+
+    /**
+     * Índice del buffer de la hebra que lee (solo lo toca ella)
+     */
+    private int _front = 2;
+
+    /**
+     * Constructora
+     *
+     * @param a primer buffer
+     * @param b segundo buffer
+     * @param c tercer buffer
+     */
+    public TripleBuffer(T a, T b, T c) {
+        _buffers = new Object[] { a, b, c };
+    }
+
+    /**
+     * Devuelve el buffer en el que escribe la hebra que escribe
+     *
+     * @return buffer de escritura
+     */
+    @SuppressWarnings("unchecked")
+    public T getWriteBuffer() {
+        return (T)_buffers[_back];
+    }
+
+    /**
+     * Publica el buffer de escritura y toma otro para el siguiente
+     *
+     * @return true si el buffer publicado anterior se ha descartado sin leer
+     */
+    public boolean publish() {
+        int old = _middle.getAndSet(_back | FRESH);
+        _back = old & 3;
+        return (old & FRESH) != 0;
+    }
+
+    /**
+     * Indica si hay un buffer publicado que todavía no se ha leído
+     *
+     * @return true si hay datos nuevos
+     */
+    public boolean hasNew() {
+        return (_middle.get() & FRESH) != 0;
+    }
+
+    /**
+     * Toma para la hebra que lee el último buffer publicado, si hay uno nuevo
+     *
+     * @return true si el buffer de lectura ha cambiado
+     */
+    public boolean acquire() {
+        if (!hasNew())
+            return false;
+        int old = _middle.getAndSet(_front);
+        _front = old & 3;
+        return true;
+    }
+
+    /**
+     * Devuelve el buffer que está leyendo la hebra que lee
+     *
+     * @return buffer de lectura
+     */
+    @SuppressWarnings("unchecked")
+    public T getReadBuffer() {
+        return (T)_buffers[_front];
+    }
+}
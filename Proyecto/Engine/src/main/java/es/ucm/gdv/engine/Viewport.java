@@ -0,0 +1,82 @@
+package es.ucm.gdv.engine;
+
+/**
+ * Transformación entre el canvas lógico y la ventana física
+ *
+ * Es inmutable: se recalcula (creando un Viewport nuevo) solo cuando cambia el tamaño
+ * de la ventana o del canvas lógico, y los métodos de pintado e input se limitan a leer
+ * sus campos
+ *
+ * Todas las medidas van en píxeles
+ */
+public final class Viewport {
+
+    /**
+     * Tamaño lógico del canvas
+     */
+    public final int logicWidth;
+    public final int logicHeight;
+
+    /**
+     * Tamaño de la ventana
+     */
+    public final int windowWidth;
+    public final int windowHeight;
+
+    /**
+     * Tamaño real (físico) del canvas dentro de la ventana
+     */
+    public final int canvasWidth;
+    public final int canvasHeight;
+
+    /**
+     * Escala de lógico a físico en cada eje
+     */
+    public final float scaleX;
+    public final float scaleY;
+
+    /**
+     * Desplazamiento del canvas para que quede centrado en la ventana (bandas laterales)
+     */
+    public final float offsetX;
+    public final float offsetY;
+
+    /**
+     * Constructora, calcula el mayor canvas que cabe en la ventana manteniendo
+     * la relación de aspecto lógica y lo centra
+     *
+     * @param logicW ancho lógico del canvas
+     * @param logicH alto lógico del canvas
+     * @param winW ancho de la ventana
+     * @param winH alto de la ventana
+     */
+    public Viewport(int logicW, int logicH, int winW, int winH) {
+        logicWidth = logicW;
+        logicHeight = logicH;
+        windowWidth = winW;
+        windowHeight = winH;
+
+        // Buscamos el maximo tamaño posible del canvas
+        // a lo ancho o a lo alto
+        double ratio = (double)logicW / (double)logicH;
+        if (winW / (double)winH >= ratio) {
+            // nos quedamos con el alto maximo
+            // para aprovechar el espacio
+            canvasHeight = winH;
+            canvasWidth = (int)((double)winH * logicW / logicH);
+        }
+        else {
+            // nos quedamos con el ancho maximo
+            // para aprovechar el espacio
+            canvasWidth = winW;
+            canvasHeight = (int)((double)winW * logicH / logicW);
+        }
+
+        scaleX = canvasWidth / (float)logicW;
+        scaleY = canvasHeight / (float)logicH;
+
+        // El offset es necesario para pintar el canvas y el contenido centrado
+        offsetX = (winW - canvasWidth) / 2.0f;
+        offsetY = (winH - canvasHeight) / 2.0f;
+    }
+}
@@ -4,14 +4,27 @@ import android.content.res.AssetManager;
 import android.graphics.Canvas;
 import android.view.SurfaceView;
 
+import java.util.concurrent.locks.LockSupport;
+
+import es.ucm.gdv.engine.DrawList;
+import es.ucm.gdv.engine.FrameLimiter;
+import es.ucm.gdv.engine.FrameMetrics;
+import es.ucm.gdv.engine.GameLoop;
 import es.ucm.gdv.engine.Logic;
+import es.ucm.gdv.engine.Rng;
+import es.ucm.gdv.engine.ThreadedRenderer;
 
 /**
  * Extensión del “Game” del motor, también hereda de la clase “Runnable” de Android. De esta manera
  * implementa lo relativo al inicio del juego y del bucle principal, además de la funcionalidad
  * de pausar el juego o retomarlo.
  */
-public class Game implements es.ucm.gdv.engine.Game, Runnable {
+public class Game implements es.ucm.gdv.engine.Game, Runnable, GameLoop.Listener {
+
+    /**
+     * Tiempo que se duerme en cada comprobación mientras se espera a la superficie
+     */
+    private static final long WAIT_NANOS = 1000000;
 
     /**
      * Superficie de dibujado en la pantalla
@@ -33,6 +46,11 @@ public class Game implements es.ucm.gdv.engine.Game, Runnable {
      */
     private Input _input;
 
+    /**
+     * Generador de números aleatorios del juego
+     */
+    private Rng _random = new Rng();
+
     /**
      * Proporciona acceso a los archivos de la aplicación
      */
@@ -56,6 +74,68 @@ public class Game implements es.ucm.gdv.engine.Game, Runnable {
      */
     volatile boolean _running = false;
 
+    /**
+     * Si es true se muestra el informe de rendimiento una vez por segundo
+     */
+    private volatile boolean _statsReport = false;
+
+    /**
+     * Si es true se pinta con el canvas por software (lockCanvas), que conserva el contenido
+     * entre frames y permite el repintado parcial. Si no, con el canvas acelerado, y el
+     * repintado parcial solo sirve para saltarse los frames sin cambios
+     *
+     * No se puede cambiar con la hebra en marcha: una superficie que ya se ha pintado
+     * con el canvas acelerado no admite el de software
+     */
+    private boolean _softwareCanvas = false;
+
+    /**
+     * Zona a repintar que se pasa a lockCanvas (Android puede ampliarla)
+     */
+    private android.graphics.Rect _dirtyRect = new android.graphics.Rect();
+
+    /**
+     * Bucle de paso fijo que llama a update y render
+     */
+    private GameLoop _loop = new GameLoop(this);
+
+    /**
+     * Limitador de frames. Por defecto sin límite: al liberar el canvas Android ya
+     * espera a la sincronización vertical
+     */
+    private FrameLimiter _limiter = new FrameLimiter(0);
+
+    /**
+     * Frames pintados e instante del último informe de rendimiento
+     */
+    private int _reportFrames = 0;
+    private long _reportTime = 0;
+
+    /**
+     * Si es true la lógica y el pintado van en hebras separadas
+     */
+    private boolean _threadedRendering = false;
+
+    /**
+     * Hebra de pintado en el modo de dos hebras (null si no se usa)
+     */
+    private ThreadedRenderer _renderer = null;
+
+    /**
+     * Frames presentados por la hebra de pintado en el último informe
+     */
+    private long _reportPresented = 0;
+
+    /**
+     * Métricas de duración de los frames, siempre activas
+     */
+    private FrameMetrics _metrics = new FrameMetrics();
+
+    /**
+     * Archivo al que se vuelcan las métricas al pausar (null para no volcarlas)
+     */
+    private volatile String _metricsFile = null;
+
     /**
      * Constructora
      *
@@ -65,8 +145,26 @@ public class Game implements es.ucm.gdv.engine.Game, Runnable {
     public Game(SurfaceView surfaceView, AssetManager assetManager){
         _surfaceView = surfaceView;
         _assetManager = assetManager;
+        _loop.setMetrics(_metrics);
     }
 
+    /**
+     * Activa o desactiva el informe por consola (una vez por segundo) de los FPS,
+     * de los pintados, cambios de estado y pintados descartados del último frame
+     * y del jitter del limitador de frames
+     *
+     * @param enabled true para mostrar el informe
+     */
+    public void setStatsReport(boolean enabled) { _statsReport = enabled; }
+
+    /**
+     * Elige entre el canvas por software (con repintado parcial) y el acelerado.
+     * Hay que llamarlo antes de resume
+     *
+     * @param enabled true para pintar con el canvas por software
+     */
+    public void setSoftwareCanvas(boolean enabled) { _softwareCanvas = enabled; }
+
     /**
      * Añadimos la lógica sobre la cual se trabajará en el bucle principal
      *
@@ -95,6 +193,56 @@ public class Game implements es.ucm.gdv.engine.Game, Runnable {
          return _input;
      }
 
+    /**
+     * Devuelve el generador de números aleatorios del juego
+     *
+     * @return generador
+     */
+    @Override
+    public Rng getRandom() {
+        return _random;
+    }
+
+    /**
+     * Devuelve el bucle de paso fijo, para ajustar su paso o consultar sus contadores
+     *
+     * @return bucle principal
+     */
+    public GameLoop getLoop() { return _loop; }
+
+    /**
+     * Cambia los frames por segundo a los que se limita el bucle (por ejemplo 30
+     * para ahorrar batería). Hay que llamarlo antes de resume
+     *
+     * @param fps frames por segundo, 0 para no limitar
+     */
+    public void setTargetFps(int fps) { _limiter.setTargetFps(fps); }
+
+    /**
+     * Activa o desactiva el modo de dos hebras: la lógica se actualiza y graba sus
+     * pintados en la hebra del bucle y otra hebra los presenta, así un
+     * unlockCanvasAndPost lento no retrasa la simulación. Hay que llamarlo antes de resume
+     *
+     * @param enabled true para pintar en una hebra propia
+     */
+    public void setThreadedRendering(boolean enabled) { _threadedRendering = enabled; }
+
+    /**
+     * Devuelve las métricas de duración de los frames
+     *
+     * @return métricas
+     */
+    public FrameMetrics getMetrics() { return _metrics; }
+
+    /**
+     * Indica un archivo al que volcar las métricas cada vez que se pausa el juego
+     * (Android puede cerrar la app pausada sin avisar), en JSON si acaba en ".json"
+     * y si no en CSV
+     *
+     * @param path ruta del archivo (por ejemplo en getFilesDir), o null para no volcarlas
+     */
+    public void setMetricsFile(String path) { _metricsFile = path; }
+
     /**
      * Inicializa lo necesario para correr el juego
      * en este caso la lógica, el gestor de gráficos y el de input,
@@ -112,6 +260,7 @@ public class Game implements es.ucm.gdv.engine.Game, Runnable {
 
         // Creamos el gestor de gráficos
         _graphics = new Graphics(_assetManager, _surfaceView);
+        _graphics.setMetrics(_metrics);
 
         // Creamos el gestor de entradas de input
         // y lo asignamos como listener
@@ -167,6 +316,11 @@ public class Game implements es.ucm.gdv.engine.Game, Runnable {
                     // Esto no debería ocurrir nunca
                 }
             } // while(true)
+
+            // Con la hebra parada volcamos las métricas
+            String path = _metricsFile;
+            if (path != null)
+                _metrics.dump(path);
         } // if (_running)
 
     } // pause
@@ -189,47 +343,139 @@ public class Game implements es.ucm.gdv.engine.Game, Runnable {
         // un tamaño mayor que 0. Si la hebra se pone en marcha
         // muy rápido, la vista podría todavía no estar inicializada
         while(_running && _surfaceView.getWidth() == 0)
-            // Espera activa
-            ;
-
-        long lastFrameTime = System.nanoTime();
-
-        long informePrevio = lastFrameTime; // Informes de FPS
-        int frames = 0;
+            // Esperamos dormidos en lugar de ocupar la CPU
+            LockSupport.parkNanos(WAIT_NANOS);
+
+        // El tiempo en pausa no cuenta como retraso
+        _reportTime = System.nanoTime();
+        _loop.reset();
+        _limiter.reset();
+
+        // En el modo de dos hebras la de pintado presenta lo que graba esta
+        if (_threadedRendering) {
+            _renderer = new ThreadedRenderer(_graphics, new ThreadedRenderer.Presenter() {
+                @Override
+                public void present(DrawList list) {
+                    Game.this.present(list, 0);
+                }
+            });
+            _renderer.start();
+        }
 
         // Bucle principal
         while(_running) {
+            _loop.frame();
+            _limiter.sync();
+        }
 
-            // Cálculo del deltatime en segundos
-            long currentTime = System.nanoTime();
-            long nanoElapsedTime = currentTime - lastFrameTime;
-            lastFrameTime = currentTime;
-            double elapsedTime = (double) nanoElapsedTime / 1.0E9; //segundos
-
-            // Llamamos a la lógica con el deltatime
-            _logic.update(elapsedTime);
-
-            //Informe de FPS
-            //if (currentTime - informePrevio > 1000000000l) {
-            //    long fps = frames * 1000000000l / (currentTime - informePrevio);
-            //    System.out.println("" + fps + " fps");
-            //    frames = 0;
-            //    informePrevio = currentTime;
-            //}
-            //++frames;
-
-            // Pintamos el frame
-            while (!_surfaceView.getHolder().getSurface().isValid())
-                ;
-
-            // Antes de pintar bloqueamos el canvas, después de pintar lo liberamos
-            Canvas canvas = _surfaceView.getHolder().lockHardwareCanvas();
-            _graphics.setCanvas(canvas);
-            // Llamamos al render de la lógica
-            _logic.render();
-            _surfaceView.getHolder().unlockCanvasAndPost(canvas);
-
-        } // while
+        // Al pausar esperamos también a la hebra de pintado
+        if (_renderer != null) {
+            _renderer.stop();
+            _renderer = null;
+        }
 
     } // run
+
+    /**
+     * Paso de simulación del bucle, llama al update de la lógica
+     *
+     * @param deltaTime duración del paso en segundos
+     */
+    @Override
+    public void update(double deltaTime) {
+        _logic.update(deltaTime);
+    }
+
+    /**
+     * Pintado del bucle: pinta el frame en la superficie, o lo graba para
+     * la hebra de pintado en el modo de dos hebras
+     *
+     * @param alpha fracción de paso desde el último update
+     */
+    @Override
+    public void render(double alpha) {
+        // Informe de FPS, pintados, cambios de estado y descartes del último frame
+        long currentTime = System.nanoTime();
+        if (_statsReport && currentTime - _reportTime > 1000000000l) {
+            long fps = _reportFrames * 1000000000l / (currentTime - _reportTime);
+            String report = fps + " fps, " + _graphics.getDrawCalls() + " pintados, "
+                    + _graphics.getStateChanges() + " cambios de estado, "
+                    + _graphics.getCulledDraws() + " fuera de pantalla, "
+                    + _graphics.getOccludedDraws() + " tapados, "
+                    + _loop.getDroppedSteps() + " pasos descartados, jitter "
+                    + _limiter.getJitterAverage() + " us (max " + _limiter.getJitterMax() + " us, "
+                    + _limiter.getLateFrames() + " frames tarde)";
+            if (_renderer != null) {
+                long presented = _renderer.getPresented();
+                report += ", " + (presented - _reportPresented) + " frames presentados";
+                _reportPresented = presented;
+            }
+            android.util.Log.d("Game", report);
+            _limiter.resetJitter();
+            _reportFrames = 0;
+            _reportTime = currentTime;
+        }
+        ++_reportFrames;
+
+        if (_renderer != null)
+            _renderer.record(_logic, alpha);
+        else
+            present(null, alpha);
+    }
+
+    /**
+     * Bloquea el canvas de la superficie, pinta el frame y lo libera
+     *
+     * @param list lista grabada a pintar, o null para llamar directamente al render de la lógica
+     * @param alpha fracción de paso desde el último update (sin lista)
+     */
+    private void present(DrawList list, double alpha) {
+        // Pintamos el frame cuando la superficie esté lista, esperando dormidos
+        while (_running && !_surfaceView.getHolder().getSurface().isValid())
+            LockSupport.parkNanos(WAIT_NANOS);
+        if (!_running)
+            return;
+
+        // En repintado parcial nos saltamos los frames en los que no ha cambiado nada
+        boolean repaint = list != null ? _graphics.beginRepaint(list.getDirtyRegion()) : _graphics.beginRepaint();
+        if (!repaint) {
+            _graphics.endRepaint();
+            return;
+        }
+
+        // Antes de pintar bloqueamos el canvas, después de pintar lo liberamos
+        Canvas canvas;
+        if (_softwareCanvas) {
+            // El canvas por software conserva lo que queda fuera de la zona bloqueada
+            _dirtyRect.set(_graphics.getRepaintX(), _graphics.getRepaintY(),
+                    _graphics.getRepaintX() + _graphics.getRepaintW(),
+                    _graphics.getRepaintY() + _graphics.getRepaintH());
+            canvas = _surfaceView.getHolder().lockCanvas(_dirtyRect);
+            // Android puede haber ampliado la zona, repintamos la que nos devuelve
+            _graphics.setRepaintArea(_dirtyRect.left, _dirtyRect.top,
+                    _dirtyRect.right - _dirtyRect.left, _dirtyRect.bottom - _dirtyRect.top);
+        }
+        else {
+            // El acelerado no conserva el contenido, siempre se repinta todo
+            _graphics.repaintAll();
+            canvas = _surfaceView.getHolder().lockHardwareCanvas();
+        }
+        long start = System.nanoTime();
+        _graphics.setCanvas(canvas);
+        if (list != null) {
+            // Pintamos lo grabado por la hebra de la lógica
+            list.replay(_graphics);
+        }
+        else {
+            // Llamamos al render de la lógica
+            _logic.render(alpha);
+            // Enviamos lo que haya quedado pendiente (lote abierto o clear retrasado)
+            _graphics.flush();
+        }
+        long shown = System.nanoTime();
+        _surfaceView.getHolder().unlockCanvasAndPost(canvas);
+        _metrics.recordRender(shown - start);
+        _metrics.recordPresent(System.nanoTime() - shown);
+        _graphics.endRepaint();
+    }
 }
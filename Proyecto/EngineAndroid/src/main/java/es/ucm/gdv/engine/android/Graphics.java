@@ -5,13 +5,16 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
 import java.io.IOException;
 import java.io.InputStream;
 
 import es.ucm.gdv.engine.AbstractGraphics;
-import es.ucm.gdv.engine.Rect;
+import es.ucm.gdv.engine.Transparency;
 
 /**
  * Extiende la clase “AbstractGraphics” del motor. Termina de implementar los métodos de Graphics
@@ -37,6 +40,33 @@ public class Graphics extends AbstractGraphics {
      */
     private SurfaceView _surfaceView;
 
+    /**
+     * Rects fuente y destino reutilizados en cada pintado
+     */
+    private android.graphics.Rect _source = new android.graphics.Rect();
+    private android.graphics.Rect _dest = new android.graphics.Rect();
+
+    /**
+     * Paints precalculados para cada uno de los 256 niveles de alpha
+     */
+    private Paint[] _paints = new Paint[256];
+
+    /**
+     * Paint para las imágenes opacas sin transparencia: copia los píxeles (SRC)
+     * en lugar de mezclarlos con el fondo
+     */
+    private Paint _opaquePaint = new Paint();
+
+    /**
+     * Paint de los rellenos de color (bandas laterales del clear)
+     */
+    private Paint _fillPaint = new Paint();
+
+    /**
+     * Paint usado en el último pintado del frame (null al empezar el frame)
+     */
+    private Paint _lastPaint = null;
+
     /**
      * Constructora
      *
@@ -46,6 +76,26 @@ public class Graphics extends AbstractGraphics {
     public Graphics (AssetManager assetManager, SurfaceView surfaceView) {
         _assetManager = assetManager;
         _surfaceView = surfaceView;
+        _opaquePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+        _fillPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+        for (int i = 0; i < _paints.length; i++) {
+            _paints[i] = new Paint();
+            _paints[i].setAlpha(i);
+        }
+
+        // La transformación lógico-físico solo se recalcula cuando cambia el tamaño de la superficie
+        _surfaceView.getHolder().addCallback(new SurfaceHolder.Callback() {
+            @Override
+            public void surfaceCreated(SurfaceHolder holder) {}
+
+            @Override
+            public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+                updateViewport(width, height);
+            }
+
+            @Override
+            public void surfaceDestroyed(SurfaceHolder holder) {}
+        });
     }
 
     /**
@@ -60,20 +110,29 @@ public class Graphics extends AbstractGraphics {
     }
 
     /**
-     * Constructora de imagenes, crea imágenes cargándolas a partir
-     * de una ruta dada
+     * Carga una imagen a partir de una ruta dada (la caché la gestiona AbstractGraphics)
      *
      * @param filename ruta donde se encuentra la imagen y su nombre
      */
     @Override
-    public Image newImage(String filename) {
+    protected Image loadImage(String filename) {
         // Para abrir el stream de carga de imágenes
         InputStream inputStream = null;
         // Intenta cargar la imagen con una ruta dada
         try {
             inputStream = _assetManager.open(filename);
             Bitmap aux = BitmapFactory.decodeStream(inputStream);
-            return new Image(aux);
+            if (aux == null) {
+                android.util.Log.e("MainActivity", "Formato de sprite no soportado");
+                return null;
+            }
+
+            // Clasificamos la imagen según su alpha. Si en realidad es opaca se lo
+            // indicamos al bitmap para que Android la pinte sin mezclar
+            Transparency transparency = scanTransparency(aux);
+            if (transparency == Transparency.OPAQUE && aux.hasAlpha())
+                aux.setHasAlpha(false);
+            return new Image(aux, transparency);
         }
         // En caso de fallo
         catch (IOException e) {
@@ -96,35 +155,99 @@ public class Graphics extends AbstractGraphics {
         } // try-catch-finally
     }
 
+    /**
+     * Recorre los píxeles de un bitmap para clasificarlo según su canal alpha
+     *
+     * @param bitmap bitmap a clasificar
+     *
+     * @return si es opaco, de máscara o semitransparente
+     */
+    private static Transparency scanTransparency(Bitmap bitmap) {
+        if (!bitmap.hasAlpha())
+            return Transparency.OPAQUE;
+
+        // Aunque el bitmap tenga canal alpha, puede que ningún píxel lo use
+        int w = bitmap.getWidth();
+        int[] row = new int[w];
+        Transparency result = Transparency.OPAQUE;
+        for (int y = 0; y < bitmap.getHeight() && result != Transparency.TRANSLUCENT; y++) {
+            bitmap.getPixels(row, 0, w, 0, y, w, 1);
+            result = Transparency.scan(row, 0, w, result);
+        }
+        return result;
+    }
+
+    /**
+     * Compone una página del atlas de texturas copiando los bitmaps dados
+     * en un bitmap ARGB_8888
+     *
+     * @param width ancho de la página
+     * @param height alto de la página
+     * @param images imágenes a copiar en la página (se liberan al terminar)
+     * @param xs coordenada x de cada imagen en la página
+     * @param ys coordenada y de cada imagen en la página
+     *
+     * @return la página del atlas
+     */
+    @Override
+    protected Image createAtlasPage(int width, int height, es.ucm.gdv.engine.Image[] images, int[] xs, int[] ys) {
+        Bitmap page = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(page);
+
+        // La página tiene huecos transparentes entre regiones, como poco es de máscara
+        Transparency transparency = Transparency.BITMASK;
+        for (int i = 0; i < images.length; i++) {
+            Bitmap bitmap = ((Image)images[i]).getBitMapImage();
+            transparency = transparency.combine(images[i].getTransparency());
+            canvas.drawBitmap(bitmap, xs[i], ys[i], null);
+            // El bitmap original ya no se usa, liberamos su memoria cuanto antes
+            bitmap.recycle();
+        }
+        return new Image(page, transparency);
+    }
+
     //Draw image lo implementa la clase abstracta
 
     /**
      * Implementacion que se encarga del pintado exclusivo de la plataforma (Android)
      *
+     * Reutiliza los rects y el paint entre pintados para no reservar memoria en cada frame
+     *
      * @param image imagen a pintar
-     * @param dest rectangulo donde se pintara
-     * @param source rectangulo fuente
+     * @param sx x del rectangulo fuente
+     * @param sy y del rectangulo fuente
+     * @param sw anchura del rectangulo fuente
+     * @param sh altura del rectangulo fuente
+     * @param dx x del rectangulo donde se pintara
+     * @param dy y del rectangulo donde se pintara
+     * @param dw anchura del rectangulo donde se pintara
+     * @param dh altura del rectangulo donde se pintara
      * @param alpha transparencia de la imagen
+     * @param transparency clasificación según el alpha de la imagen
      */
     @Override
-    public void drawImagePrivate(es.ucm.gdv.engine.Image image, Rect dest, Rect source, float alpha ){
+    protected void drawImagePrivate(es.ucm.gdv.engine.Image image, float sx, float sy, float sw, float sh,
+                                    float dx, float dy, float dw, float dh, float alpha,
+                                    Transparency transparency){
         // el draw image espera una Bitmap no una Image
         // pero podemos hacer downcasting porque sabemos que en este
         // trozo de codigo solo entraremos en Android
 
         // drawImage de Android
-        android.graphics.Rect aSource = new android.graphics.Rect((int)source._x, (int)source._y,
-                (int)source._x+(int)source._w, (int)source._y + (int)source._h);
-
-        android.graphics.Rect aDest = new android.graphics.Rect((int)dest._x, (int)dest._y,
-                (int)dest._x + (int)dest._w, (int)dest._y + (int)dest._h);
+        _source.set((int)sx, (int)sy, (int)sx + (int)sw, (int)sy + (int)sh);
+        _dest.set((int)dx, (int)dy, (int)dx + (int)dw, (int)dy + (int)dh);
 
-        // Variable paint que contiene el alpha
-        Paint paint = new Paint();
-        paint.setAlpha((int)alpha);
+        // Cuantizamos el alpha a 256 niveles y elegimos el paint precalculado. Una imagen
+        // opaca sin transparencia se copia tal cual, el resto se mezcla con el fondo
+        int level = alphaLevel(alpha);
+        Paint paint = (level == 255 && transparency == Transparency.OPAQUE) ? _opaquePaint : _paints[level];
+        if (paint != _lastPaint) {
+            _lastPaint = paint;
+            countStateChange();
+        }
 
         // Finalmente pintamos
-        _canvas.drawBitmap(((es.ucm.gdv.engine.android.Image)image).getBitMapImage(), aSource, aDest, paint);
+        _canvas.drawBitmap(((es.ucm.gdv.engine.android.Image)image).getBitMapImage(), _source, _dest, paint);
     }
 
     /**
@@ -133,10 +256,26 @@ public class Graphics extends AbstractGraphics {
      * @param color Color del que se pintara la pantalla
      */
     @Override
-    public void clear(int color){
+    protected void clearPrivate(int color){
         _canvas.drawColor(color); // ARGB hay que convertir
     }
 
+    /**
+     * Rellena un rect de la ventana con un color dado
+     *
+     * @param color color de relleno
+     * @param x coordenada x física
+     * @param y coordenada y física
+     * @param w ancho físico
+     * @param h alto físico
+     */
+    @Override
+    protected void fillRectPrivate(int color, int x, int y, int w, int h){
+        // El relleno sustituye lo que hubiera (modo SRC), sin mezclar
+        _fillPaint.setColor(color);
+        _canvas.drawRect(x, y, x + w, y + h, _fillPaint);
+    }
+
     /**
      * Devuelve el ancho de la ventana fisica
      *
@@ -161,5 +300,16 @@ public class Graphics extends AbstractGraphics {
      * Asigna el canvas
      * @param canvas Canvas de Android
      */
-    public void setCanvas(Canvas canvas) {_canvas = canvas;}
+    public void setCanvas(Canvas canvas) {
+        _canvas = canvas;
+
+        // Empieza un frame
+        _lastPaint = null;
+        beginFrame();
+
+        // En repintado parcial recortamos a la zona modificada
+        if (isRepaintClipped())
+            _canvas.clipRect(getRepaintX(), getRepaintY(),
+                    getRepaintX() + getRepaintW(), getRepaintY() + getRepaintH());
+    }
 }
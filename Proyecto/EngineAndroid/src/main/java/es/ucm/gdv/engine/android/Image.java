@@ -1,6 +1,8 @@
 package es.ucm.gdv.engine.android;
 import android.graphics.Bitmap;
 
+import es.ucm.gdv.engine.Transparency;
+
 /**
  * Implementa la interfaz “Image” del motor gracias a la funcionalidad
  * que ofrece la clase Bitmap de Android
@@ -15,12 +17,28 @@ public class Image implements es.ucm.gdv.engine.Image {
     private Bitmap _image;
 
     /**
-     * Constructora
+     * Clasificación según el canal alpha
+     */
+    private Transparency _transparency;
+
+    /**
+     * Constructora, la clasificación se toma de si el bitmap declara canal alpha
      *
      * @param image Imagen de Android
      */
     public Image(Bitmap image){
+        this(image, image.hasAlpha() ? Transparency.TRANSLUCENT : Transparency.OPAQUE);
+    }
+
+    /**
+     * Constructora
+     *
+     * @param image Imagen de Android
+     * @param transparency clasificación según el canal alpha (calculada al cargar)
+     */
+    public Image(Bitmap image, Transparency transparency){
         _image = image;
+        _transparency = transparency;
     }
 
     /**
@@ -43,6 +61,16 @@ public class Image implements es.ucm.gdv.engine.Image {
         return _image.getHeight();
     }
 
+    /**
+     * Devuelve la clasificación de la imagen según su canal alpha
+     *
+     * @return si la imagen es opaca, de máscara o semitransparente
+     */
+    @Override
+    public Transparency getTransparency() {
+        return _transparency;
+    }
+
     /**
      * Devuelve la imagen de Android
      *
@@ -45,19 +45,19 @@ public class Input extends AbstractInput implements View.OnTouchListener {
                 // Creamos evento
                 TouchEvent e1 = new TouchEvent(_graphics, TouchEventType.PRESSED, (int)x, (int)y, motionEvent.getDeviceId());
                 // Añadimos a la lista de eventos
-                _touchEvents.add(e1);
+                setTouchEvent(e1);
                 break;
             case MotionEvent.ACTION_UP:
                 // Creamos evento
                 TouchEvent e2 = new TouchEvent(_graphics, TouchEventType.RELEASED, (int)x, (int)y, motionEvent.getDeviceId());
                 // Añadimos a la lista de eventos
-                _touchEvents.add(e2);
+                setTouchEvent(e2);
                 break;
             case MotionEvent.ACTION_MOVE:
                 // Creamos evento
                 TouchEvent e3 = new TouchEvent(_graphics, TouchEventType.MOVED, (int)x, (int)y, motionEvent.getDeviceId());
                 // Añadimos a la lista de eventos
-                _touchEvents.add(e3);
+                setTouchEvent(e3);
                 break;
             default:
                 // Do nothing.
@@ -0,0 +1,61 @@
+package es.ucm.gdv.engine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import es.ucm.gdv.engine.Rect;
+import es.ucm.gdv.engine.Sprite;
+
+/**
+ * Pintado de un sprite con Sprite.draw sobre el backend de PC, en una BufferedImage
+ *
+ * Se mide con imágenes opacas y semitransparentes y con alpha completo o parcial,
+ * que en Java2D van por bucles de pintado distintos
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DrawBenchmark {
+
+    /**
+     * Si la imagen es opaca
+     */
+    @Param({"true", "false"})
+    public boolean opaque;
+
+    /**
+     * Alpha con el que se pinta (0-255)
+     */
+    @Param({"255", "128"})
+    public float alpha;
+
+    /**
+     * Lado del sprite en coordenadas lógicas
+     */
+    @Param({"32", "128"})
+    public int size;
+
+    private OffscreenGraphics _graphics;
+    private Sprite _sprite;
+    private Rect _dest;
+
+    @Setup
+    public void setup() {
+        _graphics = new OffscreenGraphics(1080, 1920);
+        _sprite = new Sprite(OffscreenGraphics.newSolidImage(size, size, opaque ? 0xff3d8eb9 : 0x803d8eb9));
+        _dest = new Rect(200, 300, size, size);
+    }
+
+    @Benchmark
+    public void draw() {
+        _sprite.draw(_graphics, _dest, alpha);
+    }
+}
@@ -0,0 +1,64 @@
+package es.ucm.gdv.engine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import es.ucm.gdv.engine.AbstractInput;
+import es.ucm.gdv.engine.Input;
+
+/**
+ * Cola de eventos de AbstractInput con contención: varias hebras encolan eventos
+ * (como las de la plataforma) mientras otra los recoge y vacía la lista (como el
+ * bucle del juego)
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InputQueueBenchmark {
+
+    private AbstractInput _input;
+    private Input.TouchEvent _event;
+
+    @Setup
+    public void setup() {
+        OffscreenGraphics graphics = new OffscreenGraphics(1080, 1920);
+        _input = new AbstractInput(graphics) { };
+        // El evento se crea una vez, se mide solo la cola
+        _event = new Input.TouchEvent(graphics, Input.TouchEventType.PRESSED, 540, 960, 1);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public void enqueue() {
+        _input.setTouchEvent(_event);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public int drain() {
+        int n = _input.getTouchEvents().size();
+        _input.clearTouchEvents();
+        return n;
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    @GroupThreads(1)
+    public int enqueueAndDrain() {
+        _input.setTouchEvent(_event);
+        int n = _input.getTouchEvents().size();
+        _input.clearTouchEvents();
+        return n;
+    }
+}
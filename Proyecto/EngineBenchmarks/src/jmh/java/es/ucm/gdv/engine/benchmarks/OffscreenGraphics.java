@@ -0,0 +1,62 @@
+package es.ucm.gdv.engine.benchmarks;
+
+import java.awt.image.BufferedImage;
+
+import es.ucm.gdv.engine.desktop.Graphics;
+import es.ucm.gdv.engine.desktop.Image;
+
+/**
+ * Controlador de gráficos de PC que pinta en una BufferedImage en lugar de en una
+ * ventana, para medir el pintado sin depender de la pantalla
+ */
+public class OffscreenGraphics extends Graphics {
+
+    /**
+     * Imagen destino del pintado
+     */
+    private BufferedImage _target;
+
+    /**
+     * Constructora
+     *
+     * @param width ancho de la imagen destino (la "ventana")
+     * @param height alto de la imagen destino
+     */
+    public OffscreenGraphics(int width, int height) {
+        super(null);
+        _target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        updateViewport(width, height);
+        setGraphics(_target.createGraphics());
+    }
+
+    /**
+     * Crea una imagen de prueba rellena de un color, sin leer ningún archivo
+     *
+     * @param width ancho
+     * @param height alto
+     * @param argb color con alpha (0xAARRGGBB)
+     *
+     * @return imagen del motor
+     */
+    public static Image newSolidImage(int width, int height, int argb) {
+        boolean opaque = (argb >>> 24) == 0xff;
+        BufferedImage image = new BufferedImage(width, height,
+                opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+        java.awt.Graphics2D g = image.createGraphics();
+        g.setComposite(java.awt.AlphaComposite.Src);
+        g.setColor(new java.awt.Color(argb, true));
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        return new Image(image);
+    }
+
+    @Override
+    public int getWindowWidth() {
+        return _target.getWidth();
+    }
+
+    @Override
+    public int getWindowHeight() {
+        return _target.getHeight();
+    }
+}
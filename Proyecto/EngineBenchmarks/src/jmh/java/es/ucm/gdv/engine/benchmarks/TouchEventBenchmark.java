@@ -0,0 +1,37 @@
+package es.ucm.gdv.engine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import es.ucm.gdv.engine.Input;
+
+/**
+ * Creación de eventos de input, que convierten la posición a coordenadas lógicas
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TouchEventBenchmark {
+
+    private OffscreenGraphics _graphics;
+    private int _x = 0;
+
+    @Setup
+    public void setup() {
+        _graphics = new OffscreenGraphics(1080, 1920);
+    }
+
+    @Benchmark
+    public Input.TouchEvent create() {
+        // Variamos la posición para que no se pueda precalcular
+        _x = (_x + 7) & 1023;
+        return new Input.TouchEvent(_graphics, Input.TouchEventType.PRESSED, _x, 960, 1);
+    }
+}
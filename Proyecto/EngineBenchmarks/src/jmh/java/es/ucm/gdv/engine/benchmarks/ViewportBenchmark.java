@@ -0,0 +1,44 @@
+package es.ucm.gdv.engine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import es.ucm.gdv.engine.Rect;
+
+/**
+ * Transformaciones entre coordenadas lógicas y físicas de AbstractGraphics
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ViewportBenchmark {
+
+    private OffscreenGraphics _graphics;
+    private Rect _logic;
+    private Rect _physic;
+
+    @Setup
+    public void setup() {
+        // Ventana más ancha que el canvas, para que haya bandas y offset
+        _graphics = new OffscreenGraphics(1280, 1920);
+        _logic = new Rect(100, 200, 128, 128);
+        _physic = new Rect(640, 960, 0, 0);
+    }
+
+    @Benchmark
+    public Rect logicToPhysic() {
+        return _graphics.logicToPhysic(_logic);
+    }
+
+    @Benchmark
+    public Rect physicToLogic() {
+        return _graphics.physicToLogic(_physic);
+    }
+}
@@ -1,6 +1,12 @@
 package es.ucm.gdv.engine.desktop;
 
+import es.ucm.gdv.engine.DrawList;
+import es.ucm.gdv.engine.FrameLimiter;
+import es.ucm.gdv.engine.FrameMetrics;
+import es.ucm.gdv.engine.GameLoop;
 import es.ucm.gdv.engine.Logic;
+import es.ucm.gdv.engine.Rng;
+import es.ucm.gdv.engine.ThreadedRenderer;
 import javax.swing.JFrame;
 
 /**
@@ -8,7 +14,7 @@ import javax.swing.JFrame;
  * del bucle principal, apoyándose en la funcionalidad de la hebra de Swing proporcionada por JFrame.
  */
 
-public class Game implements es.ucm.gdv.engine.Game {
+public class Game implements es.ucm.gdv.engine.Game, GameLoop.Listener {
 
     /**
      * Encapsula las funcionalidades del JFrame de Java
@@ -31,12 +37,23 @@ public class Game implements es.ucm.gdv.engine.Game {
      */
     private Input _input;
 
+    /**
+     * Generador de números aleatorios del juego
+     */
+    private Rng _random = new Rng();
+
     /**
      * Representa el mecanismo con el cual se organiza
      * la memoria en la ventana
      */
     private java.awt.image.BufferStrategy _strategy;
 
+    /**
+     * Indica si el buffer trasero conserva lo pintado en frames anteriores,
+     * necesario para el repintado parcial
+     */
+    private boolean _preservesBackBuffer = false;
+
     /**
      * Anchura de la ventana (en pixeles)
      */
@@ -47,6 +64,53 @@ public class Game implements es.ucm.gdv.engine.Game {
      */
     private int _windowHeight;
 
+    /**
+     * Si es true se muestra el informe de rendimiento una vez por segundo
+     */
+    private boolean _statsReport = false;
+
+    /**
+     * Bucle de paso fijo que llama a update y render
+     */
+    private GameLoop _loop = new GameLoop(this);
+
+    /**
+     * Limitador de frames: sin él el bucle ocupa un núcleo entero aunque no haya
+     * nada que pintar. Por defecto a 60 fps
+     */
+    private FrameLimiter _limiter = new FrameLimiter(60);
+
+    /**
+     * Frames pintados e instante del último informe de rendimiento
+     */
+    private int _reportFrames = 0;
+    private long _reportTime = 0;
+
+    /**
+     * Si es true la lógica y el pintado van en hebras separadas
+     */
+    private boolean _threadedRendering = false;
+
+    /**
+     * Hebra de pintado en el modo de dos hebras (null si no se usa)
+     */
+    private ThreadedRenderer _renderer = null;
+
+    /**
+     * Frames presentados por la hebra de pintado en el último informe
+     */
+    private long _reportPresented = 0;
+
+    /**
+     * Métricas de duración de los frames, siempre activas
+     */
+    private FrameMetrics _metrics = new FrameMetrics();
+
+    /**
+     * Archivo al que se vuelcan las métricas al salir (null para no volcarlas)
+     */
+    private String _metricsFile = null;
+
     /**
      * Constructora
      *
@@ -56,8 +120,18 @@ public class Game implements es.ucm.gdv.engine.Game {
     public Game(int windowWidth, int windowHeight){
         _windowWidth = windowWidth;
         _windowHeight = windowHeight;
+        _loop.setMetrics(_metrics);
     }
 
+    /**
+     * Activa o desactiva el informe por consola (una vez por segundo) de los FPS,
+     * de los pintados, cambios de estado y pintados descartados del último frame
+     * y del jitter del limitador de frames
+     *
+     * @param enabled true para mostrar el informe
+     */
+    public void setStatsReport(boolean enabled) { _statsReport = enabled; }
+
     /**
      * Añadimos la lógica sobre la cual se trabajará en el bucle principal
      *
@@ -84,6 +158,52 @@ public class Game implements es.ucm.gdv.engine.Game {
     @Override
     public Input getInput() { return  _input; }
 
+    /**
+     * Devuelve el generador de números aleatorios del juego
+     *
+     * @return generador
+     */
+    @Override
+    public Rng getRandom() { return _random; }
+
+    /**
+     * Devuelve el bucle de paso fijo, para ajustar su paso o consultar sus contadores
+     *
+     * @return bucle principal
+     */
+    public GameLoop getLoop() { return _loop; }
+
+    /**
+     * Cambia los frames por segundo a los que se limita el bucle
+     *
+     * @param fps frames por segundo, 0 para no limitar
+     */
+    public void setTargetFps(int fps) { _limiter.setTargetFps(fps); }
+
+    /**
+     * Activa o desactiva el modo de dos hebras: la lógica se actualiza y graba sus
+     * pintados en la hebra del bucle y otra hebra los presenta, así un show lento
+     * no retrasa la simulación. Hay que llamarlo antes de run
+     *
+     * @param enabled true para pintar en una hebra propia
+     */
+    public void setThreadedRendering(boolean enabled) { _threadedRendering = enabled; }
+
+    /**
+     * Devuelve las métricas de duración de los frames
+     *
+     * @return métricas
+     */
+    public FrameMetrics getMetrics() { return _metrics; }
+
+    /**
+     * Indica un archivo al que volcar las métricas al salir de la aplicación,
+     * en JSON si acaba en ".json" y si no en CSV. Hay que llamarlo antes de run
+     *
+     * @param path ruta del archivo, o null para no volcarlas
+     */
+    public void setMetricsFile(String path) { _metricsFile = path; }
+
     /**
      * Inicializa lo necesario para correr el juego
      *
@@ -105,6 +225,7 @@ public class Game implements es.ucm.gdv.engine.Game {
 
             // Creamos el gestor de gráficos
             _graphics = new Graphics(_window);
+            _graphics.setMetrics(_metrics);
 
             // Creamos el gestor de entradas de input y
             // lo añadimos como listener
@@ -154,6 +275,14 @@ public class Game implements es.ucm.gdv.engine.Game {
 
         // Obtenemos el Buffer Strategy que se supone acaba de crearse.
         _strategy = _window.getBufferStrategy();
+
+        // Con copia (blit) o volteo que conserva el contenido, el buffer trasero tiene
+        // lo pintado uno o dos frames antes y se puede repintar solo lo modificado
+        java.awt.BufferCapabilities caps = _strategy.getCapabilities();
+        java.awt.BufferCapabilities.FlipContents flip = caps.getFlipContents();
+        _preservesBackBuffer = !caps.isPageFlipping()
+                || flip == java.awt.BufferCapabilities.FlipContents.COPIED
+                || flip == java.awt.BufferCapabilities.FlipContents.PRIOR;
     }
 
     /**
@@ -163,46 +292,135 @@ public class Game implements es.ucm.gdv.engine.Game {
     public void run() {
         bufferStrategy();
 
-        long lastFrameTime = System.nanoTime();
-        long informePrevio = lastFrameTime; // Informes de FPS
-        int frames = 0;
+        _reportTime = System.nanoTime();
+        _loop.reset();
+        _limiter.reset();
+
+        // La ventana sale con System.exit, volcamos las métricas al cerrar la máquina virtual
+        if (_metricsFile != null) {
+            final String path = _metricsFile;
+            Runtime.getRuntime().addShutdownHook(new Thread("Metrics") {
+                @Override
+                public void run() {
+                    _metrics.dump(path);
+                }
+            });
+        }
+
+        // En el modo de dos hebras la de pintado presenta lo que graba esta
+        if (_threadedRendering) {
+            _renderer = new ThreadedRenderer(_graphics, new ThreadedRenderer.Presenter() {
+                @Override
+                public void present(DrawList list) {
+                    Game.this.present(list, 0);
+                }
+            });
+            _renderer.start();
+        }
 
-        boolean running = true;
-        while(running) {
+        while(true) {
+            _loop.frame();
+            // Esperamos (casi siempre dormidos) hasta que toque el siguiente frame
+            _limiter.sync();
+        }
+    }
 
-            // Cálculo de deltatime
-            long currentTime = System.nanoTime();
-            long nanoElapsedTime = currentTime - lastFrameTime;
-            lastFrameTime = currentTime;
-            double elapsedTime = (double) nanoElapsedTime / 1.0E9; //segundos
+    /**
+     * Paso de simulación del bucle, llama al update de la lógica
+     *
+     * @param deltaTime duración del paso en segundos
+     */
+    @Override
+    public void update(double deltaTime) {
+        _logic.update(deltaTime);
+    }
 
-            // Llamamos al update de la lógica con el deltatime
-            _logic.update(elapsedTime);
+    /**
+     * Pintado del bucle: pinta el frame con el BufferStrategy, o lo graba para
+     * la hebra de pintado en el modo de dos hebras
+     *
+     * @param alpha fracción de paso desde el último update
+     */
+    @Override
+    public void render(double alpha) {
+        // Informe de FPS, pintados, cambios de estado y descartes del último frame
+        long currentTime = System.nanoTime();
+        if (_statsReport && currentTime - _reportTime > 1000000000l) {
+            long fps = _reportFrames * 1000000000l / (currentTime - _reportTime);
+            String report = fps + " fps, " + _graphics.getDrawCalls() + " pintados, "
+                    + _graphics.getStateChanges() + " cambios de estado, "
+                    + _graphics.getCulledDraws() + " fuera de pantalla, "
+                    + _graphics.getOccludedDraws() + " tapados, "
+                    + _loop.getDroppedSteps() + " pasos descartados, jitter "
+                    + _limiter.getJitterAverage() + " us (max " + _limiter.getJitterMax() + " us, "
+                    + _limiter.getLateFrames() + " frames tarde)";
+            if (_renderer != null) {
+                long presented = _renderer.getPresented();
+                report += ", " + (presented - _reportPresented) + " frames presentados";
+                _reportPresented = presented;
+            }
+            System.out.println(report);
+            _limiter.resetJitter();
+            _reportFrames = 0;
+            _reportTime = currentTime;
+        }
+        ++_reportFrames;
 
-            //Informe de FPS
-            //if (currentTime - informePrevio > 1000000000l) {
-            //    long fps = frames * 1000000000l / (currentTime - informePrevio);
-            //    System.out.println("" + fps + " fps");
-            //    frames = 0;
-            //    informePrevio = currentTime;
-            //}
-            //++frames;
+        if (_renderer != null)
+            _renderer.record(_logic, alpha);
+        else
+            present(null, alpha);
+    }
 
-            // Pintamos el frame con el BufferStrategy
+    /**
+     * Pinta un frame con el BufferStrategy y lo muestra
+     *
+     * @param list lista grabada a pintar, o null para llamar directamente al render de la lógica
+     * @param alpha fracción de paso desde el último update (sin lista)
+     */
+    private void present(DrawList list, double alpha) {
+        // En repintado parcial nos saltamos los frames en los que no ha cambiado nada
+        boolean repaint = list != null ? _graphics.beginRepaint(list.getDirtyRegion()) : _graphics.beginRepaint();
+        if (repaint) {
+            if (!_preservesBackBuffer)
+                _graphics.repaintAll();
+
+            boolean lost;
             do {
+                long start = System.nanoTime();
+                boolean restored;
                 do {
                     java.awt.Graphics graphics = _strategy.getDrawGraphics();
                     _graphics.setGraphics(graphics);
                     try {
-                        // Llamamos al render de la lógica
-                        _logic.render();
+                        if (list != null) {
+                            // Pintamos lo grabado por la hebra de la lógica
+                            list.replay(_graphics);
+                        }
+                        else {
+                            // Llamamos al render de la lógica
+                            _logic.render(alpha);
+                            // Enviamos lo que haya quedado pendiente (lote abierto o clear retrasado)
+                            _graphics.flush();
+                        }
                     }
                     finally {
                         graphics.dispose();
                     }
-                } while(_strategy.contentsRestored());
+                    // Si se ha restaurado el buffer su contenido no vale, se repinta entero
+                    restored = _strategy.contentsRestored();
+                    if (restored)
+                        _graphics.repaintAll();
+                } while(restored);
+                long shown = System.nanoTime();
                 _strategy.show();
-            } while(_strategy.contentsLost());
+                _metrics.recordRender(shown - start);
+                _metrics.recordPresent(System.nanoTime() - shown);
+                lost = _strategy.contentsLost();
+                if (lost)
+                    _graphics.repaintAll();
+            } while(lost);
         }
+        _graphics.endRepaint();
     }
 }
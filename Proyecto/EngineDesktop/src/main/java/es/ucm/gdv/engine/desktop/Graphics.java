@@ -2,9 +2,11 @@ package es.ucm.gdv.engine.desktop;
 
 import javax.swing.JFrame;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferedImage;
 
 import es.ucm.gdv.engine.AbstractGraphics;
-import es.ucm.gdv.engine.Rect;
 
 /**
  * Extiende la clase “AbstractGraphics” del motor. Termina de implementar los métodos de Graphics
@@ -27,6 +29,26 @@ public class Graphics extends AbstractGraphics {
      */
     private java.awt.Graphics _graphics;
 
+    /**
+     * Si es true las imágenes se pintan desde su copia en VolatileImage
+     */
+    private boolean _volatileImages = false;
+
+    /**
+     * Composites SRC_OVER precalculados para cada uno de los 256 niveles de alpha
+     */
+    private static final AlphaComposite[] COMPOSITES = new AlphaComposite[256];
+    static {
+        for (int i = 0; i < 255; i++)
+            COMPOSITES[i] = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, i / 255.0f);
+        COMPOSITES[255] = AlphaComposite.SrcOver;
+    }
+
+    /**
+     * Composite puesto actualmente en el contexto de pintado (null si se desconoce)
+     */
+    private Composite _composite = null;
+
     /**
      * Constructora
      *
@@ -34,6 +56,17 @@ public class Graphics extends AbstractGraphics {
      */
     public Graphics(JFrame window){
         _window = window;
+
+        // La transformación lógico-físico solo se recalcula cuando cambia el tamaño de la ventana
+        if (_window != null) {
+            updateViewport();
+            _window.addComponentListener(new ComponentAdapter() {
+                @Override
+                public void componentResized(ComponentEvent e) {
+                    updateViewport(e.getComponent().getWidth(), e.getComponent().getHeight());
+                }
+            });
+        }
     }
 
     /**
@@ -43,6 +76,143 @@ public class Graphics extends AbstractGraphics {
      */
     public void setGraphics(java.awt.Graphics g) {
         _graphics = g;
+
+        // Contexto nuevo: no sabemos su composite y empieza un frame
+        _composite = null;
+        beginFrame();
+
+        // En repintado parcial recortamos a la zona modificada
+        if (isRepaintClipped())
+            _graphics.setClip(getRepaintX(), getRepaintY(), getRepaintW(), getRepaintH());
+    }
+
+    /**
+     * Activa o desactiva el pintado desde copias en VolatileImage
+     *
+     * Java2D ya acelera por su cuenta las imágenes compatibles que no se modifican,
+     * por lo que es opcional
+     *
+     * @param enabled true para pintar desde VolatileImage
+     */
+    public void setVolatileImages(boolean enabled) {
+        _volatileImages = enabled;
+    }
+
+    /**
+     * Indica si se pinta desde copias en VolatileImage
+     *
+     * @return true si está activado
+     */
+    public boolean getVolatileImages() {
+        return _volatileImages;
+    }
+
+    /**
+     * Devuelve la configuración gráfica de la pantalla en la que está la ventana
+     *
+     * @return configuración gráfica, o null si no hay pantalla
+     */
+    public GraphicsConfiguration getGraphicsConfiguration() {
+        if (_window != null && _window.getGraphicsConfiguration() != null)
+            return _window.getGraphicsConfiguration();
+        if (GraphicsEnvironment.isHeadless())
+            return null;
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+    }
+
+    /**
+     * Recorre los píxeles de una imagen para clasificarla según su canal alpha
+     *
+     * @param image imagen a clasificar
+     *
+     * @return si es opaca, de máscara o semitransparente
+     */
+    public static es.ucm.gdv.engine.Transparency scanTransparency(BufferedImage image) {
+        if (image.getColorModel().getTransparency() == Transparency.OPAQUE)
+            return es.ucm.gdv.engine.Transparency.OPAQUE;
+
+        // Aunque el formato tenga alpha, puede que ningún píxel lo use
+        int w = image.getWidth();
+        int[] row = new int[w];
+        es.ucm.gdv.engine.Transparency result = es.ucm.gdv.engine.Transparency.OPAQUE;
+        for (int y = 0; y < image.getHeight() && result != es.ucm.gdv.engine.Transparency.TRANSLUCENT; y++) {
+            image.getRGB(0, y, w, 1, row, 0, w);
+            result = es.ucm.gdv.engine.Transparency.scan(row, 0, w, result);
+        }
+        return result;
+    }
+
+    /**
+     * Copia una imagen a un formato compatible con la pantalla, clasificándola antes
+     * según su canal alpha
+     *
+     * @param src imagen tal y como la devuelve ImageIO
+     * @param gc configuración gráfica de destino (puede ser null)
+     *
+     * @return la imagen convertida, o la misma si ya tenía el formato adecuado
+     */
+    public static BufferedImage toCompatibleImage(BufferedImage src, GraphicsConfiguration gc) {
+        return toCompatibleImage(src, gc, scanTransparency(src));
+    }
+
+    /**
+     * Copia una imagen a un formato compatible con la pantalla, para que Java2D
+     * la pinte por sus bucles rápidos (y pueda acelerarla) en vez de por los genéricos
+     *
+     * Las imágenes opacas pasan al formato de la pantalla, las de máscara al formato de
+     * máscara de la pantalla y las semitransparentes a ARGB premultiplicado. Sin pantalla
+     * se usa RGB para las opacas y ARGB premultiplicado para el resto, salvo las de
+     * máscara indexadas: su paleta con color transparente ya tiene un bucle rápido, que
+     * con alpha 1 es más rápido que pintar ARGB premultiplicado, y se dejan como están
+     *
+     * @param src imagen tal y como la devuelve ImageIO
+     * @param gc configuración gráfica de destino (puede ser null)
+     * @param transparency clasificación de la imagen según su canal alpha
+     *
+     * @return la imagen convertida, o la misma si ya tenía el formato adecuado
+     */
+    public static BufferedImage toCompatibleImage(BufferedImage src, GraphicsConfiguration gc,
+                                                  es.ucm.gdv.engine.Transparency transparency) {
+        int w = src.getWidth(), h = src.getHeight();
+
+        BufferedImage dst = null;
+        if (transparency == es.ucm.gdv.engine.Transparency.OPAQUE) {
+            if (gc != null)
+                dst = gc.createCompatibleImage(w, h, Transparency.OPAQUE);
+            else if (src.getType() != BufferedImage.TYPE_INT_RGB)
+                dst = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            if (dst != null && dst.getColorModel().equals(src.getColorModel())
+                    && dst.getType() == src.getType())
+                return src;
+        }
+        else if (transparency == es.ucm.gdv.engine.Transparency.BITMASK && gc != null)
+            dst = gc.createCompatibleImage(w, h, Transparency.BITMASK);
+        else if (transparency == es.ucm.gdv.engine.Transparency.BITMASK
+                && (src.getType() == BufferedImage.TYPE_BYTE_INDEXED
+                    || src.getType() == BufferedImage.TYPE_BYTE_BINARY))
+            return src;
+        else {
+            if (gc != null)
+                dst = gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+            // Si la pantalla no ofrece premultiplicado lo forzamos
+            if (dst == null || dst.getType() != BufferedImage.TYPE_INT_ARGB_PRE) {
+                if (src.getType() == BufferedImage.TYPE_INT_ARGB_PRE)
+                    return src;
+                dst = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+            }
+        }
+        if (dst == null)
+            return src;
+
+        Graphics2D g = dst.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(src, 0, 0, null);
+        }
+        finally {
+            g.dispose();
+        }
+        return dst;
     }
 
     /**
@@ -57,17 +227,21 @@ public class Graphics extends AbstractGraphics {
     }
 
     /**
-     * Constructora de imagenes, crea imágenes cargándolas a partir
-     * de una ruta dada
+     * Carga una imagen a partir de una ruta dada (la caché la gestiona AbstractGraphics)
      *
      * @param filename ruta donde se encuentra la imagen y su nombre
      */
     @Override
-    public Image newImage(String filename){
+    protected Image loadImage(String filename){
         try {
             // Intentamos cargar la imagen a partir de la ruta recibida
-            java.awt.Image aux = javax.imageio.ImageIO.read(new java.io.File(filename));
-            return new Image(aux);
+            BufferedImage aux = javax.imageio.ImageIO.read(new java.io.File(filename));
+            if (aux == null)
+                throw new java.io.IOException("Formato de imagen no soportado: " + filename);
+            // La clasificamos según su alpha y la pasamos a un formato compatible
+            // con la pantalla para que se pinte rápido
+            es.ucm.gdv.engine.Transparency transparency = scanTransparency(aux);
+            return new Image(toCompatibleImage(aux, getGraphicsConfiguration(), transparency), transparency);
         }
         catch (Exception e) {
             // En caso de error avisamos al usuario
@@ -76,34 +250,91 @@ public class Graphics extends AbstractGraphics {
         }
     }
 
+    /**
+     * Compone una página del atlas de texturas copiando las imágenes dadas
+     * en una BufferedImage ARGB premultiplicada
+     *
+     * @param width ancho de la página
+     * @param height alto de la página
+     * @param images imágenes a copiar en la página
+     * @param xs coordenada x de cada imagen en la página
+     * @param ys coordenada y de cada imagen en la página
+     *
+     * @return la página del atlas
+     */
+    @Override
+    protected Image createAtlasPage(int width, int height, es.ucm.gdv.engine.Image[] images, int[] xs, int[] ys) {
+        BufferedImage page = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+
+        // La página tiene huecos transparentes entre regiones, como poco es de máscara
+        es.ucm.gdv.engine.Transparency transparency = es.ucm.gdv.engine.Transparency.BITMASK;
+        Graphics2D g = page.createGraphics();
+        try {
+            // Copiamos cada imagen tal cual, sin mezclar con el fondo transparente
+            g.setComposite(AlphaComposite.Src);
+            for (int i = 0; i < images.length; i++) {
+                g.drawImage(((Image)images[i]).getAWTImage(), xs[i], ys[i], null);
+                transparency = transparency.combine(images[i].getTransparency());
+            }
+        }
+        finally {
+            g.dispose();
+        }
+        return new Image(page, transparency);
+    }
+
     /**
      * Implementacion que se encarga del pintado exclusivo de cada plataforma (PC)
      *
      * @param image imagen a pintar
-     * @param dest rectangulo donde se pintara
-     * @param source rectangulo fuente
+     * @param sx x del rectangulo fuente
+     * @param sy y del rectangulo fuente
+     * @param sw anchura del rectangulo fuente
+     * @param sh altura del rectangulo fuente
+     * @param dx x del rectangulo donde se pintara
+     * @param dy y del rectangulo donde se pintara
+     * @param dw anchura del rectangulo donde se pintara
+     * @param dh altura del rectangulo donde se pintara
      * @param alpha transparencia de la imagen
+     * @param transparency clasificación según el alpha de la imagen
      */
     @Override
-    public void drawImagePrivate(es.ucm.gdv.engine.Image image, Rect dest, Rect source, float alpha ){
+    protected void drawImagePrivate(es.ucm.gdv.engine.Image image, float sx, float sy, float sw, float sh,
+                                    float dx, float dy, float dw, float dh, float alpha,
+                                    es.ucm.gdv.engine.Transparency transparency){
         // el draw image espera una java.awt.Image no una Image
         // pero podemos hacer downcasting porque sabemos que en este
         // trozo de codigo solo entraremos en el PC
 
-        // El alpha toma valores entre 0 y 1, por lo que hay que hacer conversion, comprobamos que no se salga
-        float dkAlpha = alpha/255.0f;
-        if(dkAlpha < 0) dkAlpha = 0;
-        else if (dkAlpha > 1) dkAlpha = 1;
+        // Cuantizamos el alpha a 256 niveles y elegimos el composite precalculado.
+        // Una imagen opaca pintada sin transparencia se copia tal cual (Src), sin mezclar
+        // con el fondo, y una de máscara con SrcOver sin alpha extra usa el pintado por máscara
+        int level = alphaLevel(alpha);
+        Composite composite = (level == 255 && transparency == es.ucm.gdv.engine.Transparency.OPAQUE)
+                ? AlphaComposite.Src : COMPOSITES[level];
+        setComposite(composite);
 
-        // Seteamos alpha composite en graphics2D para procesar el alpha
+        // drawImage de Java, desde la copia en memoria de vídeo si está activada
         Graphics2D aux = (Graphics2D)_graphics;
-        AlphaComposite ac = AlphaComposite.getInstance(AlphaComposite.SRC_OVER,dkAlpha);
-        aux.setComposite(ac);
+        es.ucm.gdv.engine.desktop.Image dkImage = (es.ucm.gdv.engine.desktop.Image)image;
+        java.awt.Image awtImage = _volatileImages ? dkImage.getVolatileImage(aux.getDeviceConfiguration())
+                : dkImage.getAWTImage();
+        _graphics.drawImage(awtImage,
+                (int)dx, (int)dy, (int)(dx + dw), (int)(dy + dh), (int)sx,
+                (int)sy, (int)(sx + sw), (int)(sy + sh), null);
+    }
 
-        // drawImage de Java
-        _graphics.drawImage(((es.ucm.gdv.engine.desktop.Image)image).getAWTImage(),
-                (int)dest._x, (int)dest._y, (int)dest.getRight() , (int)dest.getBottom(), (int)source._x,
-                (int)source._y, (int)source.getRight(), (int)source.getBottom(), null);
+    /**
+     * Pone el composite dado en el contexto de pintado si no es el que ya tiene
+     *
+     * @param composite composite a poner
+     */
+    private void setComposite(Composite composite) {
+        if (composite == _composite)
+            return;
+        ((Graphics2D)_graphics).setComposite(composite);
+        _composite = composite;
+        countStateChange();
     }
 
     /**
@@ -122,9 +353,25 @@ public class Graphics extends AbstractGraphics {
      * @param color Color del que se pintara la pantalla
      */
     @Override
-    public void clear(int color){
+    protected void clearPrivate(int color){
+        fillRectPrivate(color, 0, 0, getWindowWidth(), getWindowHeight());
+    }
+
+    /**
+     * Rellena un rect de la ventana con un color dado
+     *
+     * @param color color de relleno
+     * @param x coordenada x física
+     * @param y coordenada y física
+     * @param w ancho físico
+     * @param h alto físico
+     */
+    @Override
+    protected void fillRectPrivate(int color, int x, int y, int w, int h){
+        // El relleno sustituye lo que hubiera, sin mezclar con el alpha del último pintado
+        setComposite(AlphaComposite.Src);
         setColor(color);
-        _graphics.fillRect(0, 0, getWindowWidth(), getWindowHeight());
+        _graphics.fillRect(x, y, w, h);
     }
 
     /**
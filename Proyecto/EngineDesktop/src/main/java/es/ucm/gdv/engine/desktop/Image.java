@@ -1,9 +1,19 @@
 package es.ucm.gdv.engine.desktop;
 
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.image.VolatileImage;
+
+import es.ucm.gdv.engine.Transparency;
+
 /**
  * Implementa la interfaz “Image” del motor gracias a la funcionalidad
  * que ofrece la clase Image (AWT) de Java
  *
+ * Opcionalmente guarda una copia en una VolatileImage (memoria de vídeo) que se
+ * revalida antes de cada uso y se vuelve a rellenar si su contenido se pierde
+ *
  * Las dimensiones son en píxeles
  */
 public class Image implements es.ucm.gdv.engine.Image {
@@ -14,12 +24,33 @@ public class Image implements es.ucm.gdv.engine.Image {
     private java.awt.Image _image;
 
     /**
-     * Constructora
+     * Copia acelerada de la imagen, se crea bajo demanda
+     */
+    private VolatileImage _volatile;
+
+    /**
+     * Clasificación según el canal alpha
+     */
+    private Transparency _transparency;
+
+    /**
+     * Constructora, la clasificación se toma de la que declara la imagen de Java
      *
      * @param image Imagen de PC
      */
     public Image(java.awt.Image image){
+        this(image, fromAWT(image));
+    }
+
+    /**
+     * Constructora
+     *
+     * @param image Imagen de PC
+     * @param transparency clasificación según el canal alpha (calculada al cargar)
+     */
+    public Image(java.awt.Image image, Transparency transparency){
         _image = image;
+        _transparency = transparency;
     }
 
     /**
@@ -50,4 +81,102 @@ public class Image implements es.ucm.gdv.engine.Image {
     public java.awt.Image getAWTImage() {
         return _image;
     }
+
+    /**
+     * Devuelve la copia en VolatileImage válida para la configuración dada,
+     * creándola o restaurando su contenido si hace falta
+     *
+     * Si no se puede crear (por ejemplo sin pantalla) devuelve la imagen original
+     *
+     * @param gc configuración gráfica del destino
+     *
+     * @return imagen lista para pintar
+     */
+    public java.awt.Image getVolatileImage(GraphicsConfiguration gc) {
+        if (gc == null)
+            return _image;
+
+        int status = _volatile == null ? VolatileImage.IMAGE_INCOMPATIBLE : _volatile.validate(gc);
+        if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+            // La configuración ha cambiado (o es la primera vez), creamos una nueva
+            if (_volatile != null)
+                _volatile.flush();
+            try {
+                _volatile = gc.createCompatibleVolatileImage(getWidth(), getHeight(), toAWT(_transparency));
+            }
+            catch (Exception e) {
+                System.err.println(e);
+                _volatile = null;
+            }
+            if (_volatile == null)
+                return _image;
+            status = VolatileImage.IMAGE_RESTORED;
+        }
+        if (status == VolatileImage.IMAGE_RESTORED || _volatile.contentsLost())
+            restore();
+        return _volatile;
+    }
+
+    /**
+     * Libera la copia en VolatileImage, si la hay
+     */
+    public void flushVolatile() {
+        if (_volatile != null) {
+            _volatile.flush();
+            _volatile = null;
+        }
+    }
+
+    /**
+     * Devuelve la clasificación de la imagen según su canal alpha
+     *
+     * @return si la imagen es opaca, de máscara o semitransparente
+     */
+    @Override
+    public Transparency getTransparency() {
+        return _transparency;
+    }
+
+    /**
+     * Traduce una clasificación del motor a la constante de java.awt.Transparency
+     *
+     * @param transparency clasificación del motor
+     *
+     * @return constante de AWT equivalente
+     */
+    public static int toAWT(Transparency transparency) {
+        switch (transparency) {
+            case OPAQUE: return java.awt.Transparency.OPAQUE;
+            case BITMASK: return java.awt.Transparency.BITMASK;
+            default: return java.awt.Transparency.TRANSLUCENT;
+        }
+    }
+
+    /**
+     * Obtiene la clasificación que declara una imagen de Java
+     */
+    private static Transparency fromAWT(java.awt.Image image) {
+        if (!(image instanceof java.awt.Transparency))
+            return Transparency.TRANSLUCENT;
+        switch (((java.awt.Transparency)image).getTransparency()) {
+            case java.awt.Transparency.OPAQUE: return Transparency.OPAQUE;
+            case java.awt.Transparency.BITMASK: return Transparency.BITMASK;
+            default: return Transparency.TRANSLUCENT;
+        }
+    }
+
+    /**
+     * Vuelve a copiar la imagen original en la VolatileImage
+     */
+    private void restore() {
+        Graphics2D g = _volatile.createGraphics();
+        try {
+            // Sustituimos el contenido entero, incluidos los píxeles transparentes
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(_image, 0, 0, null);
+        }
+        finally {
+            g.dispose();
+        }
+    }
 }
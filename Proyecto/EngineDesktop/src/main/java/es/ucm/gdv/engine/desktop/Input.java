@@ -37,7 +37,7 @@ public class Input extends AbstractInput implements MouseListener, MouseMotionLi
         // Creamos evento
         TouchEvent e = new TouchEvent(_graphics ,TouchEventType.CLICKED, mouseEvent.getX(), mouseEvent.getY(), mouseEvent.getID());
         // Añadimos a la lista de eventos
-        _touchEvents.add(e);
+        setTouchEvent(e);
     }
 
     /**
@@ -50,7 +50,7 @@ public class Input extends AbstractInput implements MouseListener, MouseMotionLi
         // Creamos evento
         TouchEvent e = new TouchEvent(_graphics, TouchEventType.PRESSED, mouseEvent.getX(), mouseEvent.getY(), mouseEvent.getID());
         // Añadimos a la lista de eventos
-        _touchEvents.add(e);
+        setTouchEvent(e);
     }
 
     /**
@@ -63,7 +63,7 @@ public class Input extends AbstractInput implements MouseListener, MouseMotionLi
         // Creamos evento
         TouchEvent e = new TouchEvent(_graphics, TouchEventType.RELEASED, mouseEvent.getX(), mouseEvent.getY(), mouseEvent.getID());
         // Añadimos a la lista de eventos
-        _touchEvents.add(e);
+        setTouchEvent(e);
     }
 
     /**
@@ -92,7 +92,7 @@ public class Input extends AbstractInput implements MouseListener, MouseMotionLi
         // Creamos evento
         TouchEvent e = new TouchEvent(_graphics, TouchEventType.DRAGGED, mouseEvent.getX(), mouseEvent.getY(), mouseEvent.getID());
         // Añadimos a la lista de eventos
-        _touchEvents.add(e);
+        setTouchEvent(e);
     }
 
     /**
@@ -105,6 +105,6 @@ public class Input extends AbstractInput implements MouseListener, MouseMotionLi
         // Creamos evento
         TouchEvent e = new TouchEvent(_graphics, TouchEventType.MOVED, mouseEvent.getX(), mouseEvent.getY(), mouseEvent.getID());
         // Añadimos a la lista de eventos
-        _touchEvents.add(e);
+        setTouchEvent(e);
     }
 }
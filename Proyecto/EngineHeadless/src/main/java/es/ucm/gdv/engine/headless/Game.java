@@ -0,0 +1,233 @@
+package es.ucm.gdv.engine.headless;
+
+import es.ucm.gdv.engine.FrameMetrics;
+import es.ucm.gdv.engine.Logic;
+import es.ucm.gdv.engine.Rng;
+
+/**
+ * Implementación del “Game” del motor sin ventana. El bucle principal corre en la
+ * hebra que llama a run y va tan rápido como puede, sin esperar a ninguna pantalla
+ *
+ * El deltatime puede ser el tiempo real transcurrido o un paso virtual fijo, con lo
+ * que la simulación es reproducible y no depende de la velocidad de la máquina.
+ * El render puede desactivarse para medir solo el coste del update
+ */
+public class Game implements es.ucm.gdv.engine.Game {
+
+    /**
+     * Controlador de los gráficos
+     */
+    private Graphics _graphics;
+
+    /**
+     * Estado lógico que se tratará en el bucle ppal
+     */
+    private Logic _logic;
+
+    /**
+     * Controlador de las entradas de input
+     */
+    private Input _input;
+
+    /**
+     * Generador de números aleatorios del juego
+     */
+    private Rng _random = new Rng();
+
+    /**
+     * Tamaño de la ventana simulada (en píxeles)
+     */
+    private int _windowWidth;
+    private int _windowHeight;
+
+    /**
+     * Paso virtual en segundos (0 para usar el tiempo real transcurrido)
+     */
+    private double _fixedDelta = 0;
+
+    /**
+     * Número máximo de frames que se ejecutan (0 para no tener límite)
+     */
+    private long _maxFrames = 0;
+
+    /**
+     * Si es false no se llama al render de la lógica
+     */
+    private boolean _render = true;
+
+    /**
+     * Frames ejecutados y tiempo simulado (suma de los deltatime) desde el inicio
+     */
+    private long _frames = 0;
+    private double _time = 0;
+
+    /**
+     * Se pone a false para terminar el bucle (desde cualquier hebra)
+     */
+    private volatile boolean _running = false;
+
+    /**
+     * Métricas de duración de los frames (null si no se miden)
+     */
+    private FrameMetrics _metrics = null;
+
+    /**
+     * Constructora
+     *
+     * @param windowWidth ancho de la ventana simulada
+     * @param windowHeight alto de la ventana simulada
+     */
+    public Game(int windowWidth, int windowHeight) {
+        _windowWidth = windowWidth;
+        _windowHeight = windowHeight;
+    }
+
+    /**
+     * Fija el deltatime que recibe la lógica en cada frame
+     *
+     * @param seconds paso virtual en segundos, o 0 para usar el tiempo real transcurrido
+     */
+    public void setFixedTimestep(double seconds) { _fixedDelta = seconds; }
+
+    /**
+     * Limita el número de frames que ejecuta run antes de volver
+     *
+     * @param frames número de frames, o 0 para no tener límite
+     */
+    public void setMaxFrames(long frames) { _maxFrames = frames; }
+
+    /**
+     * Activa o desactiva el render de la lógica
+     *
+     * @param enabled false para ejecutar solo el update
+     */
+    public void setRender(boolean enabled) { _render = enabled; }
+
+    /**
+     * Termina el bucle principal al acabar el frame en curso
+     */
+    public void stop() { _running = false; }
+
+    /**
+     * Asigna las métricas en las que se registran la duración de cada frame, de su
+     * update y de su render, y los pintados. Hay que llamarlo después de init
+     *
+     * @param metrics métricas, o null para no medir
+     */
+    public void setMetrics(FrameMetrics metrics) {
+        _metrics = metrics;
+        _graphics.setMetrics(metrics);
+    }
+
+    /**
+     * Devuelve el número de frames ejecutados desde el inicio
+     *
+     * @return frames ejecutados
+     */
+    public long getFrames() { return _frames; }
+
+    /**
+     * Devuelve el tiempo simulado desde el inicio (suma de los deltatime)
+     *
+     * @return tiempo en segundos
+     */
+    public double getTime() { return _time; }
+
+    /**
+     * Añadimos la lógica sobre la cual se trabajará en el bucle principal
+     *
+     * @param logic estado de lógica a tratar
+     */
+    @Override
+    public void setLogic(Logic logic) { _logic = logic; }
+
+    /**
+     * Devuelve el controlador de los gráficos
+     *
+     * @return graphics
+     */
+    @Override
+    public Graphics getGraphics() { return _graphics; }
+
+    /**
+     * Devuelve el controlador del input
+     *
+     * @return input
+     */
+    @Override
+    public Input getInput() { return _input; }
+
+    /**
+     * Devuelve el generador de números aleatorios del juego
+     *
+     * @return generador
+     */
+    @Override
+    public Rng getRandom() { return _random; }
+
+    /**
+     * Inicializa lo necesario para correr el juego
+     *
+     * @param logic lógica a tratar en el bucle principal
+     *
+     * @return booleano de control si hay error en la inicializacion
+     */
+    @Override
+    public boolean init(Logic logic) {
+        _logic = logic;
+        _graphics = new Graphics(_windowWidth, _windowHeight);
+        _input = new Input(_graphics);
+        return _graphics.init();
+    }
+
+    /**
+     * Gestiona el bucle principal del juego hasta que se llama a stop
+     * o se alcanza el número máximo de frames
+     */
+    @Override
+    public void run() {
+        _running = true;
+        long lastFrameTime = System.nanoTime();
+        long frames = 0;
+
+        while (_running && (_maxFrames == 0 || frames < _maxFrames)) {
+
+            // Deltatime real o paso virtual fijo
+            double elapsedTime;
+            if (_fixedDelta > 0) {
+                elapsedTime = _fixedDelta;
+            }
+            else {
+                long currentTime = System.nanoTime();
+                elapsedTime = (double)(currentTime - lastFrameTime) / 1.0E9;
+                lastFrameTime = currentTime;
+            }
+
+            // Llamamos al update de la lógica con el deltatime
+            long start = _metrics != null ? System.nanoTime() : 0;
+            _logic.update(elapsedTime);
+            _time += elapsedTime;
+            long updated = _metrics != null ? System.nanoTime() : 0;
+
+            // Pintamos el frame (sin píxeles) si hace falta. Cada update simula el
+            // tiempo entero del frame, no queda fracción de paso que interpolar
+            if (_render && _graphics.beginRepaint()) {
+                _graphics.newFrame();
+                _logic.render(0);
+                _graphics.flush();
+            }
+            _graphics.endRepaint();
+
+            if (_metrics != null) {
+                long end = System.nanoTime();
+                _metrics.recordFrame(end - start, updated - start);
+                if (_render)
+                    _metrics.recordRender(end - updated);
+            }
+
+            frames++;
+            _frames++;
+        }
+        _running = false;
+    }
+}
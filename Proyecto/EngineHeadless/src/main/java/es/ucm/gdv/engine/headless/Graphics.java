@@ -0,0 +1,217 @@
+package es.ucm.gdv.engine.headless;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import es.ucm.gdv.engine.AbstractGraphics;
+import es.ucm.gdv.engine.Transparency;
+
+/**
+ * Implementación de los gráficos sin ventana ni píxeles
+ *
+ * Las imágenes solo leen la cabecera del PNG para conocer sus dimensiones, y los
+ * pintados pasan por to-do el camino común (escalado, lotes, descartes) pero la
+ * plataforma no hace nada con ellos, solo contarlos. Así se puede medir el coste
+ * de la simulación separado del de pintar
+ *
+ * Todas las medidas van en píxeles
+ */
+public class Graphics extends AbstractGraphics {
+
+    /**
+     * Firma con la que empieza todo fichero PNG
+     */
+    private static final long PNG_SIGNATURE = 0x89504E470D0A1A0AL;
+
+    /**
+     * Tamaño de la ventana simulada
+     */
+    private int _width;
+    private int _height;
+
+    /**
+     * Pintados y rellenos que han llegado a la plataforma desde el inicio
+     */
+    private long _totalDraws = 0;
+    private long _totalFills = 0;
+
+    /**
+     * Constructora
+     *
+     * @param width ancho de la ventana simulada
+     * @param height alto de la ventana simulada
+     */
+    public Graphics(int width, int height) {
+        _width = width;
+        _height = height;
+        updateViewport(width, height);
+    }
+
+    /**
+     * Inicializa lo necesario para el funcionamiento del controlador
+     * de gráficos
+     *
+     * @return booleano de control si ha habido algún fallo durante la inicialización
+     */
+    @Override
+    public boolean init() {
+        return true;
+    }
+
+    /**
+     * Empieza un frame nuevo. La plataforma lo llama antes del render de la lógica
+     */
+    public void newFrame() {
+        beginFrame();
+    }
+
+    /**
+     * Devuelve el número de pintados de imagen que han llegado a la plataforma desde el inicio
+     *
+     * @return pintados totales
+     */
+    public long getTotalDraws() {
+        return _totalDraws;
+    }
+
+    /**
+     * Devuelve el número de rellenos de color (clears y bandas) desde el inicio
+     *
+     * @return rellenos totales
+     */
+    public long getTotalFills() {
+        return _totalFills;
+    }
+
+    /**
+     * Lee solo la cabecera (IHDR) de un PNG para conocer sus dimensiones
+     *
+     * La clasificación se deduce del tipo de color: gris y RGB sin alpha se toman
+     * como opacas y el resto como semitransparentes
+     *
+     * @param filename ruta donde se encuentra la imagen y su nombre
+     *
+     * @return imagen sin píxeles o null si ha habido algún error
+     */
+    @Override
+    protected es.ucm.gdv.engine.Image loadImage(String filename) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(filename));
+            if (in.readLong() != PNG_SIGNATURE)
+                throw new IOException("No es un fichero PNG: " + filename);
+            in.readInt(); // longitud del chunk
+            in.readInt(); // tipo del chunk (IHDR)
+            int width = in.readInt();
+            int height = in.readInt();
+            in.readUnsignedByte(); // profundidad de bits
+            int colorType = in.readUnsignedByte();
+
+            Transparency transparency = (colorType == 0 || colorType == 2)
+                    ? Transparency.OPAQUE : Transparency.TRANSLUCENT;
+            return new Image(width, height, transparency);
+        }
+        catch (Exception e) {
+            // En caso de error avisamos al usuario
+            System.err.println(e);
+            return null;
+        }
+        finally {
+            if (in != null) {
+                try {
+                    in.close();
+                }
+                catch (Exception e) {
+                    System.err.println(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Crea una página del atlas sin píxeles, solo con sus dimensiones
+     *
+     * @param width ancho de la página
+     * @param height alto de la página
+     * @param images imágenes que irían en la página
+     * @param xs coordenada x de cada imagen en la página
+     * @param ys coordenada y de cada imagen en la página
+     *
+     * @return la página del atlas
+     */
+    @Override
+    protected es.ucm.gdv.engine.Image createAtlasPage(int width, int height, es.ucm.gdv.engine.Image[] images,
+                                                      int[] xs, int[] ys) {
+        Transparency transparency = Transparency.BITMASK;
+        for (int i = 0; i < images.length; i++)
+            transparency = transparency.combine(images[i].getTransparency());
+        return new Image(width, height, transparency);
+    }
+
+    /**
+     * El relleno de la ventana solo se cuenta
+     *
+     * @param color Color del que se pintara la pantalla
+     */
+    @Override
+    protected void clearPrivate(int color) {
+        _totalFills++;
+    }
+
+    /**
+     * El relleno de un rect solo se cuenta
+     *
+     * @param color color de relleno
+     * @param x coordenada x física
+     * @param y coordenada y física
+     * @param w ancho físico
+     * @param h alto físico
+     */
+    @Override
+    protected void fillRectPrivate(int color, int x, int y, int w, int h) {
+        _totalFills++;
+    }
+
+    /**
+     * El pintado de la imagen solo se cuenta
+     *
+     * @param image imagen a pintar
+     * @param sx x del rectangulo fuente
+     * @param sy y del rectangulo fuente
+     * @param sw anchura del rectangulo fuente
+     * @param sh altura del rectangulo fuente
+     * @param dx x del rectangulo donde se pintara
+     * @param dy y del rectangulo donde se pintara
+     * @param dw anchura del rectangulo donde se pintara
+     * @param dh altura del rectangulo donde se pintara
+     * @param alpha transparencia de la imagen
+     * @param transparency clasificación según el alpha de la imagen
+     */
+    @Override
+    protected void drawImagePrivate(es.ucm.gdv.engine.Image image, float sx, float sy, float sw, float sh,
+                                    float dx, float dy, float dw, float dh, float alpha,
+                                    Transparency transparency) {
+        _totalDraws++;
+    }
+
+    /**
+     * Devuelve el ancho de la ventana simulada
+     *
+     * @return Ancho de la ventana
+     */
+    @Override
+    public int getWindowWidth() {
+        return _width;
+    }
+
+    /**
+     * Devuelve el alto de la ventana simulada
+     *
+     * @return Alto de la ventana
+     */
+    @Override
+    public int getWindowHeight() {
+        return _height;
+    }
+}
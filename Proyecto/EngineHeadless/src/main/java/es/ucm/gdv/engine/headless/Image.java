@@ -0,0 +1,66 @@
+package es.ucm.gdv.engine.headless;
+
+import es.ucm.gdv.engine.Transparency;
+
+/**
+ * Implementa la interfaz “Image” del motor sin píxeles: solo guarda las dimensiones
+ * (leídas de la cabecera del PNG) y una clasificación según el tipo de color
+ *
+ * Las dimensiones son en píxeles
+ */
+public class Image implements es.ucm.gdv.engine.Image {
+
+    /**
+     * Dimensiones de la imagen
+     */
+    private int _width;
+    private int _height;
+
+    /**
+     * Clasificación según el canal alpha
+     */
+    private Transparency _transparency;
+
+    /**
+     * Constructora
+     *
+     * @param width ancho de la imagen
+     * @param height alto de la imagen
+     * @param transparency clasificación según el canal alpha
+     */
+    public Image(int width, int height, Transparency transparency) {
+        _width = width;
+        _height = height;
+        _transparency = transparency;
+    }
+
+    /**
+     *  Devuelve el ancho de la imagen
+     *
+     * @return Ancho de la imagen
+     */
+    @Override
+    public int getWidth() {
+        return _width;
+    }
+
+    /**
+     * Devuelve el alto de la imagen
+     *
+     * @return Alto de la imagen
+     */
+    @Override
+    public int getHeight() {
+        return _height;
+    }
+
+    /**
+     * Devuelve la clasificación de la imagen según su canal alpha
+     *
+     * @return clasificación deducida del tipo de color
+     */
+    @Override
+    public Transparency getTransparency() {
+        return _transparency;
+    }
+}
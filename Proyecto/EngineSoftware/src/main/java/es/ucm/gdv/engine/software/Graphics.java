@@ -0,0 +1,528 @@
+package es.ucm.gdv.engine.software;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import es.ucm.gdv.engine.AbstractGraphics;
+import es.ucm.gdv.engine.Transparency;
+
+/**
+ * Implementación de los gráficos por software, en Java puro y sin AWT ni Android
+ *
+ * Pinta sobre un framebuffer ARGB en memoria haciendo su propia mezcla de alpha
+ * premultiplicado y su propio escalado (vecino más cercano o bilineal). Durante el
+ * frame los pintados solo se anotan; al hacer flush el framebuffer se reparte en
+ * baldosas que se componen en paralelo en un ForkJoinPool, cada una recorriendo
+ * los pintados en orden, así que el resultado es el mismo con cualquier número de hebras
+ *
+ * Sirve para pintar sin pantalla (máquinas de compilación, benchmarks) de forma
+ * determinista y para aprovechar varios núcleos donde Java2D se queda en uno
+ *
+ * Todas las medidas van en píxeles
+ */
+public class Graphics extends AbstractGraphics {
+
+    /**
+     * Lado de las baldosas en las que se reparte el framebuffer
+     */
+    private static final int TILE_SIZE = 64;
+
+    /**
+     * Número de baldosas a partir del cual una tarea ya no se divide más
+     */
+    private static final int TILES_PER_TASK = 4;
+
+    /**
+     * Tipos de comando anotados durante el frame
+     */
+    private static final int CMD_DRAW = 0;
+    private static final int CMD_FILL = 1;
+
+    /**
+     * Floats guardados por comando (fuente x, y, w, h y destino x, y, w, h)
+     */
+    private static final int STRIDE = 8;
+
+    /**
+     * Framebuffer en ARGB premultiplicado y sus dimensiones
+     */
+    private int[] _pixels;
+    private int _width;
+    private int _height;
+
+    /**
+     * Pool en el que se componen las baldosas (null para componer en la hebra que llama)
+     */
+    private ForkJoinPool _pool;
+
+    /**
+     * Si es true las imágenes escaladas se filtran de forma bilineal
+     */
+    private boolean _bilinear = false;
+
+    /**
+     * Comandos del frame en curso: tipo, imagen, rects y alpha (o color de relleno)
+     */
+    private int[] _types = new int[64];
+    private Image[] _images = new Image[64];
+    private float[] _rects = new float[64 * STRIDE];
+    private int[] _args = new int[64];
+    private boolean[] _copies = new boolean[64];
+    private int _count = 0;
+
+    /**
+     * Zona del framebuffer a la que se limita el frame en curso
+     */
+    private int _clipX, _clipY, _clipW, _clipH;
+
+    /**
+     * Constructora, compone en paralelo con tantas hebras como núcleos
+     *
+     * @param width ancho del framebuffer
+     * @param height alto del framebuffer
+     */
+    public Graphics(int width, int height) {
+        this(width, height, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructora
+     *
+     * @param width ancho del framebuffer
+     * @param height alto del framebuffer
+     * @param threads hebras con las que se componen las baldosas (1 para no usar pool)
+     */
+    public Graphics(int width, int height, int threads) {
+        _pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        resize(width, height);
+    }
+
+    /**
+     * Inicializa lo necesario para el funcionamiento del controlador
+     * de gráficos
+     *
+     * @return booleano de control si ha habido algún fallo durante la inicialización
+     */
+    @Override
+    public boolean init() {
+        return true;
+    }
+
+    /**
+     * Cambia el tamaño del framebuffer (su contenido se pierde)
+     *
+     * @param width ancho nuevo
+     * @param height alto nuevo
+     */
+    public void resize(int width, int height) {
+        _width = width;
+        _height = height;
+        _pixels = new int[width * height];
+        updateViewport(width, height);
+        repaintAll();
+    }
+
+    /**
+     * Activa o desactiva el filtrado bilineal al escalar
+     *
+     * @param enabled true para bilineal, false para vecino más cercano
+     */
+    public void setBilinear(boolean enabled) {
+        _bilinear = enabled;
+    }
+
+    /**
+     * Indica si se escala con filtrado bilineal
+     *
+     * @return true si el filtrado es bilineal
+     */
+    public boolean isBilinear() {
+        return _bilinear;
+    }
+
+    /**
+     * Devuelve el framebuffer (sin copiar), válido tras el flush de cada frame
+     *
+     * @return píxeles en ARGB premultiplicado, fila a fila
+     */
+    public int[] getPixels() {
+        return _pixels;
+    }
+
+    /**
+     * Empieza un frame nuevo. La plataforma lo llama antes del render de la lógica
+     */
+    public void newFrame() {
+        _count = 0;
+        beginFrame();
+        if (isRepaintClipped()) {
+            _clipX = getRepaintX();
+            _clipY = getRepaintY();
+            _clipW = getRepaintW();
+            _clipH = getRepaintH();
+        }
+        else {
+            _clipX = 0;
+            _clipY = 0;
+            _clipW = _width;
+            _clipH = _height;
+        }
+    }
+
+    /**
+     * Compone en el framebuffer los pintados del frame, al terminar el flush
+     */
+    @Override
+    protected void flushPrivate() {
+        if (_count == 0)
+            return;
+
+        int tilesX = (_width + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesY = (_height + TILE_SIZE - 1) / TILE_SIZE;
+        if (_pool != null)
+            _pool.invoke(new TileTask(0, tilesX * tilesY, tilesX));
+        else
+            new TileTask(0, tilesX * tilesY, tilesX).compute();
+
+        // Soltamos las imágenes del frame
+        Arrays.fill(_images, 0, _count, null);
+        _count = 0;
+    }
+
+    /**
+     * Carga una imagen PNG a partir de una ruta dada (la caché la gestiona AbstractGraphics)
+     *
+     * @param filename ruta donde se encuentra la imagen y su nombre
+     *
+     * @return imagen cargada o null si ha habido algún error
+     */
+    @Override
+    protected es.ucm.gdv.engine.Image loadImage(String filename) {
+        InputStream in = null;
+        try {
+            in = new FileInputStream(filename);
+            return PngDecoder.decode(in);
+        }
+        catch (Exception e) {
+            // En caso de error avisamos al usuario
+            System.err.println(e);
+            return null;
+        }
+        finally {
+            if (in != null) {
+                try {
+                    in.close();
+                }
+                catch (Exception e) {
+                    System.err.println(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compone una página del atlas de texturas copiando las imágenes dadas
+     *
+     * @param width ancho de la página
+     * @param height alto de la página
+     * @param images imágenes a copiar en la página
+     * @param xs coordenada x de cada imagen en la página
+     * @param ys coordenada y de cada imagen en la página
+     *
+     * @return la página del atlas
+     */
+    @Override
+    protected es.ucm.gdv.engine.Image createAtlasPage(int width, int height, es.ucm.gdv.engine.Image[] images,
+                                                      int[] xs, int[] ys) {
+        int[] page = new int[width * height];
+
+        // La página tiene huecos transparentes entre regiones, como poco es de máscara
+        Transparency transparency = Transparency.BITMASK;
+        for (int i = 0; i < images.length; i++) {
+            Image image = (Image)images[i];
+            int w = image.getWidth();
+            for (int y = 0; y < image.getHeight(); y++)
+                System.arraycopy(image.getPixels(), y * w, page, (ys[i] + y) * width + xs[i], w);
+            transparency = transparency.combine(image.getTransparency());
+        }
+        return new Image(width, height, page, transparency);
+    }
+
+    /**
+     * Anota el relleno del framebuffer entero con un color
+     *
+     * @param color Color del que se pintara la pantalla
+     */
+    @Override
+    protected void clearPrivate(int color) {
+        fillRectPrivate(color, 0, 0, _width, _height);
+    }
+
+    /**
+     * Anota el relleno de un rect del framebuffer con un color
+     *
+     * @param color color de relleno
+     * @param x coordenada x física
+     * @param y coordenada y física
+     * @param w ancho físico
+     * @param h alto físico
+     */
+    @Override
+    protected void fillRectPrivate(int color, int x, int y, int w, int h) {
+        int i = addCommand(CMD_FILL, null);
+        int o = i * STRIDE;
+        _rects[o + 4] = x;
+        _rects[o + 5] = y;
+        _rects[o + 6] = w;
+        _rects[o + 7] = h;
+        _args[i] = PngDecoder.premultiply(color);
+    }
+
+    /**
+     * Anota un pintado de imagen para componerlo en el flush
+     *
+     * @param image imagen a pintar
+     * @param sx x del rectangulo fuente
+     * @param sy y del rectangulo fuente
+     * @param sw anchura del rectangulo fuente
+     * @param sh altura del rectangulo fuente
+     * @param dx x del rectangulo donde se pintara
+     * @param dy y del rectangulo donde se pintara
+     * @param dw anchura del rectangulo donde se pintara
+     * @param dh altura del rectangulo donde se pintara
+     * @param alpha transparencia de la imagen
+     * @param transparency clasificación según el alpha de la imagen
+     */
+    @Override
+    protected void drawImagePrivate(es.ucm.gdv.engine.Image image, float sx, float sy, float sw, float sh,
+                                    float dx, float dy, float dw, float dh, float alpha,
+                                    Transparency transparency) {
+        int level = alphaLevel(alpha);
+        if (level == 0)
+            return;
+
+        int i = addCommand(CMD_DRAW, (Image)image);
+        int o = i * STRIDE;
+        _rects[o] = sx;
+        _rects[o + 1] = sy;
+        _rects[o + 2] = sw;
+        _rects[o + 3] = sh;
+        _rects[o + 4] = dx;
+        _rects[o + 5] = dy;
+        _rects[o + 6] = dw;
+        _rects[o + 7] = dh;
+        _args[i] = level;
+        // Una imagen opaca sin alpha extra se copia sin mezclar
+        _copies[i] = level == 255 && transparency == Transparency.OPAQUE;
+    }
+
+    /**
+     * Devuelve el ancho del framebuffer
+     *
+     * @return Ancho de la ventana
+     */
+    @Override
+    public int getWindowWidth() {
+        return _width;
+    }
+
+    /**
+     * Devuelve el alto del framebuffer
+     *
+     * @return Alto de la ventana
+     */
+    @Override
+    public int getWindowHeight() {
+        return _height;
+    }
+
+    /**
+     * Reserva un comando al final de la lista, ampliándola si hace falta
+     *
+     * @return índice del comando
+     */
+    private int addCommand(int type, Image image) {
+        if (_count == _types.length) {
+            int n = _count * 2;
+            _types = Arrays.copyOf(_types, n);
+            _images = Arrays.copyOf(_images, n);
+            _rects = Arrays.copyOf(_rects, n * STRIDE);
+            _args = Arrays.copyOf(_args, n);
+            _copies = Arrays.copyOf(_copies, n);
+        }
+        int i = _count++;
+        _types[i] = type;
+        _images[i] = image;
+        return i;
+    }
+
+    /**
+     * Compone una baldosa recorriendo todos los comandos del frame en orden
+     *
+     * @param x0 x de la esquina superior izquierda
+     * @param y0 y de la esquina superior izquierda
+     * @param x1 x de la esquina inferior derecha (exclusiva)
+     * @param y1 y de la esquina inferior derecha (exclusiva)
+     */
+    private void renderTile(int x0, int y0, int x1, int y1) {
+        // Limitamos la baldosa a la zona a repintar
+        x0 = Math.max(x0, _clipX);
+        y0 = Math.max(y0, _clipY);
+        x1 = Math.min(x1, _clipX + _clipW);
+        y1 = Math.min(y1, _clipY + _clipH);
+        if (x0 >= x1 || y0 >= y1)
+            return;
+
+        for (int i = 0; i < _count; i++) {
+            int o = i * STRIDE;
+            if (_types[i] == CMD_FILL) {
+                int fx0 = Math.max(x0, (int)_rects[o + 4]);
+                int fy0 = Math.max(y0, (int)_rects[o + 5]);
+                int fx1 = Math.min(x1, (int)(_rects[o + 4] + _rects[o + 6]));
+                int fy1 = Math.min(y1, (int)(_rects[o + 5] + _rects[o + 7]));
+                for (int y = fy0; y < fy1; y++)
+                    Arrays.fill(_pixels, y * _width + fx0, y * _width + Math.max(fx0, fx1), _args[i]);
+            }
+            else {
+                drawTile(i, x0, y0, x1, y1);
+            }
+        }
+    }
+
+    /**
+     * Compone un pintado de imagen dentro de una baldosa
+     *
+     * Un píxel destino se pinta si su centro cae dentro del rect destino, y se
+     * muestrea la imagen en el punto correspondiente del rect fuente
+     */
+    private void drawTile(int i, int x0, int y0, int x1, int y1) {
+        int o = i * STRIDE;
+        float sx = _rects[o], sy = _rects[o + 1], sw = _rects[o + 2], sh = _rects[o + 3];
+        float dx = _rects[o + 4], dy = _rects[o + 5], dw = _rects[o + 6], dh = _rects[o + 7];
+
+        int px0 = Math.max(x0, (int)Math.ceil(dx - 0.5f));
+        int py0 = Math.max(y0, (int)Math.ceil(dy - 0.5f));
+        int px1 = Math.min(x1, (int)Math.ceil(dx + dw - 0.5f));
+        int py1 = Math.min(y1, (int)Math.ceil(dy + dh - 0.5f));
+        if (px0 >= px1 || py0 >= py1)
+            return;
+
+        Image image = _images[i];
+        int[] src = image.getPixels();
+        int srcW = image.getWidth();
+        int alpha = _args[i];
+        boolean copy = _copies[i];
+
+        // Límites del rect fuente en píxeles de la imagen (no se muestrea fuera de él
+        // para no sangrar regiones vecinas del atlas)
+        int minU = Math.max(0, (int)sx);
+        int minV = Math.max(0, (int)sy);
+        int maxU = Math.min(srcW, (int)Math.ceil(sx + sw)) - 1;
+        int maxV = Math.min(image.getHeight(), (int)Math.ceil(sy + sh)) - 1;
+        if (maxU < minU || maxV < minV)
+            return;
+
+        float scaleU = sw / dw, scaleV = sh / dh;
+        for (int y = py0; y < py1; y++) {
+            float v = sy + (y + 0.5f - dy) * scaleV;
+            int row = y * _width;
+            for (int x = px0; x < px1; x++) {
+                float u = sx + (x + 0.5f - dx) * scaleU;
+                int s;
+                if (_bilinear)
+                    s = sampleBilinear(src, srcW, u - 0.5f, v - 0.5f, minU, minV, maxU, maxV);
+                else
+                    s = src[clamp((int)v, minV, maxV) * srcW + clamp((int)u, minU, maxU)];
+
+                if (copy) {
+                    _pixels[row + x] = s;
+                    continue;
+                }
+                if (alpha != 255)
+                    s = scale(s, alpha);
+                int sa = s >>> 24;
+                if (sa == 255)
+                    _pixels[row + x] = s;
+                else if (sa != 0)
+                    _pixels[row + x] = s + scale(_pixels[row + x], 255 - sa);
+            }
+        }
+    }
+
+    /**
+     * Muestrea la imagen interpolando los cuatro píxeles vecinos
+     */
+    private static int sampleBilinear(int[] src, int srcW, float u, float v,
+                                      int minU, int minV, int maxU, int maxV) {
+        int u0 = (int)Math.floor(u), v0 = (int)Math.floor(v);
+        int fu = (int)((u - u0) * 256), fv = (int)((v - v0) * 256);
+        int ua = clamp(u0, minU, maxU), ub = clamp(u0 + 1, minU, maxU);
+        int va = clamp(v0, minV, maxV) * srcW, vb = clamp(v0 + 1, minV, maxV) * srcW;
+
+        int top = lerp(src[va + ua], src[va + ub], fu);
+        int bottom = lerp(src[vb + ua], src[vb + ub], fu);
+        return lerp(top, bottom, fv);
+    }
+
+    /**
+     * Interpola dos píxeles premultiplicados, f entre 0 y 256
+     */
+    private static int lerp(int a, int b, int f) {
+        if (a == b)
+            return a;
+        int g = 256 - f;
+        int rb = ((a & 0xFF00FF) * g + (b & 0xFF00FF) * f) >>> 8;
+        int ag = ((a >>> 8) & 0xFF00FF) * g + ((b >>> 8) & 0xFF00FF) * f;
+        return (ag & 0xFF00FF00) | (rb & 0xFF00FF);
+    }
+
+    /**
+     * Multiplica los cuatro canales de un píxel premultiplicado por a / 255 (redondeando)
+     */
+    private static int scale(int p, int a) {
+        int rb = (p & 0xFF00FF) * a + 0x800080;
+        rb = ((rb + ((rb >>> 8) & 0xFF00FF)) >>> 8) & 0xFF00FF;
+        int ag = ((p >>> 8) & 0xFF00FF) * a + 0x800080;
+        ag = (ag + ((ag >>> 8) & 0xFF00FF)) & 0xFF00FF00;
+        return ag | rb;
+    }
+
+    private static int clamp(int v, int min, int max) {
+        return v < min ? min : (v > max ? max : v);
+    }
+
+    /**
+     * Tarea que compone un rango de baldosas, dividiéndolo en dos mientras sea grande
+     */
+    private class TileTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int _first;
+        private final int _last;
+        private final int _tilesX;
+
+        TileTask(int first, int last, int tilesX) {
+            _first = first;
+            _last = last;
+            _tilesX = tilesX;
+        }
+
+        @Override
+        protected void compute() {
+            if (_last - _first > TILES_PER_TASK) {
+                int mid = (_first + _last) >>> 1;
+                invokeAll(new TileTask(_first, mid, _tilesX), new TileTask(mid, _last, _tilesX));
+                return;
+            }
+            for (int t = _first; t < _last; t++) {
+                int x = (t % _tilesX) * TILE_SIZE;
+                int y = (t / _tilesX) * TILE_SIZE;
+                renderTile(x, y, Math.min(x + TILE_SIZE, _width), Math.min(y + TILE_SIZE, _height));
+            }
+        }
+    }
+}
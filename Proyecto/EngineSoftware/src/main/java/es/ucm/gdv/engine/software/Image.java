@@ -0,0 +1,85 @@
+package es.ucm.gdv.engine.software;
+
+import es.ucm.gdv.engine.Transparency;
+
+/**
+ * Implementa la interfaz “Image” del motor sobre un array de píxeles en memoria,
+ * sin depender de AWT ni de Android
+ *
+ * Los píxeles se guardan en ARGB premultiplicado (cada canal de color ya va
+ * multiplicado por el alpha), fila a fila
+ *
+ * Las dimensiones son en píxeles
+ */
+public class Image implements es.ucm.gdv.engine.Image {
+
+    /**
+     * Dimensiones de la imagen
+     */
+    private int _width;
+    private int _height;
+
+    /**
+     * Píxeles en ARGB premultiplicado
+     */
+    private int[] _pixels;
+
+    /**
+     * Clasificación según el canal alpha
+     */
+    private Transparency _transparency;
+
+    /**
+     * Constructora
+     *
+     * @param width ancho de la imagen
+     * @param height alto de la imagen
+     * @param pixels píxeles en ARGB premultiplicado (width * height)
+     * @param transparency clasificación según el canal alpha (calculada al cargar)
+     */
+    public Image(int width, int height, int[] pixels, Transparency transparency) {
+        _width = width;
+        _height = height;
+        _pixels = pixels;
+        _transparency = transparency;
+    }
+
+    /**
+     *  Devuelve el ancho de la imagen
+     *
+     * @return Ancho de la imagen
+     */
+    @Override
+    public int getWidth() {
+        return _width;
+    }
+
+    /**
+     * Devuelve el alto de la imagen
+     *
+     * @return Alto de la imagen
+     */
+    @Override
+    public int getHeight() {
+        return _height;
+    }
+
+    /**
+     * Devuelve la clasificación de la imagen según su canal alpha
+     *
+     * @return clasificación calculada al cargar la imagen
+     */
+    @Override
+    public Transparency getTransparency() {
+        return _transparency;
+    }
+
+    /**
+     * Devuelve los píxeles de la imagen (sin copiar)
+     *
+     * @return píxeles en ARGB premultiplicado
+     */
+    public int[] getPixels() {
+        return _pixels;
+    }
+}
@@ -0,0 +1,24 @@
+package es.ucm.gdv.engine.software;
+
+import es.ucm.gdv.engine.AbstractInput;
+
+/**
+ * Extiende la clase “AbstractInput” del motor sin ninguna fuente de eventos real
+ *
+ * Los eventos se inyectan desde fuera con setTouchEvent (pruebas, bots o
+ * grabaciones) y la lógica los consume igual que en el resto de plataformas
+ *
+ * Las coordenadas van en píxeles
+ */
+public class Input extends AbstractInput {
+
+    /**
+     * Constructora
+     *
+     * @param g Graphics por software, para poder gestionar las coordenadas
+     *          de los eventos de forma lógica
+     */
+    public Input(Graphics g) {
+        super(g);
+    }
+}
@@ -0,0 +1,316 @@
+package es.ucm.gdv.engine.software;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import es.ucm.gdv.engine.Transparency;
+
+/**
+ * Decodificador de PNG en Java puro (solo usa java.util.zip para descomprimir)
+ *
+ * Admite todos los tipos de color (gris, RGB, paleta, gris con alpha y RGBA) con
+ * cualquier profundidad de bits y transparencia por tRNS. No admite imágenes
+ * entrelazadas (Adam7), que los sprites del juego no usan
+ */
+class PngDecoder {
+
+    /**
+     * Firma con la que empieza todo fichero PNG
+     */
+    private static final long SIGNATURE = 0x89504E470D0A1A0AL;
+
+    /**
+     * Tipos de chunk que se leen, el resto se ignoran
+     */
+    private static final int IHDR = 0x49484452;
+    private static final int PLTE = 0x504C5445;
+    private static final int TRNS = 0x74524E53;
+    private static final int IDAT = 0x49444154;
+    private static final int IEND = 0x49454E44;
+
+    /**
+     * Tipos de color de la cabecera
+     */
+    private static final int GRAY = 0;
+    private static final int RGB = 2;
+    private static final int PALETTE = 3;
+    private static final int GRAY_ALPHA = 4;
+    private static final int RGBA = 6;
+
+    /**
+     * Lee una imagen PNG y la convierte a ARGB premultiplicado
+     *
+     * @param in flujo con el fichero PNG (no se cierra)
+     *
+     * @return imagen decodificada
+     *
+     * @throws IOException si el fichero no es un PNG válido o no está soportado
+     */
+    static Image decode(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readLong() != SIGNATURE)
+            throw new IOException("No es un fichero PNG");
+
+        int width = 0, height = 0, bitDepth = 0, colorType = 0;
+        int[] palette = null;
+        byte[] trns = null;
+        ByteArrayOutputStream idat = new ByteArrayOutputStream();
+
+        // Recorremos los chunks hasta el final de la imagen
+        boolean end = false;
+        while (!end) {
+            int length = data.readInt();
+            int type = data.readInt();
+            byte[] chunk = new byte[length];
+            data.readFully(chunk);
+            data.readInt(); // CRC, no se comprueba
+
+            switch (type) {
+                case IHDR:
+                    width = readInt(chunk, 0);
+                    height = readInt(chunk, 4);
+                    bitDepth = chunk[8] & 0xFF;
+                    colorType = chunk[9] & 0xFF;
+                    if (chunk[12] != 0)
+                        throw new IOException("PNG entrelazado no soportado");
+                    break;
+                case PLTE:
+                    palette = new int[length / 3];
+                    for (int i = 0; i < palette.length; i++)
+                        palette[i] = 0xFF000000 | (chunk[i * 3] & 0xFF) << 16
+                                | (chunk[i * 3 + 1] & 0xFF) << 8 | (chunk[i * 3 + 2] & 0xFF);
+                    break;
+                case TRNS:
+                    trns = chunk;
+                    break;
+                case IDAT:
+                    idat.write(chunk);
+                    break;
+                case IEND:
+                    end = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (width <= 0 || height <= 0)
+            throw new IOException("PNG sin cabecera");
+
+        // Con paleta, el tRNS da el alpha de cada entrada
+        if (colorType == PALETTE) {
+            if (palette == null)
+                throw new IOException("PNG con paleta sin PLTE");
+            if (trns != null) {
+                for (int i = 0; i < trns.length && i < palette.length; i++)
+                    palette[i] = (palette[i] & 0xFFFFFF) | (trns[i] & 0xFF) << 24;
+            }
+        }
+
+        int channels = channelsOf(colorType);
+        int bitsPerPixel = channels * bitDepth;
+        int bytesPerPixel = Math.max(1, bitsPerPixel / 8);
+        int stride = (width * bitsPerPixel + 7) / 8;
+
+        // Descomprimimos los datos: cada fila lleva delante su tipo de filtro
+        byte[] raw = new byte[height * (stride + 1)];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(idat.toByteArray());
+            int n = 0;
+            while (n < raw.length) {
+                int read = inflater.inflate(raw, n, raw.length - n);
+                if (read == 0 && (inflater.finished() || inflater.needsInput()))
+                    throw new IOException("Datos PNG incompletos");
+                n += read;
+            }
+        }
+        catch (DataFormatException e) {
+            throw new IOException(e.toString());
+        }
+        finally {
+            inflater.end();
+        }
+
+        // Deshacemos los filtros y convertimos cada fila a ARGB
+        int[] argb = new int[width * height];
+        byte[] prev = new byte[stride];
+        byte[] row = new byte[stride];
+        Transparency transparency = Transparency.OPAQUE;
+        for (int y = 0; y < height; y++) {
+            int o = y * (stride + 1);
+            System.arraycopy(raw, o + 1, row, 0, stride);
+            unfilter(raw[o], row, prev, bytesPerPixel);
+            convertRow(row, argb, y * width, width, colorType, bitDepth, palette, trns);
+            transparency = Transparency.scan(argb, y * width, width, transparency);
+
+            byte[] t = prev;
+            prev = row;
+            row = t;
+        }
+
+        // Premultiplicamos (las opacas no cambian)
+        if (transparency != Transparency.OPAQUE) {
+            for (int i = 0; i < argb.length; i++)
+                argb[i] = premultiply(argb[i]);
+        }
+        return new Image(width, height, argb, transparency);
+    }
+
+    /**
+     * Número de canales de cada tipo de color
+     */
+    private static int channelsOf(int colorType) throws IOException {
+        switch (colorType) {
+            case GRAY: return 1;
+            case RGB: return 3;
+            case PALETTE: return 1;
+            case GRAY_ALPHA: return 2;
+            case RGBA: return 4;
+            default: throw new IOException("Tipo de color PNG desconocido: " + colorType);
+        }
+    }
+
+    /**
+     * Deshace el filtro de una fila usando la fila anterior ya reconstruida
+     */
+    private static void unfilter(int filter, byte[] row, byte[] prev, int bpp) throws IOException {
+        int n = row.length;
+        switch (filter) {
+            case 0: // None
+                break;
+            case 1: // Sub
+                for (int i = bpp; i < n; i++)
+                    row[i] += row[i - bpp];
+                break;
+            case 2: // Up
+                for (int i = 0; i < n; i++)
+                    row[i] += prev[i];
+                break;
+            case 3: // Average
+                for (int i = 0; i < n; i++) {
+                    int left = i >= bpp ? row[i - bpp] & 0xFF : 0;
+                    row[i] += (left + (prev[i] & 0xFF)) >> 1;
+                }
+                break;
+            case 4: // Paeth
+                for (int i = 0; i < n; i++) {
+                    int a = i >= bpp ? row[i - bpp] & 0xFF : 0;
+                    int b = prev[i] & 0xFF;
+                    int c = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+                    row[i] += (pa <= pb && pa <= pc) ? a : (pb <= pc ? b : c);
+                }
+                break;
+            default:
+                throw new IOException("Filtro PNG desconocido: " + filter);
+        }
+    }
+
+    /**
+     * Convierte una fila ya sin filtro a ARGB sin premultiplicar
+     */
+    private static void convertRow(byte[] row, int[] argb, int offset, int width, int colorType,
+                                   int bitDepth, int[] palette, byte[] trns) {
+        // Color clave de tRNS para gris y RGB (en la profundidad original)
+        int keyR = -1, keyG = -1, keyB = -1;
+        if (trns != null && colorType == GRAY && trns.length >= 2) {
+            keyR = readShort(trns, 0);
+        }
+        else if (trns != null && colorType == RGB && trns.length >= 6) {
+            keyR = readShort(trns, 0);
+            keyG = readShort(trns, 2);
+            keyB = readShort(trns, 4);
+        }
+
+        int max = (1 << bitDepth) - 1;
+        for (int x = 0; x < width; x++) {
+            int pixel;
+            switch (colorType) {
+                case GRAY: {
+                    int v = sample(row, x, bitDepth);
+                    int g = v * 255 / max;
+                    pixel = (v == keyR ? 0 : 0xFF000000) | g << 16 | g << 8 | g;
+                    break;
+                }
+                case RGB: {
+                    int r = sample(row, x * 3, bitDepth);
+                    int g = sample(row, x * 3 + 1, bitDepth);
+                    int b = sample(row, x * 3 + 2, bitDepth);
+                    int a = (r == keyR && g == keyG && b == keyB) ? 0 : 0xFF;
+                    pixel = a << 24 | (r * 255 / max) << 16 | (g * 255 / max) << 8 | b * 255 / max;
+                    break;
+                }
+                case PALETTE: {
+                    int i = sample(row, x, bitDepth);
+                    pixel = i < palette.length ? palette[i] : 0xFF000000;
+                    break;
+                }
+                case GRAY_ALPHA: {
+                    int g = sample(row, x * 2, bitDepth) * 255 / max;
+                    int a = sample(row, x * 2 + 1, bitDepth) * 255 / max;
+                    pixel = a << 24 | g << 16 | g << 8 | g;
+                    break;
+                }
+                default: {
+                    int r = sample(row, x * 4, bitDepth) * 255 / max;
+                    int g = sample(row, x * 4 + 1, bitDepth) * 255 / max;
+                    int b = sample(row, x * 4 + 2, bitDepth) * 255 / max;
+                    int a = sample(row, x * 4 + 3, bitDepth) * 255 / max;
+                    pixel = a << 24 | r << 16 | g << 8 | b;
+                    break;
+                }
+            }
+            argb[offset + x] = pixel;
+        }
+    }
+
+    /**
+     * Lee la muestra index-ésima de una fila con la profundidad dada
+     */
+    private static int sample(byte[] row, int index, int bitDepth) {
+        switch (bitDepth) {
+            case 8:
+                return row[index] & 0xFF;
+            case 16:
+                return readShort(row, index * 2);
+            default: {
+                // 1, 2 o 4 bits: varias muestras por byte, la primera en los bits altos
+                int bit = index * bitDepth;
+                int shift = 8 - bitDepth - (bit & 7);
+                return (row[bit >> 3] >> shift) & ((1 << bitDepth) - 1);
+            }
+        }
+    }
+
+    /**
+     * Convierte un píxel ARGB a ARGB premultiplicado
+     *
+     * @param argb píxel sin premultiplicar
+     *
+     * @return píxel premultiplicado
+     */
+    static int premultiply(int argb) {
+        int a = argb >>> 24;
+        if (a == 255)
+            return argb;
+        if (a == 0)
+            return 0;
+        int r = ((argb >> 16) & 0xFF) * a / 255;
+        int g = ((argb >> 8) & 0xFF) * a / 255;
+        int b = (argb & 0xFF) * a / 255;
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+    private static int readInt(byte[] b, int o) {
+        return (b[o] & 0xFF) << 24 | (b[o + 1] & 0xFF) << 16 | (b[o + 2] & 0xFF) << 8 | (b[o + 3] & 0xFF);
+    }
+
+    private static int readShort(byte[] b, int o) {
+        return (b[o] & 0xFF) << 8 | (b[o + 1] & 0xFF);
+    }
+}
@@ -1,6 +1,8 @@
 package es.ucm.gdv.switchdash;
 
+import es.ucm.gdv.engine.Graphics;
 import es.ucm.gdv.engine.Rect;
+import es.ucm.gdv.engine.Rng;
 import es.ucm.gdv.engine.Sprite;
 
 
@@ -18,16 +20,23 @@ public class BallObject extends  GameObject {
     private Sprite _blackSprite;
     // Parcialidad a favor del color anterior al obtener uno aleatorio
     private float _bias = 0.7f;
+    // Generador aleatorio de la partida
+    private Rng _random;
+    // Anillo al que pertenece (su desplazamiento se suma a la Y al pintar)
+    private BallRing _ring = null;
 
     /**
      * Constructora
      *
+     * @param random Generador aleatorio de la partida
      * @param type Tipo de la bola, que determina su forma
      * @param wSprite Sprite con la imagen de la bola blanca
      * @param bSprite Sprite con la imagen de la bola negra
      * @param transform Transform de la bola
      */
-    public BallObject(BallType type, Sprite wSprite, Sprite bSprite, Rect transform) {
+    public BallObject(Rng random, BallType type, Sprite wSprite, Sprite bSprite, Rect transform) {
+        _random = random;
+
         // Asignamos el tipo
         _type = type;
 
@@ -60,7 +69,7 @@ public class BallObject extends  GameObject {
      *  Asigna un color y correspondiente sprite aleatorio
      */
     public void setRndSprite() {
-        int rnd = (int)(Math.random() * 2.0);
+        int rnd = _random.nextInt(2);
 
         if (rnd == 0) {
             setSprite(_whiteSprite);
@@ -78,7 +87,7 @@ public class BallObject extends  GameObject {
      * pero habiendo mas probabilidad de conservar el color anterior
      */
     public void setBiasedRandomSprite() {
-        double rnd = Math.random();
+        double rnd = _random.nextFloat();
 
         if (rnd > _bias) {
             swapSprite();
@@ -95,6 +104,38 @@ public class BallObject extends  GameObject {
         setY(y);
     }
 
+    /**
+     * Asigna el anillo al que pertenece la bola
+     * @param ring Anillo
+     */
+    void setRing(BallRing ring) {
+        _ring = ring;
+    }
+
+    /**
+     * Pinta la bola desplazada con el anillo al que pertenece
+     * @param graphics Gestor de graficos
+     */
+    @Override
+    public void drawSprite(Graphics graphics) {
+        drawSprite(graphics, 0);
+    }
+
+    /**
+     * Pinta la bola desplazada con el anillo al que pertenece, extrapolando
+     * su avance una fraccion de paso
+     * @param graphics Gestor de graficos
+     * @param t Fraccion de paso desde el ultimo update
+     */
+    @Override
+    public void drawSprite(Graphics graphics, float t) {
+        if (_ring == null) {
+            super.drawSprite(graphics);
+            return;
+        }
+        drawSpriteAt(graphics, getX(), getY() + _ring.getDrawScroll(t));
+    }
+
     /**
      * Devuelve el color de la bola
      * @return Color de la bola
@@ -0,0 +1,151 @@
+package es.ucm.gdv.switchdash;
+
+/**
+ * Anillo con las bolas de Demo, ordenadas de la mas baja (la siguiente que llega
+ * a la barra) a la mas alta
+ *
+ * Todas las bolas bajan a la misma velocidad y la que llega a la barra se recoloca
+ * encima de la mas alta, asi que el orden no cambia nunca: basta con un indice a la
+ * siguiente bola, y la mas alta es la anterior a ella. Las bolas guardan su Y
+ * respecto a un desplazamiento comun, y avanzarlas todas es sumar al desplazamiento,
+ * con lo que el coste de cada frame no depende del numero de bolas
+ *
+ * Al desplazarse las bolas no marcan la region modificada, Demo repinta entera.
+ * Al pintar se extrapola el desplazamiento con el del ultimo paso
+ */
+class BallRing {
+
+    // Desplazamiento a partir del cual se pasa a las bolas, para que sus Y y el
+    // desplazamiento no crezcan sin limite y pierdan precision
+    private static final float REBASE_LIMIT = 1 << 16;
+
+    // Bolas, de la mas baja a la mas alta empezando por _head
+    private BallObject[] _balls;
+    private int _head = 0;
+
+    // Desplazamiento comun de todas las bolas y lo que avanzo en el ultimo paso
+    private float _scroll = 0;
+    private float _lastScroll = 0;
+
+    // Separacion vertical entre bolas consecutivas
+    private float _separation;
+
+    /**
+     * Constructora
+     *
+     * @param balls Bolas del anillo (al menos una)
+     * @param separation Separacion vertical entre bolas consecutivas
+     */
+    BallRing(BallObject[] balls, float separation) {
+        _balls = balls;
+        _separation = separation;
+        for (int i = 0; i < _balls.length; i++)
+            _balls[i].setRing(this);
+    }
+
+    /**
+     * Coloca las bolas en columna, la primera en y y las demas encima
+     *
+     * @param y Coordenada y de la bola mas baja
+     */
+    void reset(float y) {
+        _head = 0;
+        _scroll = 0;
+        _lastScroll = 0;
+        for (int i = 0; i < _balls.length; i++)
+            _balls[i].setY(y - _separation * i);
+    }
+
+    /**
+     * Desplaza todas las bolas hacia abajo
+     *
+     * @param dy Distancia a desplazar
+     */
+    void scroll(float dy) {
+        _scroll += dy;
+        _lastScroll = dy;
+        if (_scroll > REBASE_LIMIT) {
+            for (int i = 0; i < _balls.length; i++)
+                _balls[i].setY(_balls[i].getY() + _scroll);
+            _scroll = 0;
+        }
+    }
+
+    /**
+     * Devuelve el desplazamiento comun, que se suma a la Y de las bolas
+     *
+     * @return Desplazamiento
+     */
+    float getScroll() {
+        return _scroll;
+    }
+
+    /**
+     * Devuelve el desplazamiento con el que se pintan las bolas una fraccion de
+     * paso despues del ultimo, suponiendo que avanzan lo mismo que en el ultimo
+     *
+     * @param t Fraccion de paso (entre 0 y 1)
+     * @return Desplazamiento extrapolado
+     */
+    float getDrawScroll(float t) {
+        return _scroll + _lastScroll * t;
+    }
+
+    /**
+     * Devuelve la siguiente bola que va a llegar a la barra (la mas baja)
+     *
+     * @return Bola
+     */
+    BallObject getNext() {
+        return _balls[_head];
+    }
+
+    /**
+     * Devuelve la bola mas alta
+     *
+     * @return Bola
+     */
+    BallObject getTop() {
+        return _balls[_head == 0 ? _balls.length - 1 : _head - 1];
+    }
+
+    /**
+     * Devuelve la coordenada y en pantalla de una bola del anillo
+     *
+     * @param ball Bola
+     * @return Coordenada y con el desplazamiento
+     */
+    float getScreenY(BallObject ball) {
+        return ball.getY() + _scroll;
+    }
+
+    /**
+     * Recoloca la siguiente bola encima de la mas alta, con un color nuevo,
+     * y pasa a la siguiente
+     */
+    void respawnNext() {
+        BallObject ball = _balls[_head];
+        float y = getScreenY(getTop()) - _separation;
+        ball.resetBall(y - _scroll);
+        _head = (_head + 1) % _balls.length;
+    }
+
+    /**
+     * Devuelve el numero de bolas
+     *
+     * @return Bolas del anillo
+     */
+    int size() {
+        return _balls.length;
+    }
+
+    /**
+     * Devuelve una bola por su posicion desde la mas baja
+     *
+     * @param i Posicion (0 es la siguiente en llegar)
+     * @return Bola
+     */
+    BallObject get(int i) {
+        return _balls[(_head + i) % _balls.length];
+    }
+}
@@ -2,9 +2,12 @@ package es.ucm.gdv.switchdash;
 
 import java.util.ArrayList;
 
+import es.ucm.gdv.engine.AssetManifest;
 import es.ucm.gdv.engine.Game;
 import es.ucm.gdv.engine.Graphics;
 import es.ucm.gdv.engine.Input;
+import es.ucm.gdv.engine.Profiler;
+import es.ucm.gdv.engine.ProfilingGraphics;
 import es.ucm.gdv.engine.Rect;
 import es.ucm.gdv.engine.Sprite;
 
@@ -17,9 +20,12 @@ import es.ucm.gdv.engine.Sprite;
  */
 public abstract class BaseLogic implements es.ucm.gdv.engine.Logic {
 
-    // Variables estaticas ya que se conservan entre estados
-    protected static int _score;
-    protected static int _backgroundColorIndex;
+    // Perfilador de la partida (null si no se perfila)
+    protected Profiler _profiler = null;
+
+    // Partida a la que pertenece el estado: lo que se conserva entre estados
+    // (puntuacion, color de fondo y generador aleatorio)
+    private Session _session = null;
 
     // Gestores de inicio y bucle de juego, graficos e input
     protected Game _game;
@@ -51,6 +57,8 @@ public abstract class BaseLogic implements es.ucm.gdv.engine.Logic {
     protected int _bgSquareSize = 32;
     protected int _bgPatronSize = 612; // pixels
     protected float _bgSpeed = 384;
+    // Lo que bajan las flechas en cada paso, para extrapolar al pintar
+    protected float _bgStep = 0;
     protected int _bgAlpha = 50;
     protected int _buttonSize = 140;
     protected int _buttonY = 30;
@@ -64,13 +72,17 @@ public abstract class BaseLogic implements es.ucm.gdv.engine.Logic {
     protected float _alphaIncr = 400;
     protected float _fadeOutDecr = -700;
 
-    // Listas de objetos
-    protected ArrayList<GameObject> _gameObjects;
+    // Escena con los objetos del estado, por capas
+    protected Scene _scene;
+    // Lista de objetos de la puntuacion
     protected ArrayList<GameObject> _scoreObjects;
 
     // Numero maximo de digitos de la puntuacion
     protected int _maxScoreDigits = 3;
 
+    // Sprites de los digitos 0-9 de la fuente, se crean la primera vez que se necesitan
+    protected Sprite[] _digitSprites = null;
+
     // Variables relativas a la fuente
     protected int _fontColumns = 15;
     protected int _fontRows = 7;
@@ -95,8 +107,15 @@ public abstract class BaseLogic implements es.ucm.gdv.engine.Logic {
         _game = game;
         _input = game.getInput();
         _graphics = _game.getGraphics();
+        // Al perfilar se pinta a traves del decorador que mide cada pintado
+        _profiler = getSession().getProfiler();
+        if (_profiler != null)
+            _graphics = new ProfilingGraphics(_graphics, _profiler);
+        // Las pantallas casi estaticas solo repintan lo que cambia
+        _graphics.setDirtyRendering(usesDirtyRendering());
         // Inicializacoin listas de objetos
-        _gameObjects = new ArrayList<GameObject>();
+        _scene = new Scene();
+        _scene.setProfiler(_profiler);
         _scoreObjects = new ArrayList<GameObject>();
 
         try {
@@ -105,7 +124,17 @@ public abstract class BaseLogic implements es.ucm.gdv.engine.Logic {
             _screenH = _graphics.getCanvasHeight();
 
             // Creacion de las flechas del fondo
-            _backgroundObject = new GameObject(new Sprite(_graphics.newImage("Sprites/arrowsBackground.png")));
+            // Se pintan adelantadas la fraccion de paso que pide el render, dando la
+            // vuelta al patron igual que en update
+            _backgroundObject = new GameObject(new Sprite(_graphics.newImage("Sprites/arrowsBackground.png"))) {
+                @Override
+                public void drawSprite(Graphics graphics, float t) {
+                    float y = getY() + _bgStep * t;
+                    if (y >= 0)
+                        y -= _bgPatronSize;
+                    drawSpriteAt(graphics, getX(), y);
+                }
+            };
             float _bgImageWidth = _backgroundObject.getW();
             float _bgImageHeight = _backgroundObject.getH();
             float _bgImageX = (_screenW / 2.0f) - (_bgImageWidth/ 2.0f);
@@ -114,18 +143,18 @@ public abstract class BaseLogic implements es.ucm.gdv.engine.Logic {
 
             // Creacion del cuadrado que se pinta por debajo del fondo, del mismo color que el fondo pero mas claro
             _bgSquare = new GameObject(new Sprite(_graphics.newImage("Sprites/backgrounds.png"),
-                    new Rect(_backgroundColorIndex*_bgSquareSize, 0, _bgSquareSize, _bgSquareSize)),
+                    new Rect(getSession().getBackgroundColorIndex()*_bgSquareSize, 0, _bgSquareSize, _bgSquareSize)),
                     new Rect(_bgImageX, 0, _bgImageWidth, _bgImageHeight));
-            _gameObjects.add(_bgSquare);
+            addGameObject(_bgSquare, Layer.Background);
 
             // Añadimos las flechas despues para que se pinten por encima
-            _gameObjects.add(_backgroundObject);
+            addGameObject(_backgroundObject, Layer.Background);
 
             // Creamos y añadimos los objetos que pintaran la puntuacion en base a sus digitos maximos
             for(int i = 0; i < _maxScoreDigits; i++) {
                 GameObject aux = new GameObject(new Rect(0, 0,
                         _realFontWidth, _realFontHeight));
-                _gameObjects.add(aux);
+                addGameObject(aux, Layer.UI);
                 _scoreObjects.add(aux);
             }
 
@@ -140,18 +169,18 @@ public abstract class BaseLogic implements es.ucm.gdv.engine.Logic {
             _soundObject = new GameObject(_soundOn);
             _soundObject.setCoords(_buttonSize / 3, _buttonY);
             _soundObject.setActive(false);
-            _gameObjects.add(_soundObject);
+            addGameObject(_soundObject, Layer.UI);
 
             _controlsObject = new GameObject(new Sprite(_graphics.newImage("Sprites/buttons.png"),
                     new Rect(ButtonType.Controls.ordinal() *_buttonSize,0,_buttonSize,_buttonSize)));
             _controlsObject.setCoords(_screenW - (_buttonSize + _buttonSize / 3), _buttonY);
             _controlsObject.setActive(false);
-            _gameObjects.add(_controlsObject);
+            addGameObject(_controlsObject, Layer.UI);
 
             // Creamos la imagen en blanco que causa el efecto flash al hacerle un fadeout
             _flashObject = new GameObject(new Sprite(_graphics.newImage("Sprites/white.png")),
                     new Rect(0,0, _screenW, _screenH));
-            _gameObjects.add(_flashObject);
+            addGameObject(_flashObject, Layer.Overlay);
             return true;
         }
 
@@ -162,6 +191,46 @@ public abstract class BaseLogic implements es.ucm.gdv.engine.Logic {
         }
     }
 
+    /**
+     * Devuelve el manifiesto con todas las imagenes del juego, que se empaquetan
+     * en el atlas de texturas al arrancar
+     *
+     * @return manifiesto con todos los sprites
+     */
+    public static AssetManifest getAtlasManifest() {
+        return new AssetManifest()
+                .addImage("Sprites/arrowsBackground.png")
+                .addImage("Sprites/backgrounds.png")
+                .addImage("Sprites/balls.png")
+                .addImage("Sprites/black.png")
+                .addImage("Sprites/buttons.png")
+                .addImage("Sprites/gameOver.png")
+                .addImage("Sprites/howToPlay.png")
+                .addImage("Sprites/instructions.png")
+                .addImage("Sprites/playAgain.png")
+                .addImage("Sprites/players.png")
+                .addImage("Sprites/scoreFont.png")
+                .addImage("Sprites/switchDashLogo.png")
+                .addImage("Sprites/tapToPlay.png")
+                .addImage("Sprites/white.png");
+    }
+
+    /**
+     * Devuelve el manifiesto con las imagenes que necesita el estado, para que
+     * el estado de carga las decodifique en segundo plano antes de llamar a init
+     *
+     * Contiene las imagenes comunes, los estados añaden las suyas
+     *
+     * @return manifiesto de recursos
+     */
+    public AssetManifest getManifest() {
+        return new AssetManifest()
+                .addImage("Sprites/arrowsBackground.png")
+                .addImage("Sprites/backgrounds.png")
+                .addImage("Sprites/buttons.png")
+                .addImage("Sprites/white.png");
+    }
+
     /**
      * Actualiza el estado de logica, en concreto se encarga del
      * movimiento ciclico del fondo y los flashazos al inicio de los estados
@@ -170,8 +239,10 @@ public abstract class BaseLogic implements es.ucm.gdv.engine.Logic {
      */
     @Override
     public void update(double deltaTime) {
+        beginSection("fondo");
         // Movemos las flechas en loop para simular un desplazamiento hacia abajo constante
         if(_backgroundObject != null) {
+            _bgStep = (float) (_bgSpeed * deltaTime);
             if (_backgroundObject.getY() + (_bgSpeed * deltaTime) < 0) {
                 _backgroundObject.setY(_backgroundObject.getY() + (float) (_bgSpeed * deltaTime));
             }
@@ -182,22 +253,97 @@ public abstract class BaseLogic implements es.ucm.gdv.engine.Logic {
         if(_flashObject.isActive()){
             fadeOut(_flashObject, deltaTime);
         }
+        endSection();
     }
 
     /**
      * En cada frame pinta el fondo con un clear y
-     * renderiza los gameObjects activoss
+     * renderiza los gameObjects activos capa a capa
+     *
+     * Los gameObjects se pintan en un lote para que el motor agrupe
+     * los que comparten imagen (por ejemplo las particulas)
+     *
+     * Los objetos que se mueven (fondo, bolas y particulas) se pintan adelantados
+     * la fraccion de paso que ha pasado desde el ultimo update, repitiendo su
+     * ultimo desplazamiento. Si el bucle hace un frame sin updates se siguen moviendo
+     * en vez de quedarse quietos y dar un salto doble en el siguiente
+     *
+     * @param alpha fracción de paso desde el último update
      */
     @Override
-    public void render() {
-        _graphics.clear(_backgroundColors[_backgroundColorIndex]);
+    public void render(double alpha) {
+        if (_profiler != null)
+            _profiler.nextFrame();
+        beginSection("render");
+        _graphics.clear(_backgroundColors[getSession().getBackgroundColorIndex()]);
+
+        _graphics.beginBatch();
+        _scene.render(_graphics, (float) alpha);
+        _graphics.endBatch();
+        endSection();
+    }
 
-        for(GameObject g : _gameObjects){
-            if(g.isActive())
-                g.drawSprite(_graphics);
-        }
+
+    /**
+     * Devuelve la partida a la que pertenece el estado. Si no se ha asignado
+     * ninguna se crea una nueva
+     *
+     * @return Partida
+     */
+    public Session getSession() {
+        if (_session == null)
+            _session = new Session();
+        return _session;
     }
 
+    /**
+     * Asigna la partida a la que pertenece el estado. Hay que llamarlo antes de init
+     *
+     * @param session Partida
+     */
+    public void setSession(Session session) {
+        _session = session;
+    }
+
+    /**
+     * Abre una seccion del perfilador, si se esta perfilando
+     *
+     * @param name Nombre de la seccion
+     */
+    protected void beginSection(String name) {
+        if (_profiler != null)
+            _profiler.begin(name);
+    }
+
+    /**
+     * Cierra la ultima seccion abierta del perfilador, si se esta perfilando
+     */
+    protected void endSection() {
+        if (_profiler != null)
+            _profiler.end();
+    }
+
+    /**
+     * Indica si el estado usa el repintado parcial. Solo compensa en las pantallas
+     * en las que casi todo esta quieto, las demas lo dejan desactivado
+     *
+     * @return true si solo se repinta lo que cambia
+     */
+    protected boolean usesDirtyRendering() {
+        return false;
+    }
+
+    /**
+     * Añade un objeto a una capa de la escena, haciendo que marque en la region
+     * modificada del frame todo lo que cambie de el
+     *
+     * @param g GameObject a añadir
+     * @param layer Capa en la que se pinta
+     */
+    protected void addGameObject(GameObject g, Layer layer) {
+        g.setDirtyRegion(_graphics.getDirtyRegion());
+        _scene.add(g, layer);
+    }
 
     /**
      * Metodo para manejar los inputs, las logicas lo implementan
@@ -209,21 +355,27 @@ public abstract class BaseLogic implements es.ucm.gdv.engine.Logic {
      * Metodo que actualiza los sprites de los objetos en ScoreObjects en base a la puntuacion actual
      */
     protected void updateScoreObjects() {
-        int aux = _score;
+        int aux = getSession().getScore();
         int digit;
 
+        // Los sprites de los digitos se crean una sola vez y se reutilizan
+        if (_digitSprites == null) {
+            _digitSprites = new Sprite[10];
+            for (int d = 0; d < 10; d++)
+                _digitSprites[d] = new Sprite(_graphics.newImage("Sprites/scoreFont.png"),
+                        getLetterRect((char) (d + '0')));
+        }
+
         // Primer digito (se pinta aunque sea 0)
         digit = aux % 10;
-        _scoreObjects.get(0).setSprite(new Sprite(_graphics.newImage("Sprites/scoreFont.png"),
-                getLetterRect((char) (digit + '0'))));
+        _scoreObjects.get(0).setSprite(_digitSprites[digit]);
         int i = 1;
         // El resto de digitos (no se pintan si son 0)
         while (i < _maxScoreDigits && aux >= 10) {
             aux = aux / 10;
             digit = aux % 10;
 
-            _scoreObjects.get(i).setSprite(new Sprite(_graphics.newImage("Sprites/scoreFont.png"),
-                    getLetterRect((char) (digit + '0'))));
+            _scoreObjects.get(i).setSprite(_digitSprites[digit]);
 
             _scoreObjects.get(i).setActive(true);
             i++;
@@ -302,30 +454,30 @@ public abstract class BaseLogic implements es.ucm.gdv.engine.Logic {
     /**
      * Metodo que actualiza el estado del juego (cambia la logica) cuando nextGameState difiera
      * del actual
+     *
+     * El nuevo estado no se inicializa aqui, sino que se pasa por el estado de carga
+     * para que sus imagenes se decodifiquen en segundo plano
      */
     protected void updateGameState(){
-        if(_nextGameState != _gameState)
-        switch(_nextGameState){
-            case Menu:
-                Menu menu = new Menu();
-                menu.init(_game);
-                _game.setLogic(menu);
-                break;
-            case Controls:
-                Controls controls = new Controls();
-                controls.init(_game);
-                _game.setLogic(controls);
-                break;
-            case Demo:
-                Demo demo = new Demo();
-                demo.init(_game);
-                _game.setLogic(demo);
-                break;
-            case GameOver:
-                GameOver over = new GameOver();
-                over.init(_game);
-                _game.setLogic(over);
-                break;
+        if(_nextGameState != _gameState) {
+            BaseLogic next = null;
+            switch (_nextGameState) {
+                case Menu:
+                    next = new Menu();
+                    break;
+                case Controls:
+                    next = new Controls();
+                    break;
+                case Demo:
+                    next = new Demo();
+                    break;
+                case GameOver:
+                    next = new GameOver();
+                    break;
+            }
+            // El siguiente estado sigue en la misma partida
+            next.setSession(getSession());
+            Loading.start(_game, next);
         }
     }
 
@@ -2,6 +2,7 @@ package es.ucm.gdv.switchdash;
 
 import java.util.ArrayList;
 
+import es.ucm.gdv.engine.AssetManifest;
 import es.ucm.gdv.engine.Game;
 import es.ucm.gdv.engine.Input;
 import es.ucm.gdv.engine.Rect;
@@ -23,6 +24,19 @@ public class Controls extends BaseLogic{
     private int _instructionsY = 768;
     private int _tapToPlayY = 1464;
 
+    /**
+     * Devuelve el manifiesto con las imagenes del estado
+     *
+     * @return manifiesto de recursos
+     */
+    @Override
+    public AssetManifest getManifest() {
+        return super.getManifest()
+                .addImage("Sprites/howToPlay.png")
+                .addImage("Sprites/instructions.png")
+                .addImage("Sprites/tapToPlay.png");
+    }
+
     /**
      * Inicializa lo necesario para el funcionamiento del estado, crea y coloca los
      * objetos con las imagenes
@@ -42,23 +56,23 @@ public class Controls extends BaseLogic{
             _howToPlayObject = new GameObject(new Sprite(_graphics.newImage("Sprites/howToPlay.png")));
             _howToPlayObject.setCoords(_screenW/2 - _howToPlayObject.getW()/2,
                     _howToPlayY);
-            _gameObjects.add(_howToPlayObject);
+            addGameObject(_howToPlayObject, Layer.Playfield);
 
             _instructionsObject = new GameObject(new Sprite(_graphics.newImage("Sprites/instructions.png")));
             _instructionsObject.setCoords(_screenW/2 - _instructionsObject.getW()/2,
                     _instructionsY);
-            _gameObjects.add(_instructionsObject);
+            addGameObject(_instructionsObject, Layer.Playfield);
 
             _tapToPlayObject = new GameObject(new Sprite(_graphics.newImage("Sprites/tapToPlay.png")));
             _tapToPlayObject.setCoords(_screenW/2 - _tapToPlayObject.getW()/2,
                     _tapToPlayY);
-            _gameObjects.add(_tapToPlayObject);
+            addGameObject(_tapToPlayObject, Layer.Playfield);
 
             // Creamos el objeto del boton de salir
             _exitObject = new GameObject(new Sprite(_graphics.newImage("Sprites/buttons.png"),
                     new Rect(ButtonType.Exit.ordinal() *_buttonSize,0,_buttonSize,_buttonSize)));
             _exitObject.setCoords(_screenW - (_buttonSize + _buttonSize / 3), _buttonY);
-            _gameObjects.add(_exitObject);
+            addGameObject(_exitObject, Layer.UI);
             return error;
 
         }
@@ -84,12 +98,25 @@ public class Controls extends BaseLogic{
         checkInput();
     }
 
+    /**
+     * La pantalla esta casi quieta (solo cambian el fondo y algun alpha),
+     * asi que solo se repinta lo que cambia
+     *
+     * @return true
+     */
+    @Override
+    protected boolean usesDirtyRendering() {
+        return true;
+    }
+
     /**
      * Renderizado, llama al de BaseLogic
+     *
+     * @param alpha fracción de paso desde el último update
      */
     @Override
-    public void render () {
-        super.render();
+    public void render(double alpha) {
+        super.render(alpha);
     }
 
     /**
@@ -99,7 +126,8 @@ public class Controls extends BaseLogic{
     @Override
     public void checkInput() {
         ArrayList<Input.TouchEvent> events = _input.getTouchEvents();
-        for (Input.TouchEvent e : events) {
+        for (int i = 0; i < events.size(); i++) {
+            Input.TouchEvent e = events.get(i);
             switch (e.getEventType()) {
                 case PRESSED:
                     // El boton de salir devuelve al menu
@@ -2,6 +2,7 @@ package es.ucm.gdv.switchdash;
 
 import java.util.ArrayList;
 
+import es.ucm.gdv.engine.AssetManifest;
 import es.ucm.gdv.engine.Game;
 import es.ucm.gdv.engine.Image;
 import es.ucm.gdv.engine.Input;
@@ -17,9 +18,9 @@ public class Demo extends BaseLogic{
     // Barra que controla el jugador
     private BarObject _barObject;
 
-    // Sendas listas para particulas y bolas
+    // Lista de particulas y anillo de bolas
     private ArrayList<Particle> _particles;
-    private ArrayList<BallObject> _ballObjects;
+    private BallRing _balls;
 
     // Imagen de las bolas y particulas
     private Image _ballsImage;
@@ -62,6 +63,52 @@ public class Demo extends BaseLogic{
     // Valor maximo del alpha
     private float maxAlpha = 255;
 
+    // Numeros aleatorios de la rafaga de particulas de un punto
+    private float[] _burstRandoms;
+
+    // Bolas que han llegado a la barra desde el inicio
+    private int _ballsReached = 0;
+
+    // Bola para la que el bot ya ha decidido si falla, y su decision
+    private int _botBall = -1;
+    private boolean _botMiss = false;
+
+    /**
+     * Constructora con la configuracion normal del juego
+     */
+    public Demo() {
+    }
+
+    /**
+     * Constructora con la carga configurable, para los escenarios de estres
+     *
+     * @param nBalls Numero de bolas que coexisten
+     * @param nParticles Particulas que se generan con cada punto
+     * @param ballSpeed Velocidad inicial de las bolas
+     * @param ballSeparation Separacion vertical entre bolas
+     * @param ballSpIncrease Incremento de velocidad cada ballsPerIncrease bolas (0 para velocidad fija)
+     */
+    protected Demo(int nBalls, int nParticles, float ballSpeed, int ballSeparation, float ballSpIncrease) {
+        _nBalls = nBalls;
+        _nParticles = nParticles;
+        _ballSpeed = ballSpeed;
+        _ballSeparation = ballSeparation;
+        _ballSpIncrease = ballSpIncrease;
+    }
+
+    /**
+     * Devuelve el manifiesto con las imagenes del estado
+     *
+     * @return manifiesto de recursos
+     */
+    @Override
+    public AssetManifest getManifest() {
+        return super.getManifest()
+                .addImage("Sprites/balls.png")
+                .addImage("Sprites/players.png")
+                .addImage("Sprites/scoreFont.png");
+    }
+
     /**
      * Inicializa lo necesario para el funcionamiento del estado
      * (Randominza el color del fondo, coloca bolas y objetos ocn puntuacion etc)
@@ -74,17 +121,17 @@ public class Demo extends BaseLogic{
     public boolean init(Game game) {
 
         // Obtenemos un color de fondo aleatorio entre los del array
-        _backgroundColorIndex = (int)(Math.random()*8);
+        getSession().setBackgroundColorIndex(game.getRandom().nextInt(8));
         boolean error = super.init(game);
-        // Inicializamos arrays de bolas y particulas
-        _ballObjects = new ArrayList<BallObject>();
+        // Inicializamos la lista de particulas
         _particles = new ArrayList<Particle>();
+        _burstRandoms = new float[_nParticles * Particle.RANDOMS];
 
         try {
             // Asignamos estado de juego
             _nextGameState = _gameState = GameState.Demo;
             // Reseteamos la puntuacion
-            _score = 0;
+            getSession().setScore(0);
 
             // Creamos la imagen de la que se sacan las bolas y particulas
             _ballsImage = _graphics.newImage("Sprites/balls.png");
@@ -98,18 +145,19 @@ public class Demo extends BaseLogic{
 
             // Creamos la barra
             _barObject = new BarObject(_graphics.newImage("Sprites/players.png"), _screenW);
-            _gameObjects.add(_barObject);
+            addGameObject(_barObject, Layer.Playfield);
 
             // Creamos nBalls bolas y asignamos transform
+            BallObject[] balls = new BallObject[_nBalls];
             for(int i = 0; i < _nBalls; i++) {
-                BallObject ball = new BallObject(_ballType, _whiteBallSprite, _blackBallSprite,
+                balls[i] = new BallObject(_game.getRandom(), _ballType, _whiteBallSprite, _blackBallSprite,
                         new Rect(((_screenW / 2) - (_realBallSize / 2)), 0, _realBallSize, _realBallSize));
-                _gameObjects.add(ball);
-                _ballObjects.add(ball);
+                addGameObject(balls[i], Layer.Playfield);
             }
 
-            // Colocamos las bolas en sus posiciones
-            repositionBalls();
+            // Colocamos las bolas en sus posiciones, en columna por encima de la pantalla
+            _balls = new BallRing(balls, _ballSeparation);
+            _balls.reset(-_realBallSize);
 
             // Colocamos los objetos responsables de mostras la puntuacion
             for(int i = 0; i < _maxScoreDigits; i++){
@@ -141,61 +189,65 @@ public class Demo extends BaseLogic{
     public void update(double deltaTime) {
         super.update(deltaTime);
 
-        // Para cada bola comprobamos si ha alcanzado la barra
-        for (BallObject ball : _ballObjects) {
-            // Si ha impactado con la barra
-            if ((ball.getY() + _realBallSize) >= (_barObject.getY())) {
-                // y = la posicion de la bola mas alta + dist entre bolas
-                // asi colocamos la bola que ha impactado por encima de esta
-                float y = 0;
-                for (BallObject b : _ballObjects) {
-                    y = Math.min(y, b.getY());
+        beginSection("bolas");
+        // Solo la bola mas baja puede alcanzar la barra: se comprueba esa y, si ha
+        // llegado, la siguiente (a mucha velocidad pueden llegar varias en un frame)
+        for (int i = 0; i < _balls.size(); i++) {
+            BallObject ball = _balls.getNext();
+            if ((_balls.getScreenY(ball) + _realBallSize) < (_barObject.getY()))
+                break;
+            _ballsReached++;
+
+            // Si la bola es de color distinto a la barra
+            if (_barObject.getColor() != ball.getColor()) {
+                //game over
+                _nextGameState = GameState.GameOver;
+            } // Si hemos anotado un punto
+            else {
+                // Creamos particulas, con los numeros aleatorios de toda la rafaga de golpe
+                _game.getRandom().fill(_burstRandoms, 0, _burstRandoms.length);
+                for (int k = 0; k < _nParticles; k++) {
+                    spawnParticle(ball.getColor(), _barObject.getY(), k * Particle.RANDOMS);
                 }
-                y -= _ballSeparation;
-
-
-                // Si la bola es de color distinto a la barra
-                if (_barObject.getColor() != ball.getColor()) {
-                    //game over
-                    _nextGameState = GameState.GameOver;
-                } // Si hemos anotado un punto
-                else {
-                    // Creamos particulas
-                    for (int i = 0; i < _nParticles; i++) {
-                        spawnParticle(ball.getColor(), _barObject.getY());
-                    }
-                    // Actualizamos puntuacion
-                    _score++;
-                    updateScoreObjects();
-                    // Gestionamos el incremento de velocidad
-                    _ballCounter++;
-                    if (_ballCounter >= _ballsPerIncrease) {
-                        _ballSpeed += _ballSpIncrease;
-                        _ballCounter = 0;
-                    }
+                // Actualizamos puntuacion
+                getSession().setScore(getSession().getScore() + 1);
+                updateScoreObjects();
+                // Gestionamos el incremento de velocidad
+                _ballCounter++;
+                if (_ballCounter >= _ballsPerIncrease) {
+                    _ballSpeed += _ballSpIncrease;
+                    _ballCounter = 0;
                 }
-                // Reiniciamos la bola
-                ball.resetBall(y);
-            } // Las bolas que no han impactado avanzan
-            else {
-                ball.setY(ball.getY() + (float) (_ballSpeed * deltaTime));
             }
+            // Reiniciamos la bola encima de la mas alta
+            _balls.respawnNext();
         }
+        // Todas las bolas avanzan a la vez
+        _balls.scroll((float) (_ballSpeed * deltaTime));
+        endSection();
 
+        beginSection("particulas");
         // Llamamos al update de las particulas activas
-        for (Particle p : _particles) {
+        for (int i = 0; i < _particles.size(); i++) {
+            Particle p = _particles.get(i);
             if (p.isActive()) p.update(deltaTime);
         }
+        endSection();
+
+        beginSection("input");
         // comprobacion de input
         checkInput();
+        endSection();
     } // update
 
     /**
      * Renderizado, llama al de BaseLogic
+     *
+     * @param alpha fracción de paso desde el último update
      */
     @Override
-    public void render() {
-        super.render();
+    public void render(double alpha) {
+        super.render(alpha);
     } // render
 
     /**
@@ -204,7 +256,8 @@ public class Demo extends BaseLogic{
      */
     public void checkInput() {
         ArrayList<Input.TouchEvent> events = _input.getTouchEvents();
-        for(Input.TouchEvent e : events) {
+        for(int i = 0; i < events.size(); i++) {
+            Input.TouchEvent e = events.get(i);
             switch (e.getEventType()) {
                 case PRESSED:
                     _barObject.swapSprite();
@@ -228,34 +281,71 @@ public class Demo extends BaseLogic{
      * crea una nueva
      * @param color Color de la particla
      * @param y Coordenada y de la particula
+     * @param offset Posicion de sus numeros aleatorios en la rafaga
      */
-    private void spawnParticle(Color color, float y){
+    private void spawnParticle(Color color, float y, int offset){
         boolean found = false;
         // buscamos una particula inactiva
-        for(Particle p : _particles){
+        for(int i = 0; i < _particles.size(); i++){
+            Particle p = _particles.get(i);
             if(!p.isActive()) {
-                p.Respawn(color, y);
+                p.Respawn(color, y, _burstRandoms, offset);
                 found = true;
                 break;
             }
         }
         // si no la hay creamos una y la añadimos a las listas
         if(!found) {
-            Particle aux = new Particle(_ballType, color, _whiteBallSprite, _blackBallSprite, _screenW, y);
+            Particle aux = new Particle(_ballType, color, _whiteBallSprite, _blackBallSprite, _screenW, y,
+                    _burstRandoms, offset);
             _particles.add(aux);
-            _gameObjects.add(aux);
+            addGameObject(aux, Layer.Particles);
         }
     }
 
     /**
-     * Coloca a todas las bolas en su posicion inicial
+     * Devuelve la bola mas cercana a la barra, la siguiente que va a llegar
+     *
+     * @return Bola mas baja
+     */
+    BallObject getNextBall() {
+        return _balls.getNext();
+    }
+
+    /**
+     * Bot que juega la partida: si la siguiente bola no es del color de la barra,
+     * mete una pulsacion por el Input como si fuera del jugador. El evento se procesa
+     * al final del update, asi que hay que llamarlo antes de el
+     *
+     * Para cada bola decide una sola vez, con el generador de la partida, si la deja
+     * pasar a proposito, de modo que la partida es reproducible a partir de la semilla
+     *
+     * @param errorRate Probabilidad de no corregir el color de cada bola (0 no falla nunca)
+     *
+     * @return true si ha pulsado
      */
-    private void repositionBalls(){
-        int aux = 0;
-        for(BallObject b : _ballObjects) {
-            float y = ((-1) * (b.getSprite().getRect()._h *1 )) - (_ballSeparation * aux);
-            b.setY(y);
-            aux++;
+    boolean autoTap(double errorRate) {
+        BallObject next = getNextBall();
+        if (next == null)
+            return false;
+
+        if (_botBall != _ballsReached) {
+            _botBall = _ballsReached;
+            _botMiss = errorRate > 0 && _game.getRandom().nextDouble() < errorRate;
         }
+        if (_botMiss || next.getColor() == _barObject.getColor())
+            return false;
+
+        _input.setTouchEvent(new Input.TouchEvent(Input.TouchEventType.PRESSED, 0, 0, 0));
+        return true;
+    }
+
+    /**
+     * Devuelve la barra del jugador
+     *
+     * @return Barra
+     */
+    BarObject getBar() {
+        return _barObject;
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package es.ucm.gdv.switchdash;
 
+import es.ucm.gdv.engine.DirtyRegion;
 import es.ucm.gdv.engine.Graphics;
 import es.ucm.gdv.engine.Rect;
 import es.ucm.gdv.engine.Sprite;
@@ -12,10 +13,21 @@ import es.ucm.gdv.engine.Sprite;
 public class GameObject {
 
     private Rect _transform;
+    // Transform con el que se pinta fuera de su posicion (al extrapolar)
+    private Rect _drawRect = new Rect(0, 0, 0, 0);
     private float _alpha = 255;
     private Sprite _sprite;
     private boolean _active = true;
 
+    // Region donde se marca lo que ocupaba el objeto antes y despues de cada cambio
+    // (null si no se usa el repintado parcial)
+    private DirtyRegion _dirtyRegion = null;
+
+    // Escena a la que pertenece el objeto, su capa y su orden de insercion en ella
+    private Scene _scene = null;
+    private Layer _layer = null;
+    private int _sceneOrder = 0;
+
     /**
      * Constructora vacia, Rect con valores 0 y sprite a null
      */
@@ -116,57 +128,68 @@ public class GameObject {
      * Asigna la coordenada x
      * @param x Coordenada x
      */
-    public void setX(float x) { _transform._x = x; }
+    public void setX(float x) { markDirty(); _transform._x = x; markDirty(); }
 
     /**
      * Asigna la coordenada y
      * @param y Coordenada y
      */
-    public void setY(float y) { _transform._y = y; }
+    public void setY(float y) { markDirty(); _transform._y = y; markDirty(); }
 
     /**
      * Asigna las coordenadas x e y
      * @param x Coordenada x
      * @param y Coordenada y
      */
-    public void setCoords(float x, float y) { _transform._x = x; _transform._y = y;}
+    public void setCoords(float x, float y) { markDirty(); _transform._x = x; _transform._y = y; markDirty(); }
 
     /**
      * Asigna la anchura
      * @param w Anchura
      */
-    public void setW(float w) { _transform._w = w; }
+    public void setW(float w) { markDirty(); _transform._w = w; markDirty(); }
 
     /**
      * Asigna la altura
      * @param h Altura
      */
-    public void setH(float h) { _transform._h = h; }
+    public void setH(float h) { markDirty(); _transform._h = h; markDirty(); }
 
     /**
      * Asigna anchura y altura
      * @param w Anchura
      * @param h Altura
      */
-    public void setSize(float w, float h) { _transform._w = w; _transform._h = h;}
+    public void setSize(float w, float h) { markDirty(); _transform._w = w; _transform._h = h; markDirty(); }
 
     /**
      * Asigna el transform del GameObject
      * @param transform Transform
      */
-    public void setTransform(Rect transform) { _transform = transform; }
+    public void setTransform(Rect transform) { markDirty(); _transform = transform; markDirty(); }
 
     /**
      * Asigna el sprite del GameObject
      * @param sprite Sprite
      */
-    public void setSprite(Sprite sprite) { _sprite = sprite; }
+    public void setSprite(Sprite sprite) {
+        if (sprite != _sprite) {
+            markDirty();
+            _sprite = sprite;
+            markDirty();
+        }
+    }
 
     /**
      * Asigna el valor del alpha (transparencia)
      * @param alpha Transparencia
      */
-    public void setAlpha(float alpha){ _alpha = alpha; }
+    public void setAlpha(float alpha){
+        if (alpha != _alpha) {
+            _alpha = alpha;
+            markDirty();
+        }
+    }
 
     /**
      * Dibuja el sprite dle GameObject
@@ -174,12 +197,46 @@ public class GameObject {
      */
     public void drawSprite(Graphics graphics) {if(_sprite!=null)_sprite.draw(graphics, _transform, _alpha);}
 
+    /**
+     * Dibuja el sprite del GameObject una fraccion de paso despues del ultimo update.
+     * Los objetos que se mueven lo sobrescriben para extrapolar su posicion con su
+     * ultimo desplazamiento, los demas se pintan donde estan
+     * @param graphics Gestor de graficos
+     * @param t Fraccion de paso (entre 0 y 1) desde el ultimo update
+     */
+    public void drawSprite(Graphics graphics, float t) {drawSprite(graphics);}
+
+    /**
+     * Dibuja el sprite del GameObject en otra posicion, sin moverlo
+     * @param graphics Gestor de graficos
+     * @param x Coordenada x
+     * @param y Coordenada y
+     */
+    protected void drawSpriteAt(Graphics graphics, float x, float y) {
+        if (_sprite == null)
+            return;
+        _drawRect._x = x;
+        _drawRect._y = y;
+        _drawRect._w = _transform._w;
+        _drawRect._h = _transform._h;
+        _sprite.draw(graphics, _drawRect, _alpha);
+    }
+
     /**
      * Asigna si el GameObject esta activo
      * @param b Estado de actividad
      */
     public void setActive(boolean b){
-        _active = b;
+        if (b != _active) {
+            // Se marca mientras esta activo, antes de desactivarlo o despues de activarlo
+            markDirty();
+            _active = b;
+            markDirty();
+
+            // La escena solo guarda los objetos activos de cada capa
+            if (_scene != null)
+                _scene.onActiveChanged(this);
+        }
     }
 
     /**
@@ -189,4 +246,48 @@ public class GameObject {
     public boolean isActive(){
         return _active;
     }
+
+    /**
+     * Asigna la region donde el objeto marca lo que cambia, para el repintado parcial
+     * @param dirtyRegion Region modificada del frame (null para no marcar)
+     */
+    public void setDirtyRegion(DirtyRegion dirtyRegion) { _dirtyRegion = dirtyRegion; }
+
+    /**
+     * Asigna la escena a la que pertenece el objeto (la llama Scene.add)
+     * @param scene Escena
+     * @param layer Capa en la que se pinta
+     * @param order Orden de insercion en la escena
+     */
+    void setScene(Scene scene, Layer layer, int order) {
+        _scene = scene;
+        _layer = layer;
+        _sceneOrder = order;
+    }
+
+    /**
+     * Devuelve la escena a la que pertenece el objeto
+     * @return Escena (null si no se ha añadido a ninguna)
+     */
+    public Scene getScene() { return _scene; }
+
+    /**
+     * Devuelve la capa de la escena en la que se pinta el objeto
+     * @return Capa
+     */
+    public Layer getLayer() { return _layer; }
+
+    /**
+     * Devuelve el orden de insercion del objeto en su escena
+     * @return Orden de insercion
+     */
+    int getSceneOrder() { return _sceneOrder; }
+
+    /**
+     * Marca como modificado lo que ocupa el objeto ahora mismo, si se esta pintando
+     */
+    private void markDirty() {
+        if (_dirtyRegion != null && _active && _sprite != null)
+            _dirtyRegion.add(_transform);
+    }
 }
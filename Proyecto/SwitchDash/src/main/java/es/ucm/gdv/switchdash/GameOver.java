@@ -2,6 +2,7 @@ package es.ucm.gdv.switchdash;
 
 import java.util.ArrayList;
 
+import es.ucm.gdv.engine.AssetManifest;
 import es.ucm.gdv.engine.Game;
 import es.ucm.gdv.engine.Input;
 import es.ucm.gdv.engine.Rect;
@@ -26,6 +27,19 @@ public class GameOver extends BaseLogic {
     private int _gameOverY = 364;
     private int _playAgainY = 1396;
 
+    /**
+     * Devuelve el manifiesto con las imagenes del estado
+     *
+     * @return manifiesto de recursos
+     */
+    @Override
+    public AssetManifest getManifest() {
+        return super.getManifest()
+                .addImage("Sprites/scoreFont.png")
+                .addImage("Sprites/gameOver.png")
+                .addImage("Sprites/playAgain.png");
+    }
+
     /**
      * Inicializa lo necesario para el funcionamiento del estado, crea y coloca los
      * objetos con las imagenes, ademas de lo relativo a la puntuacion y su texto
@@ -41,7 +55,7 @@ public class GameOver extends BaseLogic {
         try {
             _nextGameState = _gameState = GameState.GameOver;
             // Numero de digitos actual de la puntuacion (para pintarla centrada)
-            int _currentScoreDigits = String.valueOf(_score).length();
+            int _currentScoreDigits = String.valueOf(getSession().getScore()).length();
 
             // Inicializamos lista para el texto de debajo de los puntos y los creamos
             _pointTextObjects = new ArrayList<GameObject>();
@@ -49,19 +63,19 @@ public class GameOver extends BaseLogic {
                 GameObject aux = new GameObject(new Sprite(_graphics.newImage("Sprites/scoreFont.png"),
                             getLetterRect(_pointsString.charAt(i))));
                 _pointTextObjects.add(aux);
-                _gameObjects.add(aux);
+                addGameObject(aux, Layer.Playfield);
             }
 
             // Creamos imagen de GameOver y volver a jugar
             _gameOverObject = new GameObject(new Sprite(_graphics.newImage("Sprites/gameOver.png")));
             _gameOverObject.setCoords(_screenW/2 - _gameOverObject.getW()/2,
                     _gameOverY);
-            _gameObjects.add(_gameOverObject);
+            addGameObject(_gameOverObject, Layer.Playfield);
 
             _playAgainObject = new GameObject(new Sprite(_graphics.newImage("Sprites/playAgain.png")));
             _playAgainObject.setCoords(_screenW/2 - _playAgainObject.getW()/2,
                     _playAgainY);
-            _gameObjects.add(_playAgainObject);
+            addGameObject(_playAgainObject, Layer.Playfield);
 
             // Colocamos los objetos que pintan la puntuacion
             for(int i = 0; i < _currentScoreDigits; i++){
@@ -105,12 +119,25 @@ public class GameOver extends BaseLogic {
         checkInput();
     }
 
+    /**
+     * La pantalla esta casi quieta (solo cambian el fondo y algun alpha),
+     * asi que solo se repinta lo que cambia
+     *
+     * @return true
+     */
+    @Override
+    protected boolean usesDirtyRendering() {
+        return true;
+    }
+
     /**
      * Renderizado, llama al de BaseLogic
+     *
+     * @param alpha fracción de paso desde el último update
      */
     @Override
-    public void render () {
-        super.render();
+    public void render(double alpha) {
+        super.render(alpha);
     }
 
     /**
@@ -120,7 +147,8 @@ public class GameOver extends BaseLogic {
     @Override
     public void checkInput() {
         ArrayList<Input.TouchEvent> events = _input.getTouchEvents();
-        for (Input.TouchEvent e : events) {
+        for (int i = 0; i < events.size(); i++) {
+            Input.TouchEvent e = events.get(i);
             switch (e.getEventType()) {
                 case PRESSED:
                     // El boton de controles lleva al estado controles
@@ -0,0 +1,139 @@
+package es.ucm.gdv.switchdash;
+
+import es.ucm.gdv.engine.AssetLoader;
+import es.ucm.gdv.engine.Game;
+import es.ucm.gdv.engine.Graphics;
+import es.ucm.gdv.engine.Image;
+import es.ucm.gdv.engine.Rect;
+
+/**
+ * Estado ligero que se muestra mientras se cargan en segundo plano las imagenes
+ * del siguiente estado. Solo pinta el color de fondo y una barra de progreso,
+ * y cuando la carga termina inicializa el siguiente estado y le cede el control
+ */
+public class Loading implements es.ucm.gdv.engine.Logic {
+
+    // Tiempo maximo (ms) que se espera a la carga antes de mostrar la pantalla de carga,
+    // si las imagenes ya estaban en la cache el cambio de estado es inmediato
+    private static final long _maxWait = 15;
+
+    // Gestores de inicio y bucle de juego y graficos
+    private Game _game;
+    private Graphics _graphics;
+
+    // Estado que se inicializa al terminar la carga
+    private BaseLogic _next;
+
+    // Carga en curso de las imagenes del siguiente estado
+    private AssetLoader.Handle _handle;
+
+    // Imagen con la que se pinta la barra de progreso
+    private Image _barImage;
+
+    // Variables relativas a la barra de progreso
+    private float _barWidth = 648;
+    private float _barHeight = 24;
+
+    /**
+     * Constructora
+     *
+     * @param next estado que se inicializa al terminar la carga
+     */
+    public Loading(BaseLogic next) {
+        _next = next;
+    }
+
+    /**
+     * Lanza la carga del estado dado y pone como logica activa la pantalla de carga,
+     * o directamente el estado si sus imagenes se cargan en muy poco tiempo
+     *
+     * @param game controlador del juego
+     * @param next estado a cargar
+     *
+     * @return booleano de control si ha habido algún fallo durante la inicialización
+     */
+    public static boolean start(Game game, BaseLogic next) {
+        Loading loading = new Loading(next);
+        if (!loading.init(game))
+            return false;
+
+        if (loading._handle.await(_maxWait))
+            return loading.finish();
+
+        game.setLogic(loading);
+        return true;
+    }
+
+    /**
+     * Inicializa la carga en segundo plano de las imagenes del siguiente estado
+     *
+     * @param game necesita acceso al controlador del juego
+     *
+     * @return booleano de control si ha habido algún fallo durante la inicialización
+     */
+    @Override
+    public boolean init(Game game) {
+        _game = game;
+        _graphics = game.getGraphics();
+
+        // La barra cambia en cada frame, se repinta todo
+        _graphics.setDirtyRendering(false);
+
+        // La primera vez empaquetamos todos los sprites en el atlas, lo que ya deja
+        // cargadas las imagenes del siguiente estado. Despues solo cargamos su manifiesto
+        if (_graphics.getAtlas() == null)
+            _handle = _graphics.getAssetLoader().buildAtlas(BaseLogic.getAtlasManifest());
+        else
+            _handle = _graphics.getAssetLoader().load(_next.getManifest());
+
+        // La imagen de la barra es muy pequeña, la cargamos directamente
+        _barImage = _graphics.newImage("Sprites/white.png");
+        return true;
+    }
+
+    /**
+     * Cuando la carga ha terminado inicializa el siguiente estado y lo pone como activo
+     *
+     * @param deltaTime tiempo en segundos desde el frame anterior
+     */
+    @Override
+    public void update(double deltaTime) {
+        // Las pulsaciones durante la carga se descartan, sin contar como frame
+        // de la partida para que grabar y repetir no dependan de lo que tarde
+        _game.getInput().discardTouchEvents();
+
+        if (_handle.isDone())
+            finish();
+    }
+
+    /**
+     * Pinta el color de fondo y la barra de progreso
+     *
+     * @param alpha fracción de paso desde el último update
+     */
+    @Override
+    public void render(double alpha) {
+        _graphics.clear(_next._backgroundColors[_next.getSession().getBackgroundColorIndex()]);
+
+        if (_barImage != null) {
+            float x = (_graphics.getCanvasWidth() - _barWidth) / 2.0f;
+            float y = (_graphics.getCanvasHeight() - _barHeight) / 2.0f;
+            Rect source = new Rect(0, 0, _barImage.getWidth(), _barImage.getHeight());
+            // Fondo de la barra semitransparente y progreso opaco
+            _graphics.drawImage(_barImage, new Rect(x, y, _barWidth, _barHeight), source, 60);
+            _graphics.drawImage(_barImage, new Rect(x, y, _barWidth * _handle.getProgress(), _barHeight),
+                    source, 255);
+        }
+    }
+
+    /**
+     * Inicializa el siguiente estado (sus imagenes ya estan en la cache) y le cede el control
+     *
+     * @return booleano de control si ha habido algún fallo durante la inicialización
+     */
+    private boolean finish() {
+        boolean ok = _next.init(_game);
+        _game.setLogic(_next);
+        return ok;
+    }
+}
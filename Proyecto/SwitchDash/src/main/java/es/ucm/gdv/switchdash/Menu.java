@@ -2,6 +2,7 @@ package es.ucm.gdv.switchdash;
 
 import java.util.ArrayList;
 
+import es.ucm.gdv.engine.AssetManifest;
 import es.ucm.gdv.engine.Game;
 import es.ucm.gdv.engine.Input;
 import es.ucm.gdv.engine.Sprite;
@@ -20,6 +21,18 @@ public class Menu extends BaseLogic {
     private int _logoY = 356;
     private int _tapToPlayY = 950;
 
+    /**
+     * Devuelve el manifiesto con las imagenes del estado
+     *
+     * @return manifiesto de recursos
+     */
+    @Override
+    public AssetManifest getManifest() {
+        return super.getManifest()
+                .addImage("Sprites/switchDashLogo.png")
+                .addImage("Sprites/tapToPlay.png");
+    }
+
     /**
      * Inicializa lo necesario para el funcionamiento del estado, crea y coloca los
      * objetos con las imagenes
@@ -31,7 +44,7 @@ public class Menu extends BaseLogic {
     @Override
     public boolean init(Game game) {
         // Al entrar al menu, el color de fondo cambia aleatoriamente
-        _backgroundColorIndex = (int)(Math.random()*8);
+        getSession().setBackgroundColorIndex(game.getRandom().nextInt(8));
         boolean error = super.init(game);
 
         try {
@@ -40,11 +53,11 @@ public class Menu extends BaseLogic {
             //Creamos los objetos con las imagenes del logo y tap to play
             _logoObject = new GameObject(new Sprite(_graphics.newImage("Sprites/switchDashLogo.png")));
             _logoObject.setCoords(_graphics.getCanvasWidth()/2 - _logoObject.getW()/2, _logoY);
-            _gameObjects.add(_logoObject);
+            addGameObject(_logoObject, Layer.Playfield);
 
             _tapToPlayObject = new GameObject(new Sprite(_graphics.newImage("Sprites/tapToPlay.png")));
             _tapToPlayObject.setCoords(_graphics.getCanvasWidth()/2 - _tapToPlayObject.getW()/2, _tapToPlayY);
-            _gameObjects.add(_tapToPlayObject);
+            addGameObject(_tapToPlayObject, Layer.Playfield);
 
             // Activamos el logo de sonido y controles
             _soundObject.setActive(true);
@@ -74,12 +87,25 @@ public class Menu extends BaseLogic {
         checkInput();
     }
 
+    /**
+     * La pantalla esta casi quieta (solo cambian el fondo y algun alpha),
+     * asi que solo se repinta lo que cambia
+     *
+     * @return true
+     */
+    @Override
+    protected boolean usesDirtyRendering() {
+        return true;
+    }
+
     /**
      * Renderizado, llama al de BaseLogic
+     *
+     * @param alpha fracción de paso desde el último update
      */
     @Override
-    public void render () {
-        super.render();
+    public void render(double alpha) {
+        super.render(alpha);
     }
 
     /**
@@ -90,7 +116,8 @@ public class Menu extends BaseLogic {
     public void checkInput() {
 
         ArrayList<Input.TouchEvent> events = _input.getTouchEvents();
-        for(Input.TouchEvent e : events) {
+        for(int i = 0; i < events.size(); i++) {
+            Input.TouchEvent e = events.get(i);
             switch (e.getEventType()) {
                 // Comprobamos las pulsaciones de pantalla, al pulsar el boton de controles cambiamos
                 // el estado a controles, el de sonido alterna entre on y off
@@ -1,5 +1,6 @@
 package es.ucm.gdv.switchdash;
 
+import es.ucm.gdv.engine.Graphics;
 import es.ucm.gdv.engine.Sprite;
 
 /**
@@ -9,6 +10,10 @@ import es.ucm.gdv.engine.Sprite;
  */
 public class Particle extends GameObject{
 
+    // Numeros aleatorios que consume cada Respawn (tamaño, velocidad X y su
+    // sentido, velocidad Y y duracion)
+    public static final int RANDOMS = 5;
+
     // Variables relativas al tamaño
     private int _particleSize = 128;
     private int _minSize = 30;
@@ -26,6 +31,10 @@ public class Particle extends GameObject{
     private float _velX = 0;
     private float _velY = 0;
 
+    // Posicion antes del ultimo update, para extrapolar al pintar
+    private float _prevX = 0;
+    private float _prevY = 0;
+
     // Variables relativa al ciclo de vida
     private float _minDuration = 0.6f;
     private float _maxDuration = 1.2f;
@@ -55,8 +64,11 @@ public class Particle extends GameObject{
      * @param bSprite Sprite con la imagen de la particula negra
      * @param screenW Ancho de la pantalla
      * @param y Coordenada y en la que se crea la particula
+     * @param rnd Numeros aleatorios entre 0 y 1 para el primer Respawn
+     * @param offset Posicion del primero de los RANDOMS numeros que se usan
      */
-    public Particle(BallType type, Color color, Sprite wSprite, Sprite bSprite, int screenW, float y) {
+    public Particle(BallType type, Color color, Sprite wSprite, Sprite bSprite, int screenW, float y,
+                    float[] rnd, int offset) {
         // En un principio se crean inactivas
         setActive(false);
 
@@ -72,33 +84,38 @@ public class Particle extends GameObject{
         updateSprite();
 
         // Llamamos a respawn con el color y la posicion pasados
-        Respawn(color, y);
+        Respawn(color, y, rnd, offset);
     }
 
     /**
      * Asignamos un tamaño aleatorio entre valores minimo y maximo
+     * @param r Numero aleatorio entre 0 y 1
      */
-    public void RandomizeSize(){
-        _randomSize = (int)(Math.random()* (_maxSize-_minSize)) + _minSize;
+    public void RandomizeSize(float r){
+        _randomSize = (int)(r* (_maxSize-_minSize)) + _minSize;
         setSize(_randomSize, _randomSize);
     }
 
     /**
      * Asignamos una velocidad aleatoria para cada coordenada con sus limites correspondientes
      * En el eje X la direccion es aleatoria, mientras que en el Y siempre es hacia arriba
+     * @param rx Numero aleatorio entre 0 y 1 para la velocidad X
+     * @param dir Numero aleatorio entre 0 y 1 para el sentido en X
+     * @param ry Numero aleatorio entre 0 y 1 para la velocidad Y
      */
-    public void RandomizeSpeed(){
-        _velX = (float)((Math.random()*(_maxSpeedX -_minSpeedX)) + _minSpeedX);
-        _velX *= (Math.random() > 0.5f) ? -1 : 1;
-        _velY = -(float)((Math.random()*(_maxSpeedY -_minSpeedY)) + _minSpeedY);
+    public void RandomizeSpeed(float rx, float dir, float ry){
+        _velX = (rx*(_maxSpeedX -_minSpeedX)) + _minSpeedX;
+        _velX *= (dir > 0.5f) ? -1 : 1;
+        _velY = -((ry*(_maxSpeedY -_minSpeedY)) + _minSpeedY);
     }
 
     /**
      *  Asignamos una duracion aleatoria a la particula dentro de los limites
      *  y calculamos el decremento de alpha
+     * @param r Numero aleatorio entre 0 y 1
      */
-    public void RandomizeDuration(){
-        _duration = (float)(Math.random()*(_maxDuration -_minDuration) + _minDuration);
+    public void RandomizeDuration(float r){
+        _duration = r*(_maxDuration -_minDuration) + _minDuration;
         _alphaDecr = _maxAlpha/_duration;
     }
 
@@ -108,13 +125,17 @@ public class Particle extends GameObject{
      * aleatorios a sus caracteristicas y reinicia su ciclo de vida
      * @param color Color de la particula
      * @param y Coordenada y en que se coloca
+     * @param rnd Numeros aleatorios entre 0 y 1 (de una rafaga rellenada de golpe)
+     * @param offset Posicion del primero de los RANDOMS numeros que se usan
      */
-    public void Respawn(Color color, float y){
+    public void Respawn(Color color, float y, float[] rnd, int offset){
         setColor(color);
-        RandomizeSize();
-        RandomizeSpeed();
-        RandomizeDuration();
+        RandomizeSize(rnd[offset]);
+        RandomizeSpeed(rnd[offset + 1], rnd[offset + 2], rnd[offset + 3]);
+        RandomizeDuration(rnd[offset + 4]);
         setCoords(_screenCenter - getW()/2, y);
+        _prevX = getX();
+        _prevY = getY();
         _timer = 0;
         setAlpha(_maxAlpha);
         setActive(true);
@@ -146,6 +167,8 @@ public class Particle extends GameObject{
      * @param deltatime Tiempo transcurrido desde el ultimo frame
      */
     public void update(double deltatime){
+        _prevX = getX();
+        _prevY = getY();
 
         // Desplazamos la particula de acuerdo a la velocidad
         setX(getX() + (float)(_velX * deltatime));
@@ -163,4 +186,14 @@ public class Particle extends GameObject{
             setActive(false);
         }
     }
+
+    /**
+     * Pinta la particula extrapolando su posicion con el desplazamiento del ultimo update
+     * @param graphics Gestor de graficos
+     * @param t Fraccion de paso desde el ultimo update
+     */
+    @Override
+    public void drawSprite(Graphics graphics, float t) {
+        drawSpriteAt(graphics, getX() + (getX() - _prevX) * t, getY() + (getY() - _prevY) * t);
+    }
 }
@@ -0,0 +1,210 @@
+package es.ucm.gdv.switchdash;
+
+import java.util.Arrays;
+
+import es.ucm.gdv.engine.Graphics;
+import es.ucm.gdv.engine.Profiler;
+
+/**
+ * Escena de un estado: guarda sus GameObjects repartidos en capas que se pintan
+ * en orden (fondo, juego, particulas, interfaz y superposicion)
+ *
+ * Cada capa mantiene un array compacto solo con sus objetos activos, en el orden
+ * en que se añadieron. Los objetos avisan a la escena al activarse o desactivarse,
+ * asi que el pintado solo recorre lo que se ve y no todo lo creado
+ */
+public class Scene {
+
+    // Objetos activos de cada capa, ordenados por orden de insercion
+    private GameObject[][] _active;
+    // Numero de objetos activos de cada capa
+    private int[] _activeCount;
+
+    // Numero de objetos añadidos a la escena (activos o no)
+    private int _size = 0;
+
+    // Perfilador en el que se mide el pintado de cada capa y de cada tipo de objeto
+    // (null si no se perfila) y nombres de las secciones de las capas
+    private Profiler _profiler = null;
+    private String[] _layerSections = null;
+
+    /**
+     * Constructora, crea las capas vacias
+     */
+    public Scene() {
+        Layer[] layers = Layer.values();
+        _active = new GameObject[layers.length][];
+        _activeCount = new int[layers.length];
+        for (int i = 0; i < layers.length; i++)
+            _active[i] = new GameObject[8];
+    }
+
+    /**
+     * Añade un objeto a una capa. Dentro de la capa se pinta encima de los
+     * que se añadieron antes
+     *
+     * @param g Objeto a añadir
+     * @param layer Capa en la que se pinta
+     */
+    public void add(GameObject g, Layer layer) {
+        if (g.getScene() != null)
+            throw new IllegalStateException("El GameObject ya pertenece a una escena");
+        g.setScene(this, layer, _size++);
+        if (g.isActive())
+            activate(g);
+    }
+
+    /**
+     * Pinta los objetos activos capa a capa
+     *
+     * @param graphics Gestor de graficos
+     * @param t Fraccion de paso desde el ultimo update, con la que se extrapolan
+     *          los objetos que se mueven
+     */
+    public void render(Graphics graphics, float t) {
+        if (_profiler != null) {
+            renderProfiled(graphics, t);
+            return;
+        }
+        for (int l = 0; l < _active.length; l++) {
+            GameObject[] objects = _active[l];
+            for (int i = 0; i < _activeCount[l]; i++)
+                objects[i].drawSprite(graphics, t);
+        }
+    }
+
+    /**
+     * Asigna el perfilador en el que se mide el pintado de cada capa y, dentro de
+     * ella, el de cada tipo de objeto
+     *
+     * @param profiler Perfilador (null para no medir)
+     */
+    public void setProfiler(Profiler profiler) {
+        _profiler = profiler;
+        if (profiler != null && _layerSections == null) {
+            Layer[] layers = Layer.values();
+            _layerSections = new String[layers.length];
+            for (int l = 0; l < layers.length; l++)
+                _layerSections[l] = "capa " + layers[l].name();
+        }
+    }
+
+    /**
+     * Devuelve el numero de objetos activos de una capa
+     *
+     * @param layer Capa
+     * @return Objetos activos
+     */
+    public int getActiveCount(Layer layer) {
+        return _activeCount[layer.ordinal()];
+    }
+
+    /**
+     * Pinta como render, abriendo una seccion del perfilador por capa y otra
+     * por objeto con el nombre de su clase
+     *
+     * @param graphics Gestor de graficos
+     * @param t Fraccion de paso desde el ultimo update
+     */
+    private void renderProfiled(Graphics graphics, float t) {
+        for (int l = 0; l < _active.length; l++) {
+            if (_activeCount[l] == 0)
+                continue;
+            GameObject[] objects = _active[l];
+            _profiler.begin(_layerSections[l]);
+            for (int i = 0; i < _activeCount[l]; i++) {
+                _profiler.begin(objects[i].getClass());
+                objects[i].drawSprite(graphics, t);
+                _profiler.end();
+            }
+            _profiler.end();
+        }
+    }
+
+    /**
+     * Devuelve el numero de objetos activos de toda la escena
+     *
+     * @return Objetos activos
+     */
+    public int getActiveCount() {
+        int n = 0;
+        for (int l = 0; l < _activeCount.length; l++)
+            n += _activeCount[l];
+        return n;
+    }
+
+    /**
+     * Devuelve el numero de objetos añadidos a la escena, activos o no
+     *
+     * @return Objetos de la escena
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Aviso de un GameObject de la escena que ha cambiado su estado de actividad
+     *
+     * @param g Objeto que ha cambiado
+     */
+    void onActiveChanged(GameObject g) {
+        if (g.isActive())
+            activate(g);
+        else
+            deactivate(g);
+    }
+
+    /**
+     * Inserta un objeto en el array de activos de su capa, manteniendo el orden
+     */
+    private void activate(GameObject g) {
+        int l = g.getLayer().ordinal();
+        int n = _activeCount[l];
+        int pos = find(l, g.getSceneOrder());
+        if (pos >= 0)
+            return;
+        pos = -pos - 1;
+
+        if (n == _active[l].length)
+            _active[l] = Arrays.copyOf(_active[l], n * 2);
+        System.arraycopy(_active[l], pos, _active[l], pos + 1, n - pos);
+        _active[l][pos] = g;
+        _activeCount[l] = n + 1;
+    }
+
+    /**
+     * Quita un objeto del array de activos de su capa, manteniendo el orden
+     */
+    private void deactivate(GameObject g) {
+        int l = g.getLayer().ordinal();
+        int n = _activeCount[l];
+        int pos = find(l, g.getSceneOrder());
+        if (pos < 0)
+            return;
+
+        System.arraycopy(_active[l], pos + 1, _active[l], pos, n - pos - 1);
+        _active[l][n - 1] = null;
+        _activeCount[l] = n - 1;
+    }
+
+    /**
+     * Busqueda binaria por orden de insercion en los activos de una capa
+     *
+     * @return posicion del objeto, o (-(punto de insercion) - 1) si no esta
+     */
+    private int find(int layer, int order) {
+        GameObject[] objects = _active[layer];
+        int lo = 0, hi = _activeCount[layer] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int o = objects[mid].getSceneOrder();
+            if (o < order)
+                lo = mid + 1;
+            else if (o > order)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -(lo + 1);
+    }
+}
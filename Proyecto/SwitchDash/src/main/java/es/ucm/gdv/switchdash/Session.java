@@ -0,0 +1,60 @@
+package es.ucm.gdv.switchdash;
+
+import es.ucm.gdv.engine.Profiler;
+
+/**
+ * Estado de una partida que se conserva entre los estados de la logica:
+ * puntuacion, color de fondo y el perfilador, si se perfila
+ *
+ * Cada juego tiene la suya, asi que varias partidas pueden correr a la vez en la
+ * misma maquina virtual sin pisarse. Los numeros aleatorios salen del generador
+ * del Game: con la misma semilla y las mismas pulsaciones la partida es siempre la misma
+ */
+public class Session {
+
+    // Puntuacion de la partida en curso (o de la ultima)
+    private int _score = 0;
+
+    // Indice del color de fondo actual
+    private int _backgroundColorIndex = 0;
+
+    // Perfilador de los estados de la partida (null si no se perfila)
+    private Profiler _profiler = null;
+
+    /**
+     * Devuelve la puntuacion
+     * @return Puntuacion
+     */
+    public int getScore() { return _score; }
+
+    /**
+     * Asigna la puntuacion
+     * @param score Puntuacion
+     */
+    public void setScore(int score) { _score = score; }
+
+    /**
+     * Devuelve el indice del color de fondo
+     * @return Indice en el array de colores de fondo
+     */
+    public int getBackgroundColorIndex() { return _backgroundColorIndex; }
+
+    /**
+     * Asigna el indice del color de fondo
+     * @param index Indice en el array de colores de fondo
+     */
+    public void setBackgroundColorIndex(int index) { _backgroundColorIndex = index; }
+
+    /**
+     * Devuelve el perfilador de la partida
+     * @return Perfilador, o null si no se perfila
+     */
+    public Profiler getProfiler() { return _profiler; }
+
+    /**
+     * Activa el perfilado de los estados de la partida que se inicien a partir de
+     * ahora: miden las fases del update y pintan a traves de un ProfilingGraphics
+     * @param profiler Perfilador (null para no perfilar)
+     */
+    public void setProfiler(Profiler profiler) { _profiler = profiler; }
+}
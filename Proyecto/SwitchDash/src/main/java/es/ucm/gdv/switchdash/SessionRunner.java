@@ -0,0 +1,241 @@
+package es.ucm.gdv.switchdash;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import es.ucm.gdv.engine.Game;
+
+/**
+ * Ejecuta muchas partidas de Demo independientes a la vez, repartidas entre
+ * varias hebras, y mide cuantas partidas y frames simulados por segundo salen
+ *
+ * Cada partida tiene su propio juego (sin ventana normalmente), su Session, una
+ * semilla distinta para el generador del juego y un bot que pulsa para igualar el
+ * color de la barra con el de la siguiente bola. Con la misma semilla base los resultados son siempre los mismos
+ *
+ * La partida se simula llamando directamente al update de Demo con un paso fijo, sin
+ * pantalla de carga ni render, y termina al perder o al llegar al maximo de frames
+ */
+public class SessionRunner {
+
+    /**
+     * Crea el juego de cada partida
+     */
+    public interface GameFactory {
+
+        /**
+         * Se llama una vez por partida, desde la hebra que la ejecuta
+         *
+         * @return Juego sin inicializar
+         */
+        Game newGame();
+    }
+
+    /**
+     * Resultado de una partida
+     */
+    public static class Result {
+        // Semilla, puntos, frames simulados y si ha acabado perdiendo
+        public long _seed;
+        public int _score;
+        public int _frames;
+        public boolean _lost;
+    }
+
+    // Paso fijo de la simulacion en segundos
+    private static final double STEP = 1.0 / 60.0;
+
+    // Creador de los juegos
+    private GameFactory _factory;
+
+    // Hebras que ejecutan las partidas
+    private int _threads = Runtime.getRuntime().availableProcessors();
+
+    // Semilla de la primera partida, las demas usan las siguientes
+    private long _seed = 0;
+
+    // Frames maximos por partida
+    private int _maxFrames = 60 * 60 * 5;
+
+    // Probabilidad de que el bot deje pasar una bola
+    private double _errorRate = 0.01;
+
+    // Resultados de la ultima ejecucion y su duracion en nanosegundos
+    private ArrayList<Result> _results = new ArrayList<Result>();
+    private long _nanos = 0;
+
+    /**
+     * Constructora
+     *
+     * @param factory Creador del juego de cada partida
+     */
+    public SessionRunner(GameFactory factory) {
+        _factory = factory;
+    }
+
+    /**
+     * Asigna el numero de hebras (por defecto, una por nucleo)
+     * @param threads Hebras
+     */
+    public void setThreads(int threads) { _threads = Math.max(1, threads); }
+
+    /**
+     * Asigna la semilla de la primera partida
+     * @param seed Semilla
+     */
+    public void setSeed(long seed) { _seed = seed; }
+
+    /**
+     * Asigna los frames maximos por partida, para que acaben aunque el bot no pierda
+     * @param frames Frames
+     */
+    public void setMaxFrames(int frames) { _maxFrames = Math.max(1, frames); }
+
+    /**
+     * Asigna la probabilidad de que el bot deje pasar una bola de otro color
+     * @param errorRate Probabilidad entre 0 y 1
+     */
+    public void setErrorRate(double errorRate) { _errorRate = errorRate; }
+
+    /**
+     * Devuelve los resultados de la ultima ejecucion, en orden de semilla
+     *
+     * @return Resultados
+     */
+    public ArrayList<Result> getResults() { return _results; }
+
+    /**
+     * Ejecuta las partidas y espera a que terminen todas
+     *
+     * @param sessions Numero de partidas
+     *
+     * @return false si alguna ha fallado al inicializarse
+     */
+    public boolean run(int sessions) {
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        ArrayList<Future<Result>> futures = new ArrayList<Future<Result>>(sessions);
+        _results = new ArrayList<Result>(sessions);
+
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < sessions; i++) {
+                final long seed = _seed + i;
+                futures.add(pool.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        return play(seed);
+                    }
+                }));
+            }
+
+            boolean ok = true;
+            for (int i = 0; i < futures.size(); i++) {
+                Result r = futures.get(i).get();
+                if (r == null)
+                    ok = false;
+                else
+                    _results.add(r);
+            }
+            return ok;
+        }
+        catch (Exception e) {
+            // avisamos de errores
+            System.err.println(e);
+            return false;
+        }
+        finally {
+            _nanos = System.nanoTime() - start;
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Juega una partida completa en la hebra actual
+     *
+     * @param seed Semilla de la partida
+     *
+     * @return Resultado, o null si no se ha podido inicializar
+     */
+    private Result play(long seed) {
+        Game game = _factory.newGame();
+        // Toda la aleatoriedad de la partida sale del generador del juego
+        game.getRandom().setSeed(seed);
+        BotDemo demo = new BotDemo(_errorRate);
+        if (!game.init(demo) || !demo.init(game))
+            return null;
+        game.setLogic(demo);
+
+        Result r = new Result();
+        r._seed = seed;
+        while (!demo._over && r._frames < _maxFrames) {
+            demo.update(STEP);
+            r._frames++;
+        }
+        r._score = demo.getSession().getScore();
+        r._lost = demo._over;
+        return r;
+    }
+
+    /**
+     * Genera el informe de la ultima ejecucion: partidas y frames simulados por
+     * segundo, y puntuaciones y duracion de las partidas
+     *
+     * @return Informe de texto
+     */
+    public String report() {
+        long frames = 0, score = 0;
+        int maxScore = 0, maxFrames = 0, lost = 0;
+        for (int i = 0; i < _results.size(); i++) {
+            Result r = _results.get(i);
+            frames += r._frames;
+            score += r._score;
+            maxScore = Math.max(maxScore, r._score);
+            maxFrames = Math.max(maxFrames, r._frames);
+            if (r._lost)
+                lost++;
+        }
+        int n = Math.max(1, _results.size());
+        double seconds = Math.max(1, _nanos) / 1.0E9;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d partidas en %d hebras, %.2f s (%d perdidas)%n",
+                _results.size(), _threads, seconds, lost));
+        sb.append(String.format("%.1f partidas/s, %.0f frames simulados/s%n",
+                _results.size() / seconds, frames / seconds));
+        sb.append(String.format("puntos: media %.1f, max %d; frames: media %.1f, max %d%n",
+                score / (double)n, maxScore, frames / (double)n, maxFrames));
+        return sb.toString();
+    }
+
+    /**
+     * Demo jugada por el bot, que al perder se marca como terminada en vez de
+     * pasar a la pantalla de fin
+     */
+    private static class BotDemo extends Demo {
+
+        private double _errorRate;
+        private boolean _over = false;
+
+        BotDemo(double errorRate) {
+            _errorRate = errorRate;
+        }
+
+        @Override
+        public void update(double deltaTime) {
+            autoTap(_errorRate);
+            super.update(deltaTime);
+        }
+
+        @Override
+        protected void updateGameState() {
+            if (_nextGameState == GameState.GameOver) {
+                _over = true;
+                _nextGameState = _gameState;
+            }
+            super.updateGameState();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package es.ucm.gdv.switchdash;
+
+import es.ucm.gdv.engine.FrameMetrics;
+import es.ucm.gdv.engine.Histogram;
+
+/**
+ * Escenario de estres: una partida de Demo con la carga configurable (bolas, particulas
+ * por punto, velocidad y ritmo de puntos) que juega sola durante un numero fijo de frames
+ *
+ * Un bot pulsa la pantalla cuando la siguiente bola no coincide con el color de la barra,
+ * metiendo el evento por el Input como si fuera del jugador. Los fallos no acaban la
+ * partida, solo se cuentan, asi que todas las ejecuciones hacen el mismo trabajo
+ *
+ * Mide la duracion de cada frame, de sus updates y de su render, y los pintados, con
+ * independencia de la plataforma en la que se pinte. Al llegar al ultimo frame avisa
+ * al Listener, que decide que hacer con el informe
+ */
+public class StressScenario extends Demo {
+
+    /**
+     * Recibe el aviso de que el escenario ha terminado
+     */
+    public interface Listener {
+
+        /**
+         * Se llama una vez, desde el render del ultimo frame medido
+         *
+         * @param scenario Escenario terminado
+         */
+        void onFinished(StressScenario scenario);
+    }
+
+    // Valores del juego normal, para escalar la carga
+    public static final int DEFAULT_BALLS = 5;
+    public static final int DEFAULT_PARTICLES = 10;
+    public static final float DEFAULT_SPEED = 430;
+    public static final float DEFAULT_SCORE_RATE = 430 / 395.0f;
+
+    // Configuracion
+    private int _balls;
+    private int _particles;
+    private float _speed;
+    private float _scoreRate;
+
+    // Frames de calentamiento (no se miden) y frames medidos
+    private int _warmupFrames = 0;
+    private int _frames = 0;
+
+    // Frames pintados desde el inicio
+    private int _rendered = 0;
+
+    // Receptor del aviso de fin (puede ser null)
+    private Listener _listener = null;
+    private boolean _finished = false;
+
+    // Metricas medidas
+    private FrameMetrics _metrics = new FrameMetrics();
+
+    // Tiempo de los updates desde el ultimo render e instante del ultimo render
+    private long _updateNanos = 0;
+    private long _lastRender = -1;
+
+    // Pulsaciones del bot y bolas que han llegado con el color equivocado
+    private int _taps = 0;
+    private int _misses = 0;
+
+    /**
+     * Constructora
+     *
+     * @param balls Numero de bolas que coexisten
+     * @param particles Particulas que se generan con cada punto
+     * @param speed Velocidad de las bolas (fija, no aumenta con los puntos)
+     * @param scoreRate Puntos por segundo: fija la separacion entre bolas
+     * @param frames Frames que se miden
+     */
+    public StressScenario(int balls, int particles, float speed, float scoreRate, int frames) {
+        super(balls, particles, speed, separation(speed, scoreRate), 0);
+        _balls = balls;
+        _particles = particles;
+        _speed = speed;
+        _scoreRate = scoreRate;
+        _frames = frames;
+    }
+
+    /**
+     * Crea un escenario con la carga del juego normal multiplicada (bolas, particulas
+     * y ritmo de puntos), a la velocidad normal
+     *
+     * @param factor Multiplicador de la carga (1 es el juego normal)
+     * @param frames Frames que se miden
+     *
+     * @return Escenario
+     */
+    public static StressScenario scaled(float factor, int frames) {
+        return new StressScenario(Math.max(1, Math.round(DEFAULT_BALLS * factor)),
+                Math.max(1, Math.round(DEFAULT_PARTICLES * factor)), DEFAULT_SPEED,
+                DEFAULT_SCORE_RATE * factor, frames);
+    }
+
+    /**
+     * Separacion entre bolas para conseguir un ritmo de puntos a una velocidad dada
+     */
+    private static int separation(float speed, float scoreRate) {
+        return Math.max(1, Math.round(speed / Math.max(0.001f, scoreRate)));
+    }
+
+    /**
+     * Frames que se ejecutan antes de empezar a medir, para que el JIT y las
+     * cachés de la plataforma se estabilicen
+     *
+     * @param frames Frames de calentamiento
+     */
+    public void setWarmupFrames(int frames) { _warmupFrames = Math.max(0, frames); }
+
+    /**
+     * Asigna el receptor del aviso de fin
+     *
+     * @param listener Receptor (null para no avisar)
+     */
+    public void setListener(Listener listener) { _listener = listener; }
+
+    /**
+     * Indica si ya se han medido todos los frames
+     *
+     * @return true si ha terminado
+     */
+    public boolean isFinished() { return _finished; }
+
+    /**
+     * Devuelve las metricas de los frames medidos
+     *
+     * @return Metricas
+     */
+    public FrameMetrics getMetrics() { return _metrics; }
+
+    /**
+     * Devuelve las bolas que han llegado a la barra con el color equivocado
+     *
+     * @return Fallos
+     */
+    public int getMisses() { return _misses; }
+
+    /**
+     * Devuelve las pulsaciones que ha hecho el bot
+     *
+     * @return Pulsaciones
+     */
+    public int getTaps() { return _taps; }
+
+    /**
+     * Update de Demo precedido por el bot, midiendo su duracion
+     *
+     * @param deltaTime Duracion del paso en segundos
+     */
+    @Override
+    public void update(double deltaTime) {
+        long start = System.nanoTime();
+
+        // Si la siguiente bola no es del color de la barra, pulsamos. El evento se
+        // procesa al final de este mismo update
+        if (autoTap(0))
+            _taps++;
+
+        super.update(deltaTime);
+        _updateNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Render de Demo, midiendo el frame completo, el render y los pintados
+     *
+     * @param alpha Fraccion de paso desde el ultimo update
+     */
+    @Override
+    public void render(double alpha) {
+        long start = System.nanoTime();
+        super.render(alpha);
+        long end = System.nanoTime();
+
+        if (_finished)
+            return;
+
+        _rendered++;
+        if (_rendered == _warmupFrames + 1)
+            _metrics.reset();
+        // El primer frame medido no tiene frame anterior con el que medir su duracion
+        _metrics.recordFrame(_rendered > _warmupFrames + 1 ? start - _lastRender : -1, _updateNanos);
+        _metrics.recordRender(end - start);
+        // La plataforma da los pintados del ultimo frame completo, uno por detras
+        _metrics.addDrawCalls(_graphics.getDrawCalls());
+        _updateNanos = 0;
+        _lastRender = start;
+
+        if (_rendered >= _warmupFrames + _frames) {
+            _finished = true;
+            if (_listener != null)
+                _listener.onFinished(this);
+        }
+    }
+
+    /**
+     * Los fallos no acaban la partida, se cuentan y se sigue jugando
+     */
+    @Override
+    protected void updateGameState() {
+        if (_nextGameState == GameState.GameOver) {
+            _misses++;
+            _nextGameState = _gameState;
+        }
+        super.updateGameState();
+    }
+
+    /**
+     * Genera el informe del escenario: configuracion, fallos, percentiles (en
+     * microsegundos) de la duracion de los frames, updates y renders, y pintados
+     *
+     * @return Informe de texto
+     */
+    public String report() {
+        long frames = Math.max(1, _metrics.getFrames());
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Estres: %d bolas, %d particulas por punto, velocidad %.0f, %.2f puntos/s%n",
+                _balls, _particles, _speed, _scoreRate));
+        sb.append(String.format("%d frames, %d puntos, %d pulsaciones, %d fallos%n",
+                _metrics.getFrames(), getSession().getScore(), _taps, _misses));
+        sb.append(String.format("%-8s %8s %8s %8s %8s %8s%n", "us", "media", "p50", "p90", "p99", "max"));
+        appendRow(sb, "frame", _metrics.getFrameTimes());
+        appendRow(sb, "update", _metrics.getUpdateTimes());
+        appendRow(sb, "render", _metrics.getRenderTimes());
+        sb.append(String.format("%.1f pintados por frame%n", _metrics.getDrawCalls() / (double)frames));
+        return sb.toString();
+    }
+
+    /**
+     * Añade al informe la fila de un histograma
+     */
+    private static void appendRow(StringBuilder sb, String name, Histogram h) {
+        sb.append(String.format("%-8s %8d %8d %8d %8d %8d%n", name, h.getMean(),
+                h.getPercentile(50), h.getPercentile(90), h.getPercentile(99), h.getMax()));
+    }
+}
@@ -20,4 +20,9 @@ enum GameState {Menu, Controls, Demo, GameOver}
 /**
  * Tipo que indica el color de varios objetos en el juego
  */
-enum Color {White, Black}
\ No newline at end of file
+enum Color {White, Black}
+
+/**
+ * Capas de la escena, se pintan en este orden (la ultima queda encima)
+ */
+enum Layer {Background, Playfield, Particles, UI, Overlay}
@@ -0,0 +1,140 @@
+package es.ucm.gdv.switchdash;
+
+import org.junit.Test;
+
+import es.ucm.gdv.engine.Rect;
+import es.ucm.gdv.engine.Rng;
+import es.ucm.gdv.engine.Sprite;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del anillo de bolas de Demo: que mantiene el orden y la separacion
+ * como la version que recorria todas las bolas, y que el coste de simular un
+ * frame no crece con el numero de bolas (contando las veces que se tocan las bolas)
+ */
+public class BallRingTest {
+
+    // Separacion entre bolas, tamaño de bola y altura de la barra
+    private static final float SEPARATION = 395;
+    private static final float BALL_SIZE = 100;
+    private static final float BAR_Y = 1200;
+
+    /**
+     * Crea un anillo de n bolas colocado como en Demo
+     */
+    private static BallRing newRing(int n, Rng random) {
+        Sprite white = new Sprite(null, new Rect(0, 0, BALL_SIZE, BALL_SIZE));
+        Sprite black = new Sprite(null, new Rect(0, 0, BALL_SIZE, BALL_SIZE));
+        BallObject[] balls = new BallObject[n];
+        for (int i = 0; i < n; i++)
+            balls[i] = new BallObject(random, BallType.Circle, white, black,
+                    new Rect(0, 0, BALL_SIZE, BALL_SIZE));
+        BallRing ring = new BallRing(balls, SEPARATION);
+        ring.reset(-BALL_SIZE);
+        return ring;
+    }
+
+    /**
+     * Simula frames como Demo.update: recoloca las bolas que llegan a la barra
+     * y desplaza todas
+     *
+     * @return Bolas recolocadas
+     */
+    private static int simulate(BallRing ring, int frames, float step) {
+        int respawned = 0;
+        for (int f = 0; f < frames; f++) {
+            for (int i = 0; i < ring.size(); i++) {
+                if (ring.getScreenY(ring.getNext()) + BALL_SIZE < BAR_Y)
+                    break;
+                ring.respawnNext();
+                respawned++;
+            }
+            ring.scroll(step);
+        }
+        return respawned;
+    }
+
+    @Test
+    public void keepsOrderAndSeparation() {
+        BallRing ring = newRing(50, new Rng(1));
+        // Mas de REBASE_LIMIT de desplazamiento total, para pasar por el cambio de base
+        int respawned = simulate(ring, 20000, 7.3f);
+        assertTrue(respawned > ring.size());
+
+        float top = Float.MAX_VALUE;
+        for (int i = 0; i < ring.size(); i++) {
+            float y = ring.getScreenY(ring.get(i));
+            top = Math.min(top, y);
+            if (i > 0)
+                assertEquals(SEPARATION, ring.getScreenY(ring.get(i - 1)) - y, 0.05f);
+        }
+        // La siguiente es la mas baja, todavia sin llegar a la barra, y la mas alta es la de arriba
+        assertTrue(ring.getScreenY(ring.getNext()) + BALL_SIZE < BAR_Y);
+        assertEquals(top, ring.getScreenY(ring.getTop()), 0.0f);
+        assertSame(ring.get(ring.size() - 1), ring.getTop());
+    }
+
+    @Test
+    public void singleBallRespawnsAboveItself() {
+        BallRing ring = newRing(1, new Rng(2));
+        float y = ring.getScreenY(ring.getNext());
+        ring.respawnNext();
+        assertEquals(y - SEPARATION, ring.getScreenY(ring.getNext()), 0.0f);
+        assertSame(ring.getNext(), ring.getTop());
+    }
+
+    @Test
+    public void frameCostDoesNotGrowWithBalls() {
+        // Menos de REBASE_LIMIT de desplazamiento total: el cambio de base toca todas
+        // las bolas, pero solo una vez cada muchos frames (lo prueba keepsOrderAndSeparation)
+        int frames = 2000;
+        long small = touches(1000, frames);
+        long large = touches(8000, frames);
+        // Recorrer todas las bolas en cada frame tocaria 1000 y 8000 por frame. Con el
+        // anillo solo se tocan la siguiente y la mas alta, tengan las que tengan
+        assertTrue("1000 bolas: " + small + " toques, 8000 bolas: " + large + " toques",
+                large == small && small < frames * 10);
+    }
+
+    /**
+     * Bola que cuenta las veces que se lee o se cambia su posicion
+     */
+    private static class CountingBall extends BallObject {
+        static long _touches = 0;
+
+        CountingBall(Rng random, Sprite white, Sprite black) {
+            super(random, BallType.Circle, white, black, new Rect(0, 0, BALL_SIZE, BALL_SIZE));
+        }
+
+        @Override
+        public float getY() {
+            _touches++;
+            return super.getY();
+        }
+
+        @Override
+        public void setY(float y) {
+            _touches++;
+            super.setY(y);
+        }
+    }
+
+    /**
+     * Toques a las bolas al simular un anillo de n bolas, sin contar su creacion
+     */
+    private static long touches(int n, int frames) {
+        Rng random = new Rng(n);
+        Sprite white = new Sprite(null, new Rect(0, 0, BALL_SIZE, BALL_SIZE));
+        Sprite black = new Sprite(null, new Rect(0, 0, BALL_SIZE, BALL_SIZE));
+        BallObject[] balls = new BallObject[n];
+        for (int i = 0; i < n; i++)
+            balls[i] = new CountingBall(random, white, black);
+        BallRing ring = new BallRing(balls, SEPARATION);
+        ring.reset(-BALL_SIZE);
+
+        CountingBall._touches = 0;
+        simulate(ring, frames, 30);
+        return CountingBall._touches;
+    }
+}
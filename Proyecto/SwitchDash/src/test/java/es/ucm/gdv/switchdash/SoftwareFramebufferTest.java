@@ -0,0 +1,90 @@
+package es.ucm.gdv.switchdash;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import es.ucm.gdv.engine.GameLoop;
+import es.ucm.gdv.engine.software.Game;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del backend por software con el juego de verdad: con la misma semilla y
+ * paso fijo, el framebuffer de cada frame es el mismo se componga con una hebra o
+ * con varias (las baldosas se reparten entre hebras pero cada una pinta en orden)
+ *
+ * Se ejecutan desde la raiz del proyecto para encontrar Sprites
+ */
+public class SoftwareFramebufferTest {
+
+    // Semilla de la partida, frames entre capturas y capturas que se comparan
+    private static final long SEED = 42;
+    private static final int FRAMES_PER_CAPTURE = 40;
+    private static final int CAPTURES = 8;
+
+    // Tamaño del framebuffer, un cuarto del lado del canvas para pasar por el escalado
+    private static final int WIDTH = 270;
+    private static final int HEIGHT = 480;
+
+    /**
+     * Juega una partida del escenario de estres con el doble de carga que la normal
+     * y copia el framebuffer cada FRAMES_PER_CAPTURE frames
+     *
+     * @param threads Hebras con las que se compone
+     * @param bilinear true para escalar con filtrado bilineal
+     * @return Capturas del framebuffer
+     */
+    private static ArrayList<int[]> capture(int threads, boolean bilinear) {
+        Game game = new Game(WIDTH, HEIGHT, threads);
+        game.setFixedTimestep(GameLoop.DEFAULT_STEP);
+        game.getRandom().setSeed(SEED);
+
+        // Sin pantalla de carga, que dura mas o menos frames segun la maquina
+        StressScenario scenario = StressScenario.scaled(2, FRAMES_PER_CAPTURE * CAPTURES);
+        assertTrue("No se ha podido iniciar el juego", game.init(scenario) && scenario.init(game));
+        game.getGraphics().setBilinear(bilinear);
+
+        ArrayList<int[]> captures = new ArrayList<int[]>();
+        game.setMaxFrames(FRAMES_PER_CAPTURE);
+        for (int i = 0; i < CAPTURES; i++) {
+            game.run();
+            captures.add(game.getPixels().clone());
+        }
+        assertTrue("El bot no ha conseguido ningun punto", scenario.getSession().getScore() > 0);
+        return captures;
+    }
+
+    /**
+     * Compara las capturas hechas con varias hebras con las hechas con una
+     *
+     * @param bilinear true para escalar con filtrado bilineal
+     */
+    private static void checkThreads(boolean bilinear) {
+        ArrayList<int[]> reference = capture(1, bilinear);
+
+        // Las capturas tienen que ser distintas entre si, si no la prueba no compara nada
+        for (int i = 1; i < reference.size(); i++)
+            assertFalse("El frame " + i * FRAMES_PER_CAPTURE + " es igual que el anterior",
+                    Arrays.equals(reference.get(i - 1), reference.get(i)));
+
+        int[] threadCounts = {2, 3, 4};
+        for (int t = 0; t < threadCounts.length; t++) {
+            ArrayList<int[]> captures = capture(threadCounts[t], bilinear);
+            for (int i = 0; i < reference.size(); i++)
+                assertArrayEquals("Framebuffer distinto con " + threadCounts[t] + " hebras en el frame "
+                        + (i + 1) * FRAMES_PER_CAPTURE, reference.get(i), captures.get(i));
+        }
+    }
+
+    @Test
+    public void sameFramebufferWithAnyThreadCount() {
+        checkThreads(false);
+    }
+
+    @Test
+    public void sameFramebufferWithAnyThreadCountBilinear() {
+        checkThreads(true);
+    }
+}